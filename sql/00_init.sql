@@ -1,20 +1,32 @@
 CREATE EXTENSION IF NOT EXISTS pgcrypto;
 
+-- IDはpooled-lo採番(アプリケーションが1回のnextvalで50件分を確保する)
+CREATE SEQUENCE users_user_id_seq INCREMENT BY 50;
+CREATE SEQUENCE roles_role_id_seq INCREMENT BY 50;
+
 CREATE TABLE users (
-    user_id SERIAL PRIMARY KEY,
-    username VARCHAR(50) NOT NULL UNIQUE,
-    email VARCHAR(100) NOT NULL UNIQUE,
+    user_id BIGINT PRIMARY KEY DEFAULT nextval('users_user_id_seq'),
+    username VARCHAR(50) NOT NULL,
+    email VARCHAR(100) NOT NULL,
     password VARCHAR(255) NOT NULL,
     registration_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     last_login TIMESTAMP,
+    version BIGINT NOT NULL DEFAULT 0,
+    deleted_at TIMESTAMP,
     created_by BIGINT NOT NULL,
     created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     updated_by BIGINT NOT NULL,
     updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
 );
 
+-- 論理削除済みの行を除いて一意にする(削除したユーザーのユーザー名・メールアドレスは再利用できる)
+CREATE UNIQUE INDEX uk_users_username ON users (username) WHERE deleted_at IS NULL;
+CREATE UNIQUE INDEX uk_users_email ON users (email) WHERE deleted_at IS NULL;
+-- 物理削除対象の検索用
+CREATE INDEX idx_users_deleted_at ON users (deleted_at) WHERE deleted_at IS NOT NULL;
+
 CREATE TABLE roles (
-    role_id SERIAL PRIMARY KEY,
+    role_id BIGINT PRIMARY KEY DEFAULT nextval('roles_role_id_seq'),
     role_name VARCHAR(50) NOT NULL UNIQUE,
     description VARCHAR(255),
     created_by BIGINT NOT NULL,
@@ -23,6 +35,9 @@ CREATE TABLE roles (
     updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
 );
 
+ALTER SEQUENCE users_user_id_seq OWNED BY users.user_id;
+ALTER SEQUENCE roles_role_id_seq OWNED BY roles.role_id;
+
 CREATE TABLE user_roles (
     user_id BIGINT NOT NULL,
     role_id BIGINT NOT NULL,
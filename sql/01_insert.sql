@@ -16,4 +16,7 @@ INSERT INTO roles (role_name, description, created_by, created_at, updated_by, u
 ('USER_ADMIN', 'ユーザー管理者', 1, CURRENT_TIMESTAMP, 1, CURRENT_TIMESTAMP),
 ('EMPLOYEE', '従業員', 1, CURRENT_TIMESTAMP, 1, CURRENT_TIMESTAMP);
 
-INSERT INTO user_roles (user_id, role_id) VALUES (1, 1);
+-- IDは50刻みで採番されるため、名前で引いて紐付ける
+INSERT INTO user_roles (user_id, role_id)
+SELECT u.user_id, r.role_id FROM users u, roles r
+WHERE u.username = 'admin' AND r.role_name = 'SYSTEM_ADMIN';
@@ -1,17 +1,48 @@
--- ユーザー操作履歴テーブル
+-- ユーザー操作履歴テーブル(IDはpooled-lo採番)
+-- created_atで月毎にレンジパーティション分割する。月毎のパーティションはUserAuditPartitionManagerが
+-- 先行して作成し、保持期間を過ぎたものを切り離す(DELETEによる削除は行わない)。
+-- 主キーにはパーティションキーを含める必要があるため(created_at, id)とし、時刻順のキーセットページングにも使う。
+-- actionはUserAuditEvent.AuditActionのコード(smallint)。列はアラインメントの詰め物が出ない順に並べる。
+CREATE SEQUENCE user_audit_events_id_seq INCREMENT BY 50;
+
+-- 操作種別のコード表(UserAuditEvent.AuditActionと一致させる)。SQLで直接調べる時の対応表で、
+-- 挿入毎の参照を避けるため操作ログからの外部キーは張らない
+CREATE TABLE user_audit_actions (
+    code SMALLINT PRIMARY KEY,
+    name VARCHAR(50) NOT NULL UNIQUE
+);
+
+INSERT INTO user_audit_actions (code, name) VALUES
+    (1, 'USER_CREATED'),
+    (2, 'USER_UPDATED'),
+    (3, 'USER_DELETED'),
+    (4, 'ROLE_ASSIGNED'),
+    (5, 'ROLE_REMOVED');
+
 CREATE TABLE user_audit_events (
-    id BIGSERIAL PRIMARY KEY,
+    id BIGINT NOT NULL DEFAULT nextval('user_audit_events_id_seq'),
     user_id BIGINT,
-    action VARCHAR(50) NOT NULL,
     target_user_id BIGINT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    action SMALLINT NOT NULL,
     ip_address VARCHAR(45),
     user_agent TEXT,
     details JSONB,
-    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
-);
+    PRIMARY KEY (created_at, id)
+) PARTITION BY RANGE (created_at);
+
+-- 月毎のパーティションがない期間の行の受け皿
+CREATE TABLE user_audit_events_default PARTITION OF user_audit_events DEFAULT;
+
+ALTER SEQUENCE user_audit_events_id_seq OWNED BY user_audit_events.id;
+
+-- インデックス(各パーティションに自動で作成される)
+-- 検索API(/api/audit)のキーセットページング((created_at, id)の降順)に合わせた複合インデックス。
+-- 条件なし・期間だけの検索は主キーを逆順に読む。操作種別は5種類しかないため専用のインデックスは持たず、
+-- 主キーか利用者のインデックスを読みながら絞り込む(集計はuser_audit_action_hourlyを使う)。
+CREATE INDEX idx_user_audit_events_user_id ON user_audit_events(user_id, created_at DESC, id DESC);
+CREATE INDEX idx_user_audit_events_target_user_id ON user_audit_events(target_user_id, created_at DESC, id DESC);
 
--- インデックス
-CREATE INDEX idx_user_audit_events_user_id ON user_audit_events(user_id);
-CREATE INDEX idx_user_audit_events_target_user_id ON user_audit_events(target_user_id);
-CREATE INDEX idx_user_audit_events_created_at ON user_audit_events(created_at);
-CREATE INDEX idx_user_audit_events_action ON user_audit_events(action);
\ No newline at end of file
+-- detailsの包含(@>)とJSONPath(@?)の検索用。jsonb_path_opsはキーの存在(?)に使えない代わりに、
+-- 値のハッシュだけを持つためjsonb_opsより小さく、挿入時の更新も軽い
+CREATE INDEX idx_user_audit_events_details ON user_audit_events USING gin (details jsonb_path_ops);
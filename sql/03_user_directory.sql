@@ -0,0 +1,41 @@
+-- ユーザー検索用の読み取りモデル
+-- users / user_roles をJOINせずに検索できるよう、ユーザー毎に1行へ非正規化する。
+-- ドメインイベント(UserCreated / UserUpdated / UserDeleted)のコミット後に更新される。
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE TABLE user_directory (
+    user_id BIGINT PRIMARY KEY,
+    username VARCHAR(50) NOT NULL,
+    username_lower VARCHAR(50) NOT NULL,
+    email_lower VARCHAR(100) NOT NULL,
+    role_names TEXT[] NOT NULL DEFAULT '{}',
+    registration_date TIMESTAMP,
+    last_login TIMESTAMP,
+    refreshed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- 部分一致検索(LIKE '%...%')用のトライグラムインデックス
+CREATE INDEX idx_user_directory_username_trgm ON user_directory USING gin (username_lower gin_trgm_ops);
+CREATE INDEX idx_user_directory_email_trgm ON user_directory USING gin (email_lower gin_trgm_ops);
+-- ソート用
+CREATE INDEX idx_user_directory_username ON user_directory(username);
+CREATE INDEX idx_user_directory_email_lower ON user_directory(email_lower);
+
+-- ディレクトリ全体の変更カウンタ(検索結果のETagに使用)
+-- シーケンスは非トランザクションで、読み取りも行ロックを取らないため書き込みと競合しない。
+CREATE SEQUENCE user_directory_version_seq;
+
+-- 既存ユーザーの取り込み
+INSERT INTO user_directory (user_id, username, username_lower, email_lower, role_names, registration_date, last_login)
+SELECT u.user_id,
+       u.username,
+       lower(u.username),
+       lower(u.email),
+       COALESCE(array_agg(r.role_name ORDER BY r.role_name) FILTER (WHERE r.role_name IS NOT NULL), '{}'),
+       u.registration_date,
+       u.last_login
+FROM users u
+LEFT JOIN user_roles ur ON ur.user_id = u.user_id
+LEFT JOIN roles r ON r.role_id = ur.role_id
+WHERE u.deleted_at IS NULL
+GROUP BY u.user_id;
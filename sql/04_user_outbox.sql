@@ -0,0 +1,14 @@
+-- ユーザーのドメインイベントのアウトボックス。
+-- 書き込みと同じトランザクションで1イベント1行を挿入し、リレーがコミット後に配信して削除する。
+CREATE TABLE user_outbox_events (
+    id BIGSERIAL PRIMARY KEY,
+    action VARCHAR(50) NOT NULL,
+    actor_id BIGINT,
+    -- 対象ユーザーID → 詳細
+    payload JSONB NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    last_error TEXT,
+    -- リレーが配信中の行はこの時刻まで他のリレーから取得されない
+    claimed_until TIMESTAMP,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
@@ -0,0 +1,28 @@
+-- 操作ログの集計テーブル。操作ログの挿入と同じトランザクションで加算する。
+-- パーティションの期限切れで元の行が削除されても集計は残る。
+-- actionはuser_audit_eventsと同じコード(user_audit_actions.code)で持つ。
+CREATE TABLE user_audit_action_hourly (
+    bucket TIMESTAMP NOT NULL,
+    action SMALLINT NOT NULL,
+    event_count BIGINT NOT NULL,
+    PRIMARY KEY (bucket, action)
+);
+
+CREATE TABLE user_audit_actor_daily (
+    day DATE NOT NULL,
+    user_id BIGINT NOT NULL,
+    event_count BIGINT NOT NULL,
+    PRIMARY KEY (day, user_id)
+);
+
+-- 既存の操作ログからの初期集計
+INSERT INTO user_audit_action_hourly (bucket, action, event_count)
+SELECT date_trunc('hour', created_at), action, COUNT(*)
+FROM user_audit_events
+GROUP BY 1, 2;
+
+INSERT INTO user_audit_actor_daily (day, user_id, event_count)
+SELECT CAST(created_at AS DATE), user_id, COUNT(*)
+FROM user_audit_events
+WHERE user_id IS NOT NULL
+GROUP BY 1, 2;
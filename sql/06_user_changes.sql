@@ -0,0 +1,23 @@
+-- ユーザーの変更履歴(/api/users/changesの変更フィード)。
+-- 書き込みと同じトランザクションで対象ユーザー1人につき1行を挿入する。
+-- 位置は(tx_id, seq)。seqは採番順でコミット順ではないため、読み出しは実行中の最も古いトランザクションより
+-- 前のtx_idの行だけに限り、(tx_id, seq)の順に返す。これで後からコミットされた行が既読の位置より前に現れない。
+CREATE TABLE user_changes (
+    seq BIGSERIAL PRIMARY KEY,
+    tx_id BIGINT NOT NULL DEFAULT txid_current(),
+    user_id BIGINT NOT NULL,
+    change VARCHAR(10) NOT NULL,
+    changed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_user_changes_position ON user_changes (tx_id, seq);
+
+-- 変更フィードの保持期間外として削除済みの位置。この位置より前のカーソルは続きを返せない(410)。
+-- 行を削除する前に進めるため、読み出し後にこの位置を確かめれば、削除された行を黙って読み飛ばすことはない。
+CREATE TABLE user_change_horizon (
+    id BOOLEAN PRIMARY KEY DEFAULT TRUE CHECK (id),
+    tx_id BIGINT NOT NULL,
+    seq BIGINT NOT NULL
+);
+
+INSERT INTO user_change_horizon (tx_id, seq) VALUES (0, 0);
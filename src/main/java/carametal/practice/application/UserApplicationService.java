@@ -4,18 +4,26 @@ import carametal.practice.domain.service.UserDomainService;
 import carametal.practice.domain.valueobject.Email;
 import carametal.practice.domain.valueobject.Password;
 import carametal.practice.domain.valueobject.Username;
+import carametal.practice.dto.UserPatchRequest;
 import carametal.practice.dto.UserRegistrationRequest;
 import carametal.practice.dto.UserRegistrationResponse;
+import carametal.practice.dto.UserResponse;
 import carametal.practice.dto.UserUpdateRequest;
 import carametal.practice.dto.UserUpdateResponse;
 import carametal.practice.entity.Role;
 import carametal.practice.entity.User;
+import carametal.practice.repository.UserJdbcRepository;
 import carametal.practice.repository.UserRepository;
 import carametal.practice.service.RoleService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -25,10 +33,30 @@ import java.util.stream.Collectors;
 public class UserApplicationService {
     
     private final UserRepository userRepository;
+    private final UserJdbcRepository userJdbcRepository;
     private final UserDomainService userDomainService;
     private final RoleService roleService;
+    private final TransactionTemplate transactionTemplate;
     
-    @Transactional
+    public UserResponse getUser(Long userId) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new IllegalArgumentException("User not found: " + userId));
+        return toUserResponse(user);
+    }
+    
+    /**
+     * ユーザー本体やロールを読み込まずにバージョンのみ取得する(条件付きリクエスト用)
+     */
+    public Optional<Long> findUserVersion(Long userId) {
+        return userRepository.findVersionById(userId);
+    }
+    
+    /**
+     * 準備(検証・パスワードのハッシュ化)はトランザクション外で行い、
+     * コネクションを保持するのは保存とイベント発行の短いトランザクションだけにする。
+     * 呼び出し元にトランザクションがある場合はそれに参加する。
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public UserRegistrationResponse registerUser(UserRegistrationRequest request, User currentUser) {
         // Value Objects作成（バリデーション含む）
         Username username = new Username(request.getUsername());
@@ -39,12 +67,16 @@ public class UserApplicationService {
         validateRoleNames(request.getRoleNames());
         Set<Role> roles = roleService.findRolesByNames(request.getRoleNames());
         
-        // ドメインサービスでユーザー作成
+        // ドメインサービスでユーザー作成（BCryptによるハッシュ化を含む）
         User user = userDomainService.createUser(username, email, password, roles, currentUser.getId());
-        User savedUser = userRepository.save(user);
         
-        // ドメインイベント発行
-        userDomainService.publishUserCreatedEvent(savedUser, currentUser.getId());
+        User savedUser = transactionTemplate.execute(status -> {
+            User saved = saveAndFlush(user, username, email);
+            
+            // ドメインイベント発行
+            userDomainService.publishUserCreatedEvent(saved, currentUser.getId());
+            return saved;
+        });
         
         return toRegistrationResponse(savedUser);
     }
@@ -73,7 +105,7 @@ public class UserApplicationService {
         userDomainService.updateUser(
                 existingUser, newUsername, newEmail, newRoles, currentUser.getId());
         
-        User updatedUser = userRepository.save(existingUser);
+        User updatedUser = saveAndFlush(existingUser, newUsername, newEmail);
         
         // ドメインイベント発行
         userDomainService.publishUserUpdatedEvent(
@@ -82,15 +114,76 @@ public class UserApplicationService {
         return toUpdateResponse(updatedUser);
     }
     
+    /**
+     * 指定された項目だけを更新する。expectedVersionが指定され、現在のバージョンと異なる場合は
+     * ObjectOptimisticLockingFailureExceptionを投げる(保存時の競合も同じ例外になる)。
+     */
     @Transactional
-    public void deleteUser(Long userId, User currentUser) {
-        User user = userRepository.findById(userId)
+    public UserResponse patchUser(Long userId, UserPatchRequest request, Long expectedVersion, User currentUser) {
+        User existingUser = userRepository.findById(userId)
                 .orElseThrow(() -> new IllegalArgumentException("User not found: " + userId));
+        if (expectedVersion != null && !expectedVersion.equals(existingUser.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(User.class, userId);
+        }
+        
+        // Value Objects作成（バリデーション含む）
+        Username newUsername = request.getUsername() != null ? new Username(request.getUsername()) : null;
+        Email newEmail = request.getEmail() != null ? new Email(request.getEmail()) : null;
+        
+        // ロール取得
+        Set<Role> newRoles = null;
+        if (request.getRoleNames() != null) {
+            validateRoleNames(request.getRoleNames());
+            newRoles = roleService.findRolesByNames(request.getRoleNames());
+        }
+        
+        // 更新前の値を保存
+        Username oldUsername = new Username(existingUser.getUsername());
+        Email oldEmail = new Email(existingUser.getEmail());
+        Set<String> oldRoleNames = existingUser.getRoles().stream()
+                .map(Role::getRoleName)
+                .collect(Collectors.toSet());
+        
+        // ドメインサービスで更新（変更がなければ書き込まない）
+        boolean changed = userDomainService.patchUser(
+                existingUser, newUsername, newEmail, newRoles, currentUser.getId());
+        if (!changed) {
+            return toUserResponse(existingUser);
+        }
+        
+        User updatedUser = saveAndFlush(existingUser,
+                newUsername != null ? newUsername : oldUsername,
+                newEmail != null ? newEmail : oldEmail);
         
         // ドメインイベント発行
-        userDomainService.publishUserDeletedEvent(user, currentUser.getId());
+        userDomainService.publishUserUpdatedEvent(
+                updatedUser, oldUsername, oldEmail, oldRoleNames, currentUser.getId());
         
-        userRepository.delete(user);
+        return toUserResponse(updatedUser);
+    }
+    
+    /**
+     * 論理削除する。ユーザーを読み込まずに1行を更新するだけで、物理削除はDeletedUserPurgerが後から行う。
+     */
+    @Transactional
+    public void deleteUser(Long userId, User currentUser) {
+        UserJdbcRepository.DeletedUser deleted = userJdbcRepository.softDelete(userId, currentUser.getId())
+                .orElseThrow(() -> new IllegalArgumentException("User not found: " + userId));
+        
+        // ドメインイベント発行
+        userDomainService.publishUserDeletedEvent(
+                userId, new Username(deleted.username()), new Email(deleted.email()), currentUser.getId());
+    }
+    
+    /**
+     * 一意制約違反をこの場で検出するためにフラッシュし、ドメインエラーに変換する
+     */
+    private User saveAndFlush(User user, Username username, Email email) {
+        try {
+            return userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            throw userDomainService.translateUniqueViolation(e, username, email);
+        }
     }
     
     private void validateRoleNames(Set<String> roleNames) {
@@ -112,6 +205,20 @@ public class UserApplicationService {
                 .build();
     }
     
+    private UserResponse toUserResponse(User user) {
+        return UserResponse.builder()
+                .id(user.getId())
+                .username(user.getUsername())
+                .email(user.getEmail())
+                .registrationDate(user.getRegistrationDate())
+                .lastUpdated(user.getUpdatedAt())
+                .version(user.getVersion())
+                .roleNames(user.getRoles().stream()
+                        .map(Role::getRoleName)
+                        .collect(Collectors.toSet()))
+                .build();
+    }
+    
     private UserUpdateResponse toUpdateResponse(User user) {
         return UserUpdateResponse.builder()
                 .id(user.getId())
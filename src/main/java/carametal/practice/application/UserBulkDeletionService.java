@@ -0,0 +1,96 @@
+package carametal.practice.application;
+
+import carametal.practice.domain.event.UserDeletedEvent;
+import carametal.practice.domain.service.UserDomainService;
+import carametal.practice.domain.valueobject.Email;
+import carametal.practice.domain.valueobject.Username;
+import carametal.practice.dto.BulkUserDeletionRequest;
+import carametal.practice.dto.BulkUserDeletionResponse;
+import carametal.practice.entity.User;
+import carametal.practice.repository.UserJdbcRepository;
+import carametal.practice.specification.UserSpecification;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * ユーザーの一括削除(論理削除)。
+ * 対象の特定はIDの取得のみ、削除は集合単位のUPDATE 1文で行い、監査ログもまとめて記録する。
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional
+public class UserBulkDeletionService {
+
+    private static final int MAX_USERS = 10_000;
+
+    private final UserJdbcRepository userJdbcRepository;
+    private final UserDomainService userDomainService;
+    private final EntityManager entityManager;
+
+    public BulkUserDeletionResponse deleteUsers(BulkUserDeletionRequest request, User currentUser) {
+        Set<Long> targetIds = new LinkedHashSet<>(resolveTargetIds(request));
+        // 操作者自身は削除しない
+        targetIds.remove(currentUser.getId());
+
+        List<UserJdbcRepository.DeletedUser> deleted = userJdbcRepository.softDeleteAll(targetIds, currentUser.getId());
+        if (!deleted.isEmpty()) {
+            // ドメインイベント発行(監査ログとディレクトリの更新もまとめて行われる)
+            LocalDateTime now = LocalDateTime.now();
+            List<UserDeletedEvent> events = deleted.stream()
+                    .map(user -> UserDeletedEvent.builder()
+                            .userId(user.userId())
+                            .deletedBy(currentUser.getId())
+                            .username(new Username(user.username()))
+                            .email(new Email(user.email()))
+                            .occurredAt(now)
+                            .build())
+                    .toList();
+            userDomainService.publishUserDeletedBatchEvent(events, currentUser.getId());
+        }
+
+        return BulkUserDeletionResponse.builder()
+                .deleted(deleted.size())
+                .deletedUserIds(deleted.stream().map(UserJdbcRepository.DeletedUser::userId).toList())
+                .build();
+    }
+
+    private List<Long> resolveTargetIds(BulkUserDeletionRequest request) {
+        boolean hasIds = request.getUserIds() != null && !request.getUserIds().isEmpty();
+        boolean hasFilter = isPresent(request.getUsername()) || isPresent(request.getEmail());
+        if (hasIds == hasFilter) {
+            throw new IllegalArgumentException("Either user ids or a search filter is required");
+        }
+        if (hasIds) {
+            return request.getUserIds();
+        }
+
+        // 検索条件に一致するユーザーのIDだけを取得する(エンティティは読み込まない)
+        Specification<User> specification = UserSpecification.hasUsernameContaining(request.getUsername())
+                .and(UserSpecification.hasEmailContaining(request.getEmail()));
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
+        Root<User> root = query.from(User.class);
+        query.select(root.get("id")).where(specification.toPredicate(root, query, criteriaBuilder));
+
+        List<Long> ids = entityManager.createQuery(query).setMaxResults(MAX_USERS + 1).getResultList();
+        if (ids.size() > MAX_USERS) {
+            throw new IllegalArgumentException("At most " + MAX_USERS + " users can be deleted at once");
+        }
+        return ids;
+    }
+
+    private boolean isPresent(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
+}
@@ -0,0 +1,257 @@
+package carametal.practice.application;
+
+import carametal.practice.domain.event.UserCreatedEvent;
+import carametal.practice.domain.service.UserDomainService;
+import carametal.practice.domain.valueobject.Email;
+import carametal.practice.domain.valueobject.Password;
+import carametal.practice.domain.valueobject.Username;
+import carametal.practice.dto.BulkUserRegistrationResponse;
+import carametal.practice.dto.BulkUserRegistrationResult;
+import carametal.practice.dto.UserRegistrationRequest;
+import carametal.practice.entity.Role;
+import carametal.practice.entity.User;
+import carametal.practice.exception.ErrorCode;
+import carametal.practice.infrastructure.ParallelPasswordHasher;
+import carametal.practice.repository.RoleRepository;
+import carametal.practice.repository.UserJdbcRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * ユーザーの一括登録。
+ * 検証とパスワードのハッシュ化はトランザクション外で行い、
+ * 一意性チェックは集合単位のクエリ1回、挿入はチャンク毎のJDBCバッチで行う。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UserBulkRegistrationService {
+
+    private final RoleRepository roleRepository;
+    private final UserJdbcRepository userJdbcRepository;
+    private final UserDomainService userDomainService;
+    private final ParallelPasswordHasher passwordHasher;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+
+    @Value("${app.user-bulk.chunk-size:1000}")
+    private int chunkSize;
+
+    public BulkUserRegistrationResponse registerUsers(List<UserRegistrationRequest> requests, User currentUser) {
+        BulkUserRegistrationResult[] results = new BulkUserRegistrationResult[requests.size()];
+
+        List<Candidate> candidates = validate(requests, results);
+        for (int from = 0; from < candidates.size(); from += chunkSize) {
+            List<Candidate> chunk = candidates.subList(from, Math.min(from + chunkSize, candidates.size()));
+            persistChunk(chunk, currentUser.getId(), results);
+        }
+
+        return toResponse(results);
+    }
+
+    /**
+     * 登録可能な要素を抽出する。失敗した要素はresultsに記録する。
+     */
+    private List<Candidate> validate(List<UserRegistrationRequest> requests, BulkUserRegistrationResult[] results) {
+        List<Candidate> candidates = new ArrayList<>();
+        Set<String> requestedUsernames = new HashSet<>();
+        Set<String> requestedEmails = new HashSet<>();
+
+        // Value Objects作成（バリデーション含む）とリクエスト内の重複チェック
+        for (int i = 0; i < requests.size(); i++) {
+            UserRegistrationRequest request = requests.get(i);
+            if (request == null) {
+                results[i] = failed(i, null, "Request is empty");
+                continue;
+            }
+            try {
+                validateRequest(request);
+                Username username = new Username(request.getUsername());
+                Email email = new Email(request.getEmail());
+                Password password = new Password(request.getPassword());
+
+                if (requestedUsernames.contains(username.getValue())) {
+                    throw new IllegalArgumentException("Duplicate username in request: " + username);
+                }
+                if (requestedEmails.contains(email.getValue())) {
+                    throw new IllegalArgumentException("Duplicate email in request: " + email);
+                }
+                // 不正な要素の値は記録しない(後続の要素が重複として誤って拒否されないように)
+                requestedUsernames.add(username.getValue());
+                requestedEmails.add(email.getValue());
+                candidates.add(new Candidate(i, username, email, password, request.getRoleNames(), null));
+            } catch (IllegalArgumentException e) {
+                results[i] = failed(i, request.getUsername(), e.getMessage());
+            }
+        }
+
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+
+        // ロールはまとめて1回で取得
+        Set<String> roleNames = candidates.stream()
+                .flatMap(candidate -> candidate.roleNames().stream())
+                .collect(Collectors.toSet());
+        Map<String, Role> rolesByName = roleRepository.findByRoleNameIn(roleNames).stream()
+                .collect(Collectors.toMap(Role::getRoleName, role -> role));
+
+        // 既存ユーザーとの重複は集合単位のクエリ1回で確認
+        UserJdbcRepository.ExistingValues existing = userJdbcRepository.findExisting(
+                candidates.stream().map(candidate -> candidate.username().getValue()).toList(),
+                candidates.stream().map(candidate -> candidate.email().getValue()).toList());
+
+        List<Candidate> valid = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates) {
+            Set<String> missingRoles = candidate.roleNames().stream()
+                    .filter(name -> !rolesByName.containsKey(name))
+                    .collect(Collectors.toSet());
+            String error = null;
+            if (!missingRoles.isEmpty()) {
+                error = "Invalid roles: " + missingRoles;
+            } else if (existing.usernames().contains(candidate.username().getValue())) {
+                error = "Username already exists: " + candidate.username();
+            } else if (existing.emails().contains(candidate.email().getValue())) {
+                error = "Email already exists: " + candidate.email();
+            }
+
+            if (error != null) {
+                results[candidate.index()] = failed(candidate.index(), candidate.username().getValue(), error);
+            } else {
+                valid.add(candidate.withRoles(candidate.roleNames().stream()
+                        .map(rolesByName::get)
+                        .collect(Collectors.toSet())));
+            }
+        }
+        return valid;
+    }
+
+    private void validateRequest(UserRegistrationRequest request) {
+        Set<ConstraintViolation<UserRegistrationRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            throw new IllegalArgumentException(violations.stream()
+                    .sorted(Comparator.comparing(violation -> violation.getPropertyPath().toString()))
+                    .map(violation -> violation.getPropertyPath() + ": " + toMessage(violation))
+                    .collect(Collectors.joining(", ")));
+        }
+        if (request.getRoleNames() == null || request.getRoleNames().isEmpty()) {
+            throw new IllegalArgumentException("Role names are required");
+        }
+    }
+
+    private String toMessage(ConstraintViolation<?> violation) {
+        // "{USER_REGISTER_001}" 形式のメッセージはErrorCodeの文言に置き換える
+        String template = violation.getMessageTemplate();
+        if (template.startsWith("{") && template.endsWith("}")) {
+            ErrorCode errorCode = ErrorCode.findByCode(template.substring(1, template.length() - 1));
+            if (errorCode != null) {
+                return errorCode.getMessage();
+            }
+        }
+        return violation.getMessage();
+    }
+
+    private void persistChunk(List<Candidate> chunk, Long createdBy, BulkUserRegistrationResult[] results) {
+        // ハッシュ化はトランザクション(コネクション)を保持しない状態で並列に行う
+        List<String> hashes = passwordHasher.encodeAll(chunk.stream().map(Candidate::password).toList());
+        LocalDateTime now = LocalDateTime.now();
+
+        List<UserJdbcRepository.NewUser> newUsers = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            Candidate candidate = chunk.get(i);
+            newUsers.add(new UserJdbcRepository.NewUser(
+                    candidate.username().getValue(),
+                    candidate.email().getValue(),
+                    hashes.get(i),
+                    now,
+                    candidate.roles().stream().map(Role::getId).collect(Collectors.toSet())));
+        }
+
+        try {
+            List<Long> ids = transactionTemplate.execute(status -> {
+                List<Long> insertedIds = userJdbcRepository.insertAll(newUsers, createdBy);
+                userDomainService.publishUserCreatedBatchEvent(toEvents(chunk, insertedIds, createdBy, now), createdBy);
+                return insertedIds;
+            });
+            for (int i = 0; i < chunk.size(); i++) {
+                Candidate candidate = chunk.get(i);
+                results[candidate.index()] = BulkUserRegistrationResult.builder()
+                        .index(candidate.index())
+                        .username(candidate.username().getValue())
+                        .status(BulkUserRegistrationResult.Status.CREATED)
+                        .id(ids.get(i))
+                        .build();
+            }
+        } catch (DataIntegrityViolationException e) {
+            // 検証後に並行して同じユーザー名・メールアドレスが登録された場合
+            log.warn("Bulk registration chunk failed on a constraint violation: {}", e.getMessage());
+            for (Candidate candidate : chunk) {
+                results[candidate.index()] = failed(candidate.index(), candidate.username().getValue(),
+                        "Conflicted with a concurrent registration, please retry");
+            }
+        }
+    }
+
+    private List<UserCreatedEvent> toEvents(List<Candidate> chunk, List<Long> ids, Long createdBy, LocalDateTime now) {
+        List<UserCreatedEvent> events = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            Candidate candidate = chunk.get(i);
+            events.add(UserCreatedEvent.builder()
+                    .userId(ids.get(i))
+                    .createdBy(createdBy)
+                    .username(candidate.username())
+                    .email(candidate.email())
+                    .roleNames(Set.copyOf(candidate.roleNames()))
+                    .occurredAt(now)
+                    .build());
+        }
+        return events;
+    }
+
+    private BulkUserRegistrationResult failed(int index, String username, String error) {
+        return BulkUserRegistrationResult.builder()
+                .index(index)
+                .username(username)
+                .status(BulkUserRegistrationResult.Status.FAILED)
+                .error(error)
+                .build();
+    }
+
+    private BulkUserRegistrationResponse toResponse(BulkUserRegistrationResult[] results) {
+        Map<BulkUserRegistrationResult.Status, Long> counts = new HashMap<>();
+        for (BulkUserRegistrationResult result : results) {
+            counts.merge(result.getStatus(), 1L, Long::sum);
+        }
+        return BulkUserRegistrationResponse.builder()
+                .total(results.length)
+                .created(counts.getOrDefault(BulkUserRegistrationResult.Status.CREATED, 0L).intValue())
+                .failed(counts.getOrDefault(BulkUserRegistrationResult.Status.FAILED, 0L).intValue())
+                .results(Arrays.asList(results))
+                .build();
+    }
+
+    private record Candidate(int index, Username username, Email email, Password password,
+                             Set<String> roleNames, Set<Role> roles) {
+
+        Candidate withRoles(Set<Role> resolvedRoles) {
+            return new Candidate(index, username, email, password, roleNames, resolvedRoles);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package carametal.practice.application;
+
+import carametal.practice.dto.UserImportJobResponse;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * インポートジョブの進捗。ジョブのスレッドが更新し、状態取得のリクエストが並行して読む。
+ */
+class UserImportJob {
+
+    private static final int MAX_ERRORS = 100;
+
+    @Getter
+    private final UUID id = UUID.randomUUID();
+    private final LocalDateTime submittedAt = LocalDateTime.now();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final List<UserImportJobResponse.RowError> errors = new ArrayList<>();
+
+    private volatile UserImportJobResponse.Status status = UserImportJobResponse.Status.QUEUED;
+    private volatile long totalBytes;
+    private volatile long startedAtNanos;
+    @Getter
+    private volatile LocalDateTime finishedAt;
+
+    void start(long totalBytes) {
+        this.totalBytes = totalBytes;
+        this.startedAtNanos = System.nanoTime();
+        this.status = UserImportJobResponse.Status.RUNNING;
+    }
+
+    void addBytesRead(long bytes) {
+        bytesRead.addAndGet(bytes);
+    }
+
+    void recordCreated() {
+        created.incrementAndGet();
+    }
+
+    void recordFailure(long line, String error) {
+        failed.incrementAndGet();
+        synchronized (errors) {
+            if (errors.size() < MAX_ERRORS) {
+                errors.add(new UserImportJobResponse.RowError(line, error));
+            }
+        }
+    }
+
+    void complete() {
+        finishedAt = LocalDateTime.now();
+        status = UserImportJobResponse.Status.COMPLETED;
+    }
+
+    void fail(long line, String error) {
+        synchronized (errors) {
+            errors.add(new UserImportJobResponse.RowError(line, error));
+        }
+        finishedAt = LocalDateTime.now();
+        status = UserImportJobResponse.Status.FAILED;
+    }
+
+    boolean isFinished() {
+        return finishedAt != null;
+    }
+
+    UserImportJobResponse toResponse() {
+        List<UserImportJobResponse.RowError> errorsSnapshot;
+        synchronized (errors) {
+            errorsSnapshot = List.copyOf(errors);
+        }
+        return UserImportJobResponse.builder()
+                .jobId(id)
+                .status(status)
+                .processed(created.get() + failed.get())
+                .created(created.get())
+                .failed(failed.get())
+                .etaSeconds(estimateRemainingSeconds())
+                .submittedAt(submittedAt)
+                .finishedAt(finishedAt)
+                .errors(errorsSnapshot)
+                .build();
+    }
+
+    private Long estimateRemainingSeconds() {
+        long read = bytesRead.get();
+        if (status != UserImportJobResponse.Status.RUNNING || read == 0) {
+            return null;
+        }
+        long elapsedNanos = System.nanoTime() - startedAtNanos;
+        long remainingNanos = (long) (elapsedNanos * ((double) Math.max(totalBytes - read, 0) / read));
+        return Duration.ofNanos(remainingNanos).toSeconds();
+    }
+}
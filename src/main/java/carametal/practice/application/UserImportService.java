@@ -0,0 +1,151 @@
+package carametal.practice.application;
+
+import carametal.practice.dto.BulkUserRegistrationResponse;
+import carametal.practice.dto.BulkUserRegistrationResult;
+import carametal.practice.dto.UserImportJobResponse;
+import carametal.practice.dto.UserRegistrationRequest;
+import carametal.practice.entity.User;
+import carametal.practice.infrastructure.UserImportRecordReader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * CSV / NDJSONのユーザーインポート。
+ * アップロードは一時ファイルへストリームのまま書き出してすぐにジョブIDを返し、
+ * バックグラウンドで1行ずつ読みながらチャンク毎にUserBulkRegistrationServiceで登録する。
+ * メモリ使用量はファイルサイズによらずチャンクサイズ分で一定になる。
+ * ジョブの状態はこのインスタンスのメモリ上に保持する。
+ */
+@Slf4j
+@Service
+public class UserImportService {
+
+    private final UserBulkRegistrationService userBulkRegistrationService;
+    private final ObjectMapper objectMapper;
+    private final Map<UUID, UserImportJob> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService importExecutor;
+
+    @Value("${app.user-import.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${app.user-import.retention:PT24H}")
+    private Duration retention;
+
+    public UserImportService(UserBulkRegistrationService userBulkRegistrationService,
+                             ObjectMapper objectMapper,
+                             @Value("${app.user-import.concurrency:2}") int concurrency) {
+        this.userBulkRegistrationService = userBulkRegistrationService;
+        this.objectMapper = objectMapper;
+        this.importExecutor = Executors.newFixedThreadPool(concurrency,
+                Thread.ofPlatform().name("user-import-", 0).daemon(true).factory());
+    }
+
+    public UserImportJobResponse submit(InputStream upload, UserImportRecordReader.Format format, User currentUser) {
+        evictFinishedJobs();
+
+        Path file;
+        try {
+            file = Files.createTempFile("user-import-", "." + format.name().toLowerCase());
+            Files.copy(upload, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to receive the import file", e);
+        }
+
+        UserImportJob job = new UserImportJob();
+        jobs.put(job.getId(), job);
+        importExecutor.execute(() -> run(job, file, format, currentUser));
+        return job.toResponse();
+    }
+
+    public Optional<UserImportJobResponse> getJob(UUID jobId) {
+        return Optional.ofNullable(jobs.get(jobId)).map(UserImportJob::toResponse);
+    }
+
+    private void run(UserImportJob job, Path file, UserImportRecordReader.Format format, User currentUser) {
+        long lastLine = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            job.start(Files.size(file));
+            UserImportRecordReader records = new UserImportRecordReader(reader, format, objectMapper);
+
+            List<UserImportRecordReader.Record> chunk = new ArrayList<>(chunkSize);
+            UserImportRecordReader.Record record;
+            while ((record = records.next()) != null) {
+                lastLine = record.lineNumber();
+                if (record.error() != null) {
+                    job.recordFailure(record.lineNumber(), record.error());
+                    job.addBytesRead(record.bytes());
+                    continue;
+                }
+                chunk.add(record);
+                if (chunk.size() == chunkSize) {
+                    registerChunk(job, chunk, currentUser);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                registerChunk(job, chunk, currentUser);
+            }
+            job.complete();
+        } catch (IOException | RuntimeException e) {
+            log.error("User import job {} failed at line {}", job.getId(), lastLine, e);
+            job.fail(lastLine, "Import aborted: " + e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Failed to delete import file {}", file, e);
+            }
+        }
+    }
+
+    private void registerChunk(UserImportJob job, List<UserImportRecordReader.Record> chunk, User currentUser) {
+        List<UserRegistrationRequest> requests = chunk.stream().map(UserImportRecordReader.Record::request).toList();
+        try {
+            BulkUserRegistrationResponse response = userBulkRegistrationService.registerUsers(requests, currentUser);
+            for (BulkUserRegistrationResult result : response.getResults()) {
+                if (result.getStatus() == BulkUserRegistrationResult.Status.CREATED) {
+                    job.recordCreated();
+                } else {
+                    job.recordFailure(chunk.get(result.getIndex()).lineNumber(), result.getError());
+                }
+            }
+        } catch (RuntimeException e) {
+            // チャンク単位の失敗(DB障害等)でもジョブは続行する
+            log.warn("User import job {} failed to register a chunk", job.getId(), e);
+            chunk.forEach(record -> job.recordFailure(record.lineNumber(), "Registration failed: " + e.getMessage()));
+        }
+        chunk.forEach(record -> job.addBytesRead(record.bytes()));
+    }
+
+    private void evictFinishedJobs() {
+        LocalDateTime threshold = LocalDateTime.now().minus(retention);
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(threshold));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        importExecutor.shutdownNow();
+    }
+}
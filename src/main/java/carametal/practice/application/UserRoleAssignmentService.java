@@ -0,0 +1,66 @@
+package carametal.practice.application;
+
+import carametal.practice.domain.event.UserRolesChangedBatchEvent;
+import carametal.practice.domain.service.UserDomainService;
+import carametal.practice.dto.BulkRoleChangeResponse;
+import carametal.practice.entity.Role;
+import carametal.practice.entity.User;
+import carametal.practice.repository.RoleRepository;
+import carametal.practice.repository.UserJdbcRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * 1つのロールを複数ユーザーへまとめて付与・剥奪する。
+ * ユーザーを1件ずつ読み込まず、user_rolesに対する集合単位のSQL 1文で変更する。
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional
+public class UserRoleAssignmentService {
+
+    private final RoleRepository roleRepository;
+    private final UserJdbcRepository userJdbcRepository;
+    private final UserDomainService userDomainService;
+
+    public BulkRoleChangeResponse assignRole(String roleName, List<Long> userIds, User currentUser) {
+        Role role = findRole(roleName);
+        List<Long> distinctIds = List.copyOf(new LinkedHashSet<>(userIds));
+
+        List<Long> changedIds = userJdbcRepository.assignRole(role.getId(), distinctIds, currentUser.getId());
+        return publishAndRespond(role, UserRolesChangedBatchEvent.Change.ASSIGNED, distinctIds, changedIds, currentUser);
+    }
+
+    public BulkRoleChangeResponse removeRole(String roleName, List<Long> userIds, User currentUser) {
+        Role role = findRole(roleName);
+        List<Long> distinctIds = List.copyOf(new LinkedHashSet<>(userIds));
+
+        List<Long> changedIds = userJdbcRepository.removeRole(role.getId(), distinctIds, currentUser.getId());
+        return publishAndRespond(role, UserRolesChangedBatchEvent.Change.REMOVED, distinctIds, changedIds, currentUser);
+    }
+
+    private Role findRole(String roleName) {
+        return roleRepository.findByRoleName(roleName)
+                .orElseThrow(() -> new IllegalArgumentException("Role not found: " + roleName));
+    }
+
+    private BulkRoleChangeResponse publishAndRespond(Role role, UserRolesChangedBatchEvent.Change change,
+                                                     List<Long> requestedIds, List<Long> changedIds, User currentUser) {
+        if (!changedIds.isEmpty()) {
+            // ドメインイベント発行(監査ログもまとめて1バッチで記録される)
+            userDomainService.publishUserRolesChangedBatchEvent(
+                    role.getRoleName(), change, changedIds, currentUser.getId());
+        }
+
+        return BulkRoleChangeResponse.builder()
+                .roleName(role.getRoleName())
+                .requested(requestedIds.size())
+                .changed(changedIds.size())
+                .changedUserIds(changedIds)
+                .build();
+    }
+}
@@ -34,6 +34,7 @@ public class SecurityConfig {
             )
             .authorizeHttpRequests(auth -> auth
                 .requestMatchers("/api/auth/login").permitAll()
+                .requestMatchers("/actuator/**").hasRole("SYSTEM_ADMIN")
                 .anyRequest().authenticated()
             )
             .userDetailsService(userDetailsService)
@@ -0,0 +1,176 @@
+package carametal.practice.controller;
+
+import carametal.practice.dto.AuditActionStatResponse;
+import carametal.practice.dto.AuditActorStatResponse;
+import carametal.practice.dto.AuditArchiveSegmentResponse;
+import carametal.practice.dto.AuditEventPageResponse;
+import carametal.practice.entity.UserAuditEvent;
+import carametal.practice.infrastructure.UserAuditArchive;
+import carametal.practice.infrastructure.UserAuditStreamBroadcaster;
+import carametal.practice.repository.UserAuditEventJdbcRepository;
+import carametal.practice.service.UserAuditService;
+import carametal.practice.service.UserAuditStatsService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/audit")
+@RequiredArgsConstructor
+public class AuditController {
+
+    // Tomcatのsendfile用のリクエスト属性(org.apache.catalina.Globals)
+    private static final String SENDFILE_SUPPORTED_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
+    private final UserAuditService userAuditService;
+    private final UserAuditStatsService userAuditStatsService;
+    private final UserAuditStreamBroadcaster userAuditStreamBroadcaster;
+    private final UserAuditArchive userAuditArchive;
+
+    /**
+     * 操作ログを新しい順に返す。次のページはレスポンスのnextCursorをcursorに指定して取得する。
+     * userIdは操作したユーザー、targetUserIdは操作されたユーザー。期間はfrom以上to未満。
+     * detailsはdetailsに含まれるべきJSONオブジェクト(例: {"oldEmail":"a@example.com"})、
+     * detailsPathはdetailsに対するJSONPathの条件(例: $.newRoles[*] ? (@ == "USER_ADMIN"))。
+     * detailsPathはアーカイブ済みの期間には適用できないため、期間がアーカイブ済みの月にかかる場合は400を返す。
+     */
+    @GetMapping
+    @PreAuthorize("hasRole('SYSTEM_ADMIN') or hasRole('USER_ADMIN')")
+    public ResponseEntity<AuditEventPageResponse> findAuditEvents(
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) Long targetUserId,
+            @RequestParam(required = false) UserAuditEvent.AuditAction action,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String details,
+            @RequestParam(required = false) String detailsPath,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        try {
+            UserAuditEventJdbcRepository.Filter filter = new UserAuditEventJdbcRepository.Filter(
+                    userId, targetUserId, action, from, to, details, detailsPath);
+            return ResponseEntity.ok(userAuditService.findAuditEvents(filter, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * 操作種別ごとの件数をgranularity(HOUR | DAY)単位で返す。期間はfrom以上to未満。
+     */
+    @GetMapping("/stats/actions")
+    @PreAuthorize("hasRole('SYSTEM_ADMIN') or hasRole('USER_ADMIN')")
+    public ResponseEntity<List<AuditActionStatResponse>> countByAction(
+            @RequestParam(defaultValue = "HOUR") UserAuditStatsService.Granularity granularity,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) UserAuditEvent.AuditAction action) {
+        try {
+            return ResponseEntity.ok(userAuditStatsService.countByAction(granularity, from, to, action));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * 操作者ごとの日次件数を返す。期間はfrom以上to未満の日付。
+     */
+    @GetMapping("/stats/actors")
+    @PreAuthorize("hasRole('SYSTEM_ADMIN') or hasRole('USER_ADMIN')")
+    public ResponseEntity<List<AuditActorStatResponse>> countByActor(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Long userId) {
+        try {
+            return ResponseEntity.ok(userAuditStatsService.countByActor(from, to, userId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * アーカイブ済みのセグメントを古い順に返す。
+     */
+    @GetMapping("/archive")
+    @PreAuthorize("hasRole('SYSTEM_ADMIN') or hasRole('USER_ADMIN')")
+    public ResponseEntity<List<AuditArchiveSegmentResponse>> findArchiveSegments() {
+        List<AuditArchiveSegmentResponse> segments = userAuditArchive.findSegments().stream()
+                .map(segment -> AuditArchiveSegmentResponse.builder()
+                        .name(segment.name())
+                        .month(segment.month())
+                        .sizeBytes(segment.sizeBytes())
+                        .rows(segment.rows())
+                        .from(segment.from())
+                        .to(segment.to())
+                        .build())
+                .toList();
+        return ResponseEntity.ok(segments);
+    }
+
+    /**
+     * セグメントファイルをそのままダウンロードする。
+     * コンテナがsendfileに対応していればTomcatに転送を任せ、そうでなければFileChannel.transferToで送る。
+     */
+    @GetMapping("/archive/{name}")
+    @PreAuthorize("hasRole('SYSTEM_ADMIN') or hasRole('USER_ADMIN')")
+    public void downloadArchiveSegment(@PathVariable String name,
+                                       HttpServletRequest request,
+                                       HttpServletResponse response) throws IOException {
+        Optional<Path> segment = userAuditArchive.resolve(name);
+        if (segment.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        Path path = segment.get();
+        long size = Files.size(path);
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setContentLengthLong(size);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(name).build().toString());
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTRIBUTE))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTRIBUTE, 0L);
+            request.setAttribute(SENDFILE_END_ATTRIBUTE, size);
+            return;
+        }
+        userAuditArchive.transferTo(path, Channels.newChannel(response.getOutputStream()));
+    }
+
+    /**
+     * ユーザーの変更をServer-Sent Eventsで流す。イベント名は操作種別で、IDを再接続時のLast-Event-IDに使う。
+     * 「resync」イベントを受け取った場合は取りこぼしがあるため、/api/auditから取り直す。
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('SYSTEM_ADMIN') or hasRole('USER_ADMIN')")
+    public SseEmitter streamAuditEvents(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return userAuditStreamBroadcaster.subscribe(lastEventId);
+    }
+}
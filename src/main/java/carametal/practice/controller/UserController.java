@@ -1,32 +1,74 @@
 package carametal.practice.controller;
 
 import carametal.practice.annotation.CurrentUser;
+import carametal.practice.application.UserBulkDeletionService;
+import carametal.practice.application.UserBulkRegistrationService;
+import carametal.practice.application.UserImportService;
+import carametal.practice.application.UserRoleAssignmentService;
+import carametal.practice.dto.BulkRoleChangeRequest;
+import carametal.practice.dto.BulkRoleChangeResponse;
+import carametal.practice.dto.BulkUserDeletionRequest;
+import carametal.practice.dto.BulkUserDeletionResponse;
+import carametal.practice.dto.BulkUserRegistrationRequest;
+import carametal.practice.dto.BulkUserRegistrationResponse;
+import carametal.practice.dto.UserChangeFeedResponse;
+import carametal.practice.dto.UserImportJobResponse;
+import carametal.practice.dto.UserPatchRequest;
 import carametal.practice.dto.UserRegistrationRequest;
 import carametal.practice.dto.UserRegistrationResponse;
+import carametal.practice.dto.UserResponse;
 import carametal.practice.dto.UserUpdateRequest;
 import carametal.practice.dto.UserUpdateResponse;
 import carametal.practice.entity.User;
 import carametal.practice.application.UserApplicationService;
-import carametal.practice.repository.UserRepository;
-import carametal.practice.specification.UserSpecification;
+import carametal.practice.infrastructure.UserImportRecordReader;
+import carametal.practice.infrastructure.UserSearchEngine;
+import carametal.practice.service.UserChangeFeedService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
-import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.accept.ContentNegotiationManager;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/users")
 @RequiredArgsConstructor
 public class UserController {
 
+    /**
+     * ユーザー詳細を返せる表現(HttpMessageConverterConfigの登録順)。強いETagは表現ごとに異なる値にする。
+     */
+    private static final List<MediaType> USER_REPRESENTATIONS = List.of(
+            MediaType.APPLICATION_JSON,
+            MediaType.APPLICATION_CBOR,
+            new MediaType("application", "x-jackson-smile"));
+
     private final UserApplicationService userApplicationService;
-    private final UserRepository userRepository;
+    private final UserBulkRegistrationService userBulkRegistrationService;
+    private final UserBulkDeletionService userBulkDeletionService;
+    private final UserImportService userImportService;
+    private final UserRoleAssignmentService userRoleAssignmentService;
+    private final UserSearchEngine userSearchEngine;
+    private final UserChangeFeedService userChangeFeedService;
+    private final ContentNegotiationManager contentNegotiationManager;
 
     @PostMapping("/register")
     @PreAuthorize("hasRole('SYSTEM_ADMIN') or hasRole('USER_ADMIN')")
@@ -41,6 +83,107 @@ public class UserController {
         }
     }
 
+    @PostMapping("/register/bulk")
+    @PreAuthorize("hasRole('SYSTEM_ADMIN') or hasRole('USER_ADMIN')")
+    public ResponseEntity<BulkUserRegistrationResponse> registerUsers(
+            @Valid @RequestBody BulkUserRegistrationRequest request,
+            @CurrentUser User currentUser) {
+        BulkUserRegistrationResponse response = userBulkRegistrationService.registerUsers(request.getUsers(), currentUser);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * CSV(text/csv)またはNDJSON(application/x-ndjson)のインポートを受け付け、ジョブIDを返す。
+     * 進捗はLocationヘッダーのURLで取得する。
+     */
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    @PreAuthorize("hasRole('SYSTEM_ADMIN') or hasRole('USER_ADMIN')")
+    public ResponseEntity<UserImportJobResponse> importUsers(
+            HttpServletRequest request,
+            @CurrentUser User currentUser) throws IOException {
+        UserImportRecordReader.Format format = request.getContentType().startsWith("text/csv")
+                ? UserImportRecordReader.Format.CSV
+                : UserImportRecordReader.Format.NDJSON;
+        UserImportJobResponse response = userImportService.submit(request.getInputStream(), format, currentUser);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/users/import/" + response.getJobId()))
+                .body(response);
+    }
+
+    @GetMapping("/import/{jobId}")
+    @PreAuthorize("hasRole('SYSTEM_ADMIN') or hasRole('USER_ADMIN')")
+    public ResponseEntity<UserImportJobResponse> getImportJob(@PathVariable UUID jobId) {
+        return userImportService.getJob(jobId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/delete/bulk")
+    @PreAuthorize("hasRole('SYSTEM_ADMIN') or hasRole('USER_ADMIN')")
+    public ResponseEntity<BulkUserDeletionResponse> deleteUsers(
+            @Valid @RequestBody BulkUserDeletionRequest request,
+            @CurrentUser User currentUser) {
+        try {
+            return ResponseEntity.ok(userBulkDeletionService.deleteUsers(request, currentUser));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping("/roles/{roleName}/assign")
+    @PreAuthorize("hasRole('SYSTEM_ADMIN') or hasRole('USER_ADMIN')")
+    public ResponseEntity<BulkRoleChangeResponse> assignRole(
+            @PathVariable String roleName,
+            @Valid @RequestBody BulkRoleChangeRequest request,
+            @CurrentUser User currentUser) {
+        try {
+            return ResponseEntity.ok(userRoleAssignmentService.assignRole(roleName, request.getUserIds(), currentUser));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @PostMapping("/roles/{roleName}/remove")
+    @PreAuthorize("hasRole('SYSTEM_ADMIN') or hasRole('USER_ADMIN')")
+    public ResponseEntity<BulkRoleChangeResponse> removeRole(
+            @PathVariable String roleName,
+            @Valid @RequestBody BulkRoleChangeRequest request,
+            @CurrentUser User currentUser) {
+        try {
+            return ResponseEntity.ok(userRoleAssignmentService.removeRole(roleName, request.getUserIds(), currentUser));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @GetMapping("/{userId}")
+    @PreAuthorize("hasRole('SYSTEM_ADMIN') or hasRole('USER_ADMIN')")
+    public ResponseEntity<UserResponse> getUser(
+            @PathVariable Long userId,
+            NativeWebRequest webRequest) throws HttpMediaTypeNotAcceptableException {
+        // バージョンと表現(JSON/CBOR/Smile)で強いETagを判定し、未変更ならユーザー本体を読み込まずに304を返す
+        Optional<Long> version = userApplicationService.findUserVersion(userId);
+        if (version.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        MediaType representation = negotiateRepresentation(webRequest);
+        String eTag = userETag(userId, version.get(), representation);
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+
+        try {
+            UserResponse response = userApplicationService.getUser(userId);
+            return ResponseEntity.ok()
+                    .contentType(representation)
+                    .eTag(userETag(userId, response.getVersion(), representation))
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                    .body(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
     @PutMapping("/{userId}")
     @PreAuthorize("hasRole('SYSTEM_ADMIN') or hasRole('USER_ADMIN')")
     public ResponseEntity<UserUpdateResponse> updateUser(
@@ -55,6 +198,36 @@ public class UserController {
                 return ResponseEntity.notFound().build();
             }
             return ResponseEntity.badRequest().build();
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    @PatchMapping("/{userId}")
+    @PreAuthorize("hasRole('SYSTEM_ADMIN') or hasRole('USER_ADMIN')")
+    public ResponseEntity<UserResponse> patchUser(
+            @PathVariable Long userId,
+            @Valid @RequestBody UserPatchRequest request,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @CurrentUser User currentUser,
+            NativeWebRequest webRequest) throws HttpMediaTypeNotAcceptableException {
+        MediaType representation = negotiateRepresentation(webRequest);
+        try {
+            // If-Match(GETで返したETag)を優先し、なければリクエストのversionを使う
+            Long expectedVersion = ifMatch != null ? parseUserETag(userId, ifMatch) : request.getVersion();
+            UserResponse response = userApplicationService.patchUser(userId, request, expectedVersion, currentUser);
+            return ResponseEntity.ok()
+                    .contentType(representation)
+                    .eTag(userETag(userId, response.getVersion(), representation))
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                    .body(response);
+        } catch (IllegalArgumentException e) {
+            if (e.getMessage().contains("not found")) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.badRequest().build();
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         }
     }
 
@@ -71,34 +244,97 @@ public class UserController {
         }
     }
 
+    /**
+     * afterの位置より後のユーザーの作成・更新・削除を返す。次回はレスポンスのnextCursorをafterに指定する。
+     * afterを省略すると保持している最も古い変更から返す。保持期間を過ぎて削除された範囲を指すafterには410を返すため、
+     * クライアントは検索で全件を取り直してから、afterを省略して読み直す。
+     */
+    @GetMapping("/changes")
+    @PreAuthorize("hasRole('SYSTEM_ADMIN') or hasRole('USER_ADMIN')")
+    public ResponseEntity<UserChangeFeedResponse> findChanges(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "500") int limit) {
+        try {
+            return ResponseEntity.ok(userChangeFeedService.findChanges(after, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (UserChangeFeedService.ExpiredCursorException e) {
+            return ResponseEntity.status(HttpStatus.GONE).build();
+        }
+    }
+
     @GetMapping("/search")
     @PreAuthorize("hasRole('SYSTEM_ADMIN') or hasRole('USER_ADMIN')")
-    public ResponseEntity<Page<User>> searchUsers(
+    public ResponseEntity<Page<?>> searchUsers(
             @RequestParam(required = false) String username,
             @RequestParam(required = false) String email,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") String sort,
-            @RequestParam(defaultValue = "ASC") String direction) {
-        
-        Specification<User> spec = null;
+            @RequestParam(defaultValue = "ASC") String direction,
+            @RequestParam(defaultValue = "USERS") UserSearchEngine.Source source,
+            WebRequest webRequest) {
         
-        if (username != null && !username.trim().isEmpty()) {
-            spec = UserSpecification.hasUsernameContaining(username);
+        // ディレクトリ全体の変更カウンタから弱いETagを生成し、変更がなければ検索自体を省略する
+        String eTag = "W/\"" + userSearchEngine.currentVersion() + "\"";
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
         }
-        
-        if (email != null && !email.trim().isEmpty()) {
-            if (spec == null) {
-                spec = UserSpecification.hasEmailContaining(email);
-            } else {
-                spec = spec.and(UserSpecification.hasEmailContaining(email));
+
+        try {
+            Pageable pageable = UserSearchEngine.pageRequest(page, size, sort, direction);
+
+            Page<?> users = source == UserSearchEngine.Source.DIRECTORY
+                    ? userSearchEngine.searchDirectory(username, email, pageable)
+                    : userSearchEngine.search(username, email, pageable);
+            return ResponseEntity.ok()
+                    .eTag(eTag)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                    .body(users);
+        } catch (UserSearchEngine.InvalidSearchException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (QueryTimeoutException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    /**
+     * Acceptヘッダーから、ユーザー詳細を返す表現を決める(Acceptの優先順で最初に一致したもの)。
+     */
+    private MediaType negotiateRepresentation(NativeWebRequest webRequest) throws HttpMediaTypeNotAcceptableException {
+        for (MediaType requested : contentNegotiationManager.resolveMediaTypes(webRequest)) {
+            for (MediaType representation : USER_REPRESENTATIONS) {
+                if (requested.isCompatibleWith(representation)) {
+                    return representation;
+                }
             }
         }
-        
-        Sort.Direction sortDirection = Sort.Direction.fromString(direction);
-        Pageable pageable = PageRequest.of(page, size, Sort.by(sortDirection, sort));
-        
-        Page<User> users = spec != null ? userRepository.findAll(spec, pageable) : userRepository.findAll(pageable);
-        return ResponseEntity.ok(users);
+        throw new HttpMediaTypeNotAcceptableException(USER_REPRESENTATIONS);
+    }
+
+    /**
+     * 強いETag("ユーザーID-バージョン-表現")。同じバージョンでもJSON/CBOR/Smileはバイト列が異なるため表現を含める。
+     */
+    private String userETag(Long userId, Long version, MediaType representation) {
+        return "\"" + userId + "-" + version + "-" + representation.getSubtype() + "\"";
+    }
+
+    /**
+     * If-MatchのETagからバージョンを取り出す。楽観ロックの判定はバージョンのみで行うため、表現は問わない。
+     */
+    private Long parseUserETag(Long userId, String eTag) {
+        String prefix = "\"" + userId + "-";
+        if (!eTag.startsWith(prefix) || !eTag.endsWith("\"")) {
+            throw new IllegalArgumentException("Invalid If-Match: " + eTag);
+        }
+        int versionEnd = eTag.indexOf('-', prefix.length());
+        if (versionEnd < 0) {
+            throw new IllegalArgumentException("Invalid If-Match: " + eTag);
+        }
+        try {
+            return Long.parseLong(eTag.substring(prefix.length(), versionEnd));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid If-Match: " + eTag);
+        }
     }
 }
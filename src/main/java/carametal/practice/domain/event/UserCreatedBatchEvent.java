@@ -0,0 +1,19 @@
+package carametal.practice.domain.event;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 一括登録で作成されたユーザーをまとめて通知するイベント。
+ * リスナーは個々のUserCreatedEventを1件ずつではなく集合として処理する。
+ */
+@Getter
+@Builder
+public class UserCreatedBatchEvent {
+    private final Long createdBy;
+    private final List<UserCreatedEvent> events;
+    private final LocalDateTime occurredAt;
+}
@@ -0,0 +1,19 @@
+package carametal.practice.domain.event;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 一括削除されたユーザーをまとめて通知するイベント。
+ * リスナーは個々のUserDeletedEventを1件ずつではなく集合として処理する。
+ */
+@Getter
+@Builder
+public class UserDeletedBatchEvent {
+    private final Long deletedBy;
+    private final List<UserDeletedEvent> events;
+    private final LocalDateTime occurredAt;
+}
@@ -0,0 +1,26 @@
+package carametal.practice.domain.event;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 1つのロールを複数ユーザーへまとめて付与・剥奪したことを通知するイベント。
+ * userIdsには実際に変更があったユーザーだけを含む。
+ */
+@Getter
+@Builder
+public class UserRolesChangedBatchEvent {
+    private final Long changedBy;
+    private final String roleName;
+    private final Change change;
+    private final List<Long> userIds;
+    private final LocalDateTime occurredAt;
+
+    public enum Change {
+        ASSIGNED,
+        REMOVED
+    }
+}
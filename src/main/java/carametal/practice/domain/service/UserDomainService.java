@@ -1,7 +1,10 @@
 package carametal.practice.domain.service;
 
+import carametal.practice.domain.event.UserCreatedBatchEvent;
 import carametal.practice.domain.event.UserCreatedEvent;
+import carametal.practice.domain.event.UserDeletedBatchEvent;
 import carametal.practice.domain.event.UserDeletedEvent;
+import carametal.practice.domain.event.UserRolesChangedBatchEvent;
 import carametal.practice.domain.event.UserUpdatedEvent;
 import carametal.practice.domain.valueobject.Email;
 import carametal.practice.domain.valueobject.Password;
@@ -10,10 +13,15 @@ import carametal.practice.entity.Role;
 import carametal.practice.entity.User;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -25,16 +33,18 @@ public class UserDomainService {
     private final PasswordEncoder passwordEncoder;
     private final ApplicationEventPublisher eventPublisher;
     
+    /**
+     * 一意性は事前に問い合わせず、挿入時のDB制約で保証する。
+     * 制約違反は{@link #translateUniqueViolation}でドメインエラーに変換する。
+     */
     public User createUser(Username username, Email email, Password password, 
                           Set<Role> roles, Long createdBy) {
-        validateUniqueConstraints(username, email);
-        
         User user = User.builder()
                 .username(username.getValue())
                 .email(email.getValue())
                 .password(passwordEncoder.encode(password.getRawValue()))
                 .registrationDate(LocalDateTime.now())
-                .roles(roles)
+                .roles(new HashSet<>(roles))
                 .build();
         
         user.setCreatedBy(createdBy);
@@ -58,17 +68,74 @@ public class UserDomainService {
         eventPublisher.publishEvent(event);
     }
     
+    public void publishUserCreatedBatchEvent(List<UserCreatedEvent> events, Long createdBy) {
+        UserCreatedBatchEvent event = UserCreatedBatchEvent.builder()
+                .createdBy(createdBy)
+                .events(events)
+                .occurredAt(LocalDateTime.now())
+                .build();
+        
+        eventPublisher.publishEvent(event);
+    }
+    
+    public void publishUserRolesChangedBatchEvent(String roleName, UserRolesChangedBatchEvent.Change change,
+                                                  List<Long> userIds, Long changedBy) {
+        UserRolesChangedBatchEvent event = UserRolesChangedBatchEvent.builder()
+                .changedBy(changedBy)
+                .roleName(roleName)
+                .change(change)
+                .userIds(userIds)
+                .occurredAt(LocalDateTime.now())
+                .build();
+        
+        eventPublisher.publishEvent(event);
+    }
     
     public void updateUser(User existingUser, Username newUsername, 
                           Email newEmail, Set<Role> newRoles, Long updatedBy) {
-        validateUniqueConstraintsForUpdate(existingUser.getId(), newUsername, newEmail);
+        // ユーザー名・メールアドレスが変わらない場合は重複チェック不要
+        if (!newUsername.getValue().equals(existingUser.getUsername())
+                || !newEmail.getValue().equals(existingUser.getEmail())) {
+            validateUniqueConstraints(newUsername, newEmail, existingUser.getId());
+        }
         
         existingUser.setUsername(newUsername.getValue());
         existingUser.setEmail(newEmail.getValue());
-        existingUser.setRoles(newRoles);
+        applyRoles(existingUser, newRoles);
         existingUser.setUpdatedBy(updatedBy);
     }
     
+    /**
+     * 指定された項目(nullでないもの)だけを変更する。
+     * 
+     * @return 変更があった場合true
+     */
+    public boolean patchUser(User existingUser, Username newUsername, Email newEmail,
+                             Set<Role> newRoles, Long updatedBy) {
+        boolean usernameChanged = newUsername != null && !newUsername.getValue().equals(existingUser.getUsername());
+        boolean emailChanged = newEmail != null && !newEmail.getValue().equals(existingUser.getEmail());
+        if (usernameChanged || emailChanged) {
+            validateUniqueConstraints(
+                    usernameChanged ? newUsername : new Username(existingUser.getUsername()),
+                    emailChanged ? newEmail : new Email(existingUser.getEmail()),
+                    existingUser.getId());
+        }
+        
+        if (usernameChanged) {
+            existingUser.setUsername(newUsername.getValue());
+        }
+        if (emailChanged) {
+            existingUser.setEmail(newEmail.getValue());
+        }
+        boolean rolesChanged = newRoles != null && applyRoles(existingUser, newRoles);
+        
+        boolean changed = usernameChanged || emailChanged || rolesChanged;
+        if (changed) {
+            existingUser.setUpdatedBy(updatedBy);
+        }
+        return changed;
+    }
+    
     public void publishUserUpdatedEvent(User user, Username oldUsername, Email oldEmail, 
                                        Set<String> oldRoleNames, Long updatedBy) {
         UserUpdatedEvent event = UserUpdatedEvent.builder()
@@ -89,32 +156,86 @@ public class UserDomainService {
     }
     
     public void publishUserDeletedEvent(User user, Long deletedBy) {
+        publishUserDeletedEvent(user.getId(), new Username(user.getUsername()), new Email(user.getEmail()), deletedBy);
+    }
+    
+    public void publishUserDeletedEvent(Long userId, Username username, Email email, Long deletedBy) {
         UserDeletedEvent event = UserDeletedEvent.builder()
-                .userId(user.getId())
+                .userId(userId)
                 .deletedBy(deletedBy)
-                .username(new Username(user.getUsername()))
-                .email(new Email(user.getEmail()))
+                .username(username)
+                .email(email)
                 .occurredAt(LocalDateTime.now())
                 .build();
         
         eventPublisher.publishEvent(event);
     }
     
-    private void validateUniqueConstraints(Username username, Email email) {
-        if (!uniquenessChecker.isUsernameUnique(username)) {
-            throw new IllegalArgumentException("Username already exists: " + username);
+    /**
+     * 一括削除したユーザーの削除イベントを1件のイベントにまとめて発行する。
+     */
+    public void publishUserDeletedBatchEvent(List<UserDeletedEvent> events, Long deletedBy) {
+        UserDeletedBatchEvent event = UserDeletedBatchEvent.builder()
+                .deletedBy(deletedBy)
+                .events(events)
+                .occurredAt(LocalDateTime.now())
+                .build();
+        
+        eventPublisher.publishEvent(event);
+    }
+    
+    /**
+     * コレクションを差し替えるとuser_rolesが全件削除・再挿入されるため、差分の行だけを変更する。
+     */
+    private boolean applyRoles(User user, Set<Role> newRoles) {
+        if (user.getRoles() == null) {
+            user.setRoles(new HashSet<>(newRoles));
+            return true;
+        }
+        
+        Set<Long> newRoleIds = newRoles.stream().map(Role::getId).collect(Collectors.toSet());
+        Set<Long> currentRoleIds = user.getRoles().stream().map(Role::getId).collect(Collectors.toSet());
+        if (newRoleIds.equals(currentRoleIds)) {
+            return false;
+        }
+        
+        user.getRoles().removeIf(role -> !newRoleIds.contains(role.getId()));
+        newRoles.stream()
+                .filter(role -> !currentRoleIds.contains(role.getId()))
+                .forEach(user.getRoles()::add);
+        return true;
+    }
+    
+    /**
+     * users の一意制約違反をドメインエラーに変換する。該当しない場合は元の例外を返す。
+     */
+    public RuntimeException translateUniqueViolation(DataIntegrityViolationException e,
+                                                     Username username, Email email) {
+        String message = String.valueOf(NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+        boolean usernameConflict = message.contains(User.USERNAME_UNIQUE_CONSTRAINT);
+        boolean emailConflict = message.contains(User.EMAIL_UNIQUE_CONSTRAINT);
+        if (!usernameConflict && !emailConflict) {
+            return e;
         }
-        if (!uniquenessChecker.isEmailUnique(email)) {
-            throw new IllegalArgumentException("Email already exists: " + email);
+        return conflictError(new UserUniquenessChecker.Conflicts(usernameConflict, emailConflict), username, email);
+    }
+    
+    private void validateUniqueConstraints(Username username, Email email, Long excludeUserId) {
+        UserUniquenessChecker.Conflicts conflicts = uniquenessChecker.findConflicts(username, email, excludeUserId);
+        if (conflicts.any()) {
+            throw conflictError(conflicts, username, email);
         }
     }
     
-    private void validateUniqueConstraintsForUpdate(Long userId, Username username, Email email) {
-        if (!uniquenessChecker.isUsernameUniqueExcluding(username, userId)) {
-            throw new IllegalArgumentException("Username already exists: " + username);
+    private IllegalArgumentException conflictError(UserUniquenessChecker.Conflicts conflicts,
+                                                   Username username, Email email) {
+        List<String> messages = new ArrayList<>(2);
+        if (conflicts.username()) {
+            messages.add("Username already exists: " + username);
         }
-        if (!uniquenessChecker.isEmailUniqueExcluding(email, userId)) {
-            throw new IllegalArgumentException("Email already exists: " + email);
+        if (conflicts.email()) {
+            messages.add("Email already exists: " + email);
         }
+        return new IllegalArgumentException(String.join(", ", messages));
     }
 }
\ No newline at end of file
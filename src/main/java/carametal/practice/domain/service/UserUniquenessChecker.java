@@ -4,8 +4,17 @@ import carametal.practice.domain.valueobject.Email;
 import carametal.practice.domain.valueobject.Username;
 
 public interface UserUniquenessChecker {
-    boolean isUsernameUnique(Username username);
-    boolean isEmailUnique(Email email);
-    boolean isUsernameUniqueExcluding(Username username, Long excludeUserId);
-    boolean isEmailUniqueExcluding(Email email, Long excludeUserId);
-}
\ No newline at end of file
+    
+    /**
+     * ユーザー名・メールアドレスの重複を1回の問い合わせでまとめて判定する。
+     * excludeUserIdがnullでなければそのユーザー自身は重複とみなさない。
+     */
+    Conflicts findConflicts(Username username, Email email, Long excludeUserId);
+    
+    record Conflicts(boolean username, boolean email) {
+        
+        public boolean any() {
+            return username || email;
+        }
+    }
+}
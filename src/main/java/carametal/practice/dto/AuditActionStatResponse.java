@@ -0,0 +1,21 @@
+package carametal.practice.dto;
+
+import carametal.practice.entity.UserAuditEvent;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuditActionStatResponse {
+
+    // 時間または日の開始時刻
+    private LocalDateTime bucket;
+    private UserAuditEvent.AuditAction action;
+    private long count;
+}
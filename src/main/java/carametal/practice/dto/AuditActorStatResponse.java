@@ -0,0 +1,21 @@
+package carametal.practice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuditActorStatResponse {
+
+    private LocalDate day;
+    private Long userId;
+    // 物理削除済みのユーザーはnull
+    private String username;
+    private long count;
+}
@@ -0,0 +1,24 @@
+package carametal.practice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuditArchiveSegmentResponse {
+
+    private String name;
+    private YearMonth month;
+    private long sizeBytes;
+    private long rows;
+    // 空のセグメントではnull
+    private LocalDateTime from;
+    private LocalDateTime to;
+}
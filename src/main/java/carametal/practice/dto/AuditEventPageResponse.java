@@ -0,0 +1,19 @@
+package carametal.practice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuditEventPageResponse {
+
+    private List<AuditEventResponse> events;
+    // 次のページを取得するためのcursor。最後のページではnull
+    private String nextCursor;
+}
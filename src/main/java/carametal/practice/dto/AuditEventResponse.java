@@ -0,0 +1,27 @@
+package carametal.practice.dto;
+
+import carametal.practice.entity.UserAuditEvent;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuditEventResponse {
+
+    private Long id;
+    private UserAuditEvent.AuditAction action;
+    private Long userId;
+    // 物理削除済みのユーザーはnull
+    private String username;
+    private Long targetUserId;
+    private String targetUsername;
+    private Map<String, Object> details;
+    private LocalDateTime createdAt;
+}
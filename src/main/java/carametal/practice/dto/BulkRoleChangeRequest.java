@@ -0,0 +1,21 @@
+package carametal.practice.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkRoleChangeRequest {
+
+    @NotEmpty(message = "User ids are required")
+    @Size(max = 10000, message = "At most 10000 users can be changed at once")
+    private List<Long> userIds;
+}
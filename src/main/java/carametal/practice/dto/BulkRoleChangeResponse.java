@@ -0,0 +1,21 @@
+package carametal.practice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkRoleChangeResponse {
+
+    private String roleName;
+    private int requested;
+    // 既に付与済み(剥奪済み)のユーザーや存在しないユーザーは含まない
+    private int changed;
+    private List<Long> changedUserIds;
+}
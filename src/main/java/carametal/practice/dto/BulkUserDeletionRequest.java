@@ -0,0 +1,26 @@
+package carametal.practice.dto;
+
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * userIdsか検索条件(username / email の部分一致)のどちらかを指定する。
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkUserDeletionRequest {
+
+    @Size(max = 10000, message = "At most 10000 users can be deleted at once")
+    private List<Long> userIds;
+
+    private String username;
+
+    private String email;
+}
@@ -0,0 +1,18 @@
+package carametal.practice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkUserDeletionResponse {
+
+    private int deleted;
+    private List<Long> deletedUserIds;
+}
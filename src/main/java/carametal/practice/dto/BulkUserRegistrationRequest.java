@@ -0,0 +1,22 @@
+package carametal.practice.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkUserRegistrationRequest {
+
+    // 個々の要素は一括登録処理の中で検証し、失敗は要素単位で返す
+    @NotEmpty(message = "Users are required")
+    @Size(max = 10000, message = "At most 10000 users can be registered at once")
+    private List<UserRegistrationRequest> users;
+}
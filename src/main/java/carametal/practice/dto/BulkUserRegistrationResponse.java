@@ -0,0 +1,20 @@
+package carametal.practice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkUserRegistrationResponse {
+
+    private int total;
+    private int created;
+    private int failed;
+    private List<BulkUserRegistrationResult> results;
+}
@@ -0,0 +1,24 @@
+package carametal.practice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkUserRegistrationResult {
+
+    private int index;
+    private String username;
+    private Status status;
+    private Long id;
+    private String error;
+
+    public enum Status {
+        CREATED,
+        FAILED
+    }
+}
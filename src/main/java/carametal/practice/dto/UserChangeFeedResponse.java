@@ -0,0 +1,21 @@
+package carametal.practice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserChangeFeedResponse {
+
+    private List<UserChangeResponse> changes;
+    // 次回のafterに指定する位置。変更がなかった場合は指定されたafterと同じ
+    private String nextCursor;
+    // trueの場合は続きがあるため、待たずに次を取得する
+    private boolean hasMore;
+}
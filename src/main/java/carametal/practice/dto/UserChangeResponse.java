@@ -0,0 +1,30 @@
+package carametal.practice.dto;
+
+import carametal.practice.repository.UserChangeRepository;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 変更フィードの1件。CREATED / UPDATEDは現在の値での上書き、DELETEDは削除として扱う。
+ * ポーリングで頻繁に取得されるため、値のない項目は出力しない。
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserChangeResponse {
+
+    private Long userId;
+    private UserChangeRepository.Change change;
+    private LocalDateTime changedAt;
+    private String username;
+    private String email;
+    private List<String> roleNames;
+}
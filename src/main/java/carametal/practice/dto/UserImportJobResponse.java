@@ -0,0 +1,45 @@
+package carametal.practice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserImportJobResponse {
+
+    private UUID jobId;
+    private Status status;
+    private long processed;
+    private long created;
+    private long failed;
+    // 読み込んだバイト数からの推定。開始前・終了後はnull
+    private Long etaSeconds;
+    private LocalDateTime submittedAt;
+    private LocalDateTime finishedAt;
+    // 先頭の一部のみ
+    private List<RowError> errors;
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+        private long line;
+        private String error;
+    }
+}
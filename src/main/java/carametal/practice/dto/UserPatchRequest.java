@@ -0,0 +1,33 @@
+package carametal.practice.dto;
+
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Set;
+
+/**
+ * 部分更新リクエスト。nullの項目は変更しない。
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserPatchRequest {
+    
+    @Size(min = 3, max = 50, message = "Username must be between 3 and 50 characters")
+    private String username;
+    
+    @Email(message = "Email must be valid")
+    @Size(max = 100, message = "Email must not exceed 100 characters")
+    private String email;
+    
+    @Size(min = 1, message = "At least one role must be specified")
+    private Set<String> roleNames;
+    
+    // If-Matchヘッダーを使わない場合に、取得時のバージョンを指定する
+    private Long version;
+}
@@ -0,0 +1,21 @@
+package carametal.practice.entity;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * 操作種別をuser_audit_events.action(smallint)のコードと相互に変換する。
+ */
+@Converter
+public class AuditActionConverter implements AttributeConverter<UserAuditEvent.AuditAction, Short> {
+
+    @Override
+    public Short convertToDatabaseColumn(UserAuditEvent.AuditAction action) {
+        return action == null ? null : action.getCode();
+    }
+
+    @Override
+    public UserAuditEvent.AuditAction convertToEntityAttribute(Short code) {
+        return code == null ? null : UserAuditEvent.AuditAction.fromCode(code);
+    }
+}
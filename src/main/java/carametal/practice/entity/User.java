@@ -6,6 +6,9 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.SQLRestriction;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -17,7 +20,10 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 @Entity
+@DynamicUpdate
 @Table(name = "users")
+// 論理削除済みの行はエンティティの読み込み・JPQL・Specificationのすべてから除外する
+@SQLRestriction("deleted_at IS NULL")
 @Getter
 @Setter
 @Builder
@@ -25,15 +31,21 @@ import java.util.stream.Collectors;
 @AllArgsConstructor
 public class User extends BaseEntity implements UserDetails {
     
+    // 論理削除済みの行を除いた部分ユニークインデックス(sql/00_init.sql)
+    public static final String USERNAME_UNIQUE_CONSTRAINT = "uk_users_username";
+    public static final String EMAIL_UNIQUE_CONSTRAINT = "uk_users_email";
+    
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_user_id_seq")
+    @SequenceGenerator(name = "users_user_id_seq", sequenceName = "users_user_id_seq", allocationSize = 50)
+    @ColumnDefault("nextval('users_user_id_seq')")
     @Column(name = "user_id")
     private Long id;
     
-    @Column(name = "username", nullable = false, unique = true, length = 50)
+    @Column(name = "username", nullable = false, length = 50)
     private String username;
     
-    @Column(name = "email", nullable = false, unique = true, length = 100)
+    @Column(name = "email", nullable = false, length = 100)
     private String email;
     
     @Column(name = "password", nullable = false, length = 255)
@@ -45,6 +57,14 @@ public class User extends BaseEntity implements UserDetails {
     @Column(name = "last_login")
     private LocalDateTime lastLogin;
     
+    @Column(name = "deleted_at")
+    private LocalDateTime deletedAt;
+    
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private Long version;
+    
     @ManyToMany(fetch = FetchType.EAGER)
     @JoinTable(
         name = "user_roles",
@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 
@@ -18,14 +19,16 @@ import java.util.Map;
 public class UserAuditEvent {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_audit_events_id_seq")
+    @SequenceGenerator(name = "user_audit_events_id_seq", sequenceName = "user_audit_events_id_seq", allocationSize = 50)
+    @ColumnDefault("nextval('user_audit_events_id_seq')")
     private Long id;
 
     @Column(name = "user_id")
     private Long userId;
 
-    @Enumerated(EnumType.STRING)
-    @Column(name = "action", nullable = false, length = 50)
+    @Convert(converter = AuditActionConverter.class)
+    @Column(name = "action", nullable = false, columnDefinition = "smallint")
     private AuditAction action;
 
     @Column(name = "target_user_id")
@@ -49,11 +52,34 @@ public class UserAuditEvent {
         this.createdAt = LocalDateTime.now();
     }
 
+    /**
+     * 操作種別。DBにはcode(smallint)で保存するため、既存のコードは変更・再利用しない。
+     * user_audit_actionsのコード表と一致させる。
+     */
     public enum AuditAction {
-        USER_CREATED,
-        USER_UPDATED,
-        USER_DELETED,
-        ROLE_ASSIGNED,
-        ROLE_REMOVED
+        USER_CREATED(1),
+        USER_UPDATED(2),
+        USER_DELETED(3),
+        ROLE_ASSIGNED(4),
+        ROLE_REMOVED(5);
+
+        private final short code;
+
+        AuditAction(int code) {
+            this.code = (short) code;
+        }
+
+        public short getCode() {
+            return code;
+        }
+
+        public static AuditAction fromCode(short code) {
+            for (AuditAction action : values()) {
+                if (action.code == code) {
+                    return action;
+                }
+            }
+            throw new IllegalArgumentException("Unknown audit action code: " + code);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+package carametal.practice.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * ユーザー検索用の非正規化された読み取りモデル。
+ * 書き込みはUserDirectoryRepositoryのネイティブクエリでのみ行う。
+ */
+@Entity
+@Table(name = "user_directory")
+@Immutable
+@Getter
+@NoArgsConstructor
+public class UserDirectoryEntry {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "username", nullable = false, length = 50)
+    private String username;
+
+    @Column(name = "username_lower", nullable = false, length = 50)
+    private String usernameLower;
+
+    @Column(name = "email_lower", nullable = false, length = 100)
+    private String emailLower;
+
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(name = "role_names", nullable = false, columnDefinition = "text[]")
+    private List<String> roleNames;
+
+    @Column(name = "registration_date")
+    private LocalDateTime registrationDate;
+
+    @Column(name = "last_login")
+    private LocalDateTime lastLogin;
+
+    @Column(name = "refreshed_at", nullable = false)
+    private LocalDateTime refreshedAt;
+}
@@ -0,0 +1,53 @@
+package carametal.practice.infrastructure;
+
+import carametal.practice.repository.UserJdbcRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * 論理削除されたユーザーを一定件数ずつ物理削除するバックグラウンド処理。
+ * バッチ毎に別トランザクションでコミットし、ロックとWALの量を一定に抑える。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DeletedUserPurger {
+
+    private final UserJdbcRepository userJdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.user-purge.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${app.user-purge.retention:PT1H}")
+    private Duration retention;
+
+    @Scheduled(fixedDelayString = "${app.user-purge.interval:PT5M}",
+            initialDelayString = "${app.user-purge.interval:PT5M}")
+    public void purge() {
+        int purged = purgeDeletedBefore(LocalDateTime.now().minus(retention));
+        if (purged > 0) {
+            log.info("Purged {} soft-deleted users", purged);
+        }
+    }
+
+    /**
+     * deletedBeforeより前に論理削除された行を、残りがなくなるまでbatchSize件ずつ物理削除する。
+     */
+    public int purgeDeletedBefore(LocalDateTime deletedBefore) {
+        int total = 0;
+        int purged;
+        do {
+            purged = transactionTemplate.execute(status -> userJdbcRepository.purgeDeleted(deletedBefore, batchSize));
+            total += purged;
+        } while (purged == batchSize);
+        return total;
+    }
+}
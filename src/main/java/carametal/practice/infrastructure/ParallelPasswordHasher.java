@@ -0,0 +1,58 @@
+package carametal.practice.infrastructure;
+
+import carametal.practice.domain.valueobject.Password;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 一括処理向けにパスワードのハッシュ化をCPUコア数分のスレッドで並列実行する。
+ * BCryptはCPUバウンドなため、共通のForkJoinPoolではなく専用のスレッドプールを使う。
+ */
+@Component
+@RequiredArgsConstructor
+public class ParallelPasswordHasher {
+
+    private final PasswordEncoder passwordEncoder;
+    private final ExecutorService hashingExecutor = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(),
+            Thread.ofPlatform().name("password-hasher-", 0).daemon(true).factory());
+
+    /**
+     * 入力と同じ順序でハッシュ値を返す。
+     */
+    public List<String> encodeAll(List<Password> passwords) {
+        List<Future<String>> futures = new ArrayList<>(passwords.size());
+        for (Password password : passwords) {
+            futures.add(hashingExecutor.submit(() -> passwordEncoder.encode(password.getRawValue())));
+        }
+
+        List<String> hashes = new ArrayList<>(passwords.size());
+        try {
+            for (Future<String> future : futures) {
+                hashes.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Password hashing was interrupted", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+        return hashes;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        hashingExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,265 @@
+package carametal.practice.infrastructure;
+
+import carametal.practice.entity.UserAuditEvent;
+import carametal.practice.repository.UserAuditEventJdbcRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * アーカイブ済みの操作ログ(月毎のセグメントファイル audit-YYYY-MM.seg)を管理する。
+ * <ul>
+ *   <li>検索では期間とカーソルから対象になり得る月のセグメントだけを選び、仮想スレッドで並列に読んで降順にマージする。</li>
+ *   <li>セグメントは不変なので、開いたリーダー(メモリマップ)はファイルの更新時刻が変わるまで使い回す。</li>
+ *   <li>ダウンロード用のパスはファイル名の形式を検証してから解決するため、ディレクトリの外は指せない。</li>
+ *   <li>保持期間を過ぎたセグメントは削除するか、expired/へ移して検索・一覧の対象から外す。</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class UserAuditArchive {
+
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM");
+    private static final Pattern NAME_PATTERN = Pattern.compile("audit-(\\d{4})-(\\d{2})\\.seg");
+
+    /**
+     * 一覧表示用のセグメントの情報。from/toは含まれる行の最古・最新の時刻。
+     */
+    public record Segment(String name, YearMonth month, long sizeBytes, long rows,
+                          LocalDateTime from, LocalDateTime to) {
+    }
+
+    private record CachedReader(long modifiedMillis, UserAuditSegmentReader reader) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private final Map<Path, CachedReader> readers = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Value("${app.user-audit.archive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.user-audit.archive.directory:data/audit-archive}")
+    private Path directory;
+
+    public UserAuditArchive(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    public static String segmentName(YearMonth month) {
+        return "audit-" + month.format(MONTH_FORMAT) + ".seg";
+    }
+
+    public Path segmentPath(YearMonth month) {
+        return directory.resolve(segmentName(month));
+    }
+
+    /**
+     * 存在するセグメントの月を古い順に返す。
+     */
+    public List<YearMonth> findMonths() {
+        if (!enabled || !Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> parseMonth(file.getFileName().toString()))
+                    .flatMap(Optional::stream)
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public List<Segment> findSegments() {
+        List<Segment> segments = new ArrayList<>();
+        for (YearMonth month : findMonths()) {
+            Path path = segmentPath(month);
+            UserAuditSegmentReader reader = reader(path);
+            try {
+                segments.add(new Segment(segmentName(month), month, Files.size(path), reader.rows(),
+                        reader.from(), reader.to()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * アーカイブからfilterに一致する行を(created_at, id)の降順でlimit件まで返す。
+     * detailsの包含は判定できるが、JSONPath(detailsPath)は評価できない。アーカイブ済みの月を黙って除くと
+     * 結果が欠けるため、期間(from/to)がアーカイブ済みの月にかかる場合はIllegalArgumentExceptionを投げる。
+     */
+    public List<UserAuditEvent> search(UserAuditEventJdbcRepository.Filter filter,
+                                       UserAuditEventJdbcRepository.Cursor cursor, int limit) {
+        if (filter.detailsPath() != null) {
+            // ページによって結果が変わらないよう、カーソルではなく期間だけで判定する
+            Optional<YearMonth> archived = findMonths().stream()
+                    .filter(month -> overlaps(month, filter, null))
+                    .reduce((first, second) -> second);
+            if (archived.isPresent()) {
+                throw new IllegalArgumentException("detailsPath cannot be applied to archived months; set from to "
+                        + archived.get().plusMonths(1).atDay(1).atStartOfDay() + " or later");
+            }
+            return List.of();
+        }
+        List<YearMonth> candidates = findMonths().stream()
+                .filter(month -> overlaps(month, filter, cursor))
+                .toList();
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+        if (candidates.size() == 1) {
+            return searchSegment(segmentPath(candidates.get(0)), filter, cursor, limit);
+        }
+
+        List<Future<List<UserAuditEvent>>> futures = new ArrayList<>(candidates.size());
+        for (YearMonth month : candidates) {
+            Path path = segmentPath(month);
+            futures.add(executor.submit(() -> searchSegment(path, filter, cursor, limit)));
+        }
+        List<UserAuditEvent> merged = new ArrayList<>();
+        for (Future<List<UserAuditEvent>> future : futures) {
+            try {
+                merged.addAll(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while searching the audit archive", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Failed to search the audit archive", e.getCause());
+            }
+        }
+        merged.sort(Comparator.comparing(UserAuditEvent::getCreatedAt).thenComparing(UserAuditEvent::getId).reversed());
+        return merged.size() > limit ? merged.subList(0, limit) : merged;
+    }
+
+    /**
+     * 保持期間を過ぎた月のセグメントを削除する。keepの場合は削除せずexpired/へ移し、検索・一覧の対象から外す。
+     */
+    public void expire(YearMonth month, boolean keep) {
+        Path path = segmentPath(month);
+        try {
+            if (keep) {
+                Path expired = Files.createDirectories(directory.resolve("expired"));
+                Files.move(path, expired.resolve(path.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        readers.remove(path);
+    }
+
+    /**
+     * ダウンロード対象のセグメントのパスを返す。名前の形式が不正な場合や存在しない場合は空。
+     */
+    public Optional<Path> resolve(String name) {
+        return parseMonth(name)
+                .map(this::segmentPath)
+                .filter(Files::isRegularFile);
+    }
+
+    /**
+     * セグメントの内容をtargetへ転送する。送り先がソケットであればカーネル内でコピーされる。
+     */
+    public void transferTo(Path path, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, target);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        readers.clear();
+    }
+
+    private boolean overlaps(YearMonth month, UserAuditEventJdbcRepository.Filter filter,
+                             UserAuditEventJdbcRepository.Cursor cursor) {
+        LocalDateTime start = month.atDay(1).atStartOfDay();
+        LocalDateTime end = month.plusMonths(1).atDay(1).atStartOfDay();
+        return (filter.from() == null || filter.from().isBefore(end))
+                && (filter.to() == null || filter.to().isAfter(start))
+                && (cursor == null || !cursor.createdAt().isBefore(start));
+    }
+
+    private List<UserAuditEvent> searchSegment(Path path, UserAuditEventJdbcRepository.Filter filter,
+                                               UserAuditEventJdbcRepository.Cursor cursor, int limit) {
+        return reader(path).search(filter, cursor, limit);
+    }
+
+    /**
+     * セグメントのリーダーを返す。ファイルが書き直されていれば開き直す。
+     * 古いリーダーのマップは、実行中の検索が終わって参照されなくなった後にGCで解放される。
+     */
+    private UserAuditSegmentReader reader(Path path) {
+        try {
+            long modified = Files.getLastModifiedTime(path).toMillis();
+            return readers.compute(path, (key, cached) -> {
+                if (cached != null && cached.modifiedMillis() == modified) {
+                    return cached;
+                }
+                try {
+                    return new CachedReader(modified, new UserAuditSegmentReader(path, objectMapper));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).reader();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Optional<YearMonth> parseMonth(String name) {
+        Matcher matcher = NAME_PATTERN.matcher(name);
+        if (!matcher.matches()) {
+            return Optional.empty();
+        }
+        int month = Integer.parseInt(matcher.group(2));
+        if (month < 1 || month > 12) {
+            return Optional.empty();
+        }
+        return Optional.of(YearMonth.of(Integer.parseInt(matcher.group(1)), month));
+    }
+}
@@ -0,0 +1,135 @@
+package carametal.practice.infrastructure;
+
+import carametal.practice.repository.UserAuditEventJdbcRepository;
+import carametal.practice.repository.UserAuditPartitionRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.YearMonth;
+
+/**
+ * 月の全期間がarchive-afterより古くなったパーティションを、圧縮したセグメントファイルへ移すバックグラウンド処理。
+ * <ol>
+ *   <li>パーティションの行を(created_at, id)の昇順でストリーミングしてセグメントを書く(一時ファイルから置き換え)。</li>
+ *   <li>パーティションを切り離し、行数がセグメントと一致することを確認してから削除する。</li>
+ * </ol>
+ * 途中で失敗した場合はパーティションが残るため、次回の実行でセグメントを書き直す。
+ * セグメントを書いてからパーティションを削除するまでの間は同じ行が両方にあるが、検索側でIDにより重複を除く。
+ * デフォルトパーティションの行は、{@link UserAuditPartitionManager}が月毎のパーティションへ移した後に対象になる。
+ * セグメントにもパーティションと同じ保持期間(retention / retention-action)を適用し、期限を過ぎた月は
+ * DROPなら削除、DETACHなら検索対象から外す。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserAuditArchiver {
+
+    private final UserAuditArchive userAuditArchive;
+    private final UserAuditPartitionRepository userAuditPartitionRepository;
+    private final UserAuditEventJdbcRepository userAuditEventJdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.user-audit.archive.archive-after:P3M}")
+    private Period archiveAfter;
+
+    @Value("${app.user-audit.partition.retention:P12M}")
+    private Period retention;
+
+    @Value("${app.user-audit.partition.retention-action:DROP}")
+    private UserAuditPartitionManager.RetentionAction retentionAction;
+
+    @Scheduled(cron = "${app.user-audit.archive.cron:0 30 2 * * *}")
+    public void archive() {
+        archive(LocalDate.now());
+    }
+
+    /**
+     * todayを基準に期限を過ぎたパーティションをアーカイブし、保持期間を過ぎたセグメントを期限切れにする。
+     * アーカイブした月の数を返す。
+     */
+    public int archive(LocalDate today) {
+        if (!userAuditArchive.isEnabled()) {
+            return 0;
+        }
+
+        LocalDate archiveBefore = today.minus(archiveAfter);
+        int archived = 0;
+        for (YearMonth month : userAuditPartitionRepository.findMonthlyPartitions()) {
+            if (month.plusMonths(1).atDay(1).isAfter(archiveBefore)) {
+                continue;
+            }
+            try {
+                archive(month);
+                archived++;
+            } catch (RuntimeException e) {
+                log.error("Failed to archive audit partition {}", UserAuditPartitionRepository.partitionName(month), e);
+            }
+        }
+        expireSegments(today);
+        return archived;
+    }
+
+    private void expireSegments(LocalDate today) {
+        LocalDate expiredBefore = today.minus(retention);
+        boolean keep = retentionAction == UserAuditPartitionManager.RetentionAction.DETACH;
+        for (YearMonth month : userAuditArchive.findMonths()) {
+            // パーティションと同じく、月の全期間が保持期間を過ぎたセグメントだけを対象にする
+            if (month.plusMonths(1).atDay(1).isAfter(expiredBefore)) {
+                continue;
+            }
+            try {
+                userAuditArchive.expire(month, keep);
+                log.info("{} expired audit segment {}", keep ? "Set aside" : "Deleted", UserAuditArchive.segmentName(month));
+            } catch (RuntimeException e) {
+                log.error("Failed to expire audit segment {}", UserAuditArchive.segmentName(month), e);
+            }
+        }
+    }
+
+    private void archive(YearMonth month) {
+        Path segment = userAuditArchive.segmentPath(month);
+        long rows = transactionTemplate.execute(status -> writeSegment(month, segment));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            // 保持期間の処理や他のインスタンスと同時に切り離さないよう、ロックを取ってから確認する
+            userAuditPartitionRepository.lockForMaintenance();
+            if (!userAuditPartitionRepository.findMonthlyPartitions().contains(month)) {
+                throw new IllegalStateException("Audit partition " + UserAuditPartitionRepository.partitionName(month)
+                        + " was detached while writing " + segment);
+            }
+            // 切り離した後は行が増えないため、ここで数えた件数とセグメントの件数を比べる
+            userAuditPartitionRepository.detachPartition(month);
+            long count = userAuditPartitionRepository.countRows(month);
+            if (count != rows) {
+                throw new IllegalStateException("Segment " + segment + " has " + rows + " rows but partition has " + count);
+            }
+            userAuditPartitionRepository.dropPartition(month);
+        });
+        log.info("Archived {} audit events of {} to {}", rows, month, segment);
+    }
+
+    private long writeSegment(YearMonth month, Path segment) {
+        try {
+            Files.createDirectories(segment.getParent());
+            try (UserAuditSegmentWriter writer = new UserAuditSegmentWriter(segment, objectMapper)) {
+                userAuditEventJdbcRepository.streamPartition(month, writer::append);
+                writer.finish();
+                return writer.rows();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package carametal.practice.infrastructure;
+
+import carametal.practice.entity.UserAuditEvent;
+import carametal.practice.repository.UserOutboxRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * アウトボックスのイベントを操作ログとして記録する。
+ * 作成日時は操作が行われた時刻(アウトボックスへの追加時刻)にする。
+ * 書き込みはUserAuditWriterがまとめて行う。
+ */
+@Component
+@RequiredArgsConstructor
+public class UserAuditOutboxConsumer implements UserOutboxConsumer {
+
+    private final UserAuditWriter userAuditWriter;
+
+    @Override
+    public CompletableFuture<Void> consume(List<UserOutboxRepository.OutboxEvent> events) {
+        List<UserAuditEvent> auditEvents = new ArrayList<>();
+        for (UserOutboxRepository.OutboxEvent event : events) {
+            event.detailsByTargetUserId().forEach((targetUserId, details) -> {
+                UserAuditEvent auditEvent = new UserAuditEvent();
+                auditEvent.setUserId(event.actorId());
+                auditEvent.setAction(event.action());
+                auditEvent.setTargetUserId(targetUserId);
+                auditEvent.setDetails(details);
+                auditEvent.setCreatedAt(event.createdAt());
+                auditEvents.add(auditEvent);
+            });
+        }
+        return userAuditWriter.submit(auditEvents);
+    }
+}
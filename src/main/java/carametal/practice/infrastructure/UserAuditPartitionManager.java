@@ -0,0 +1,124 @@
+package carametal.practice.infrastructure;
+
+import carametal.practice.repository.UserAuditPartitionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * user_audit_eventsの月毎のパーティションを管理するバックグラウンド処理。
+ * <ul>
+ *   <li>当月からpremake-months先までのパーティションを事前に作成する。</li>
+ *   <li>デフォルトパーティションに入った行は、その月のパーティションを作成して移す。</li>
+ *   <li>月末がretentionより古くなったパーティションを切り離す(DETACH)か削除する(DROP)。</li>
+ * </ul>
+ * 各DDLはアドバイザリロックを取った上で状態を確認し直してから行うため、複数のインスタンスが同時に起動しても衝突しない。
+ * 1つの月の失敗は記録して次の月へ進み、次回の実行で再試行する。
+ * 保持期間の削除がパーティション単位になるため、行単位のDELETEによる肥大化が起きない。
+ * created_atで絞り込むクエリは、プランナーが該当するパーティションだけを読む。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserAuditPartitionManager {
+
+    public enum RetentionAction {
+        DETACH,
+        DROP
+    }
+
+    private final UserAuditPartitionRepository userAuditPartitionRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.user-audit.partition.premake-months:3}")
+    private int premakeMonths;
+
+    @Value("${app.user-audit.partition.retention:P12M}")
+    private Period retention;
+
+    @Value("${app.user-audit.partition.retention-action:DROP}")
+    private RetentionAction retentionAction;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${app.user-audit.partition.cron:0 0 3 * * *}")
+    public void maintain() {
+        maintain(LocalDate.now());
+    }
+
+    /**
+     * todayを基準にパーティションの作成と期限切れの処理を行う。
+     */
+    public void maintain(LocalDate today) {
+        // 作成する月: 当月からpremake-months先まで + デフォルトパーティションに行がある月
+        Set<YearMonth> months = new TreeSet<>(userAuditPartitionRepository.findDefaultPartitionMonths());
+        YearMonth current = YearMonth.from(today);
+        for (int i = 0; i <= premakeMonths; i++) {
+            months.add(current.plusMonths(i));
+        }
+        List<YearMonth> existing = userAuditPartitionRepository.findMonthlyPartitions();
+        for (YearMonth month : months) {
+            if (!existing.contains(month)) {
+                try {
+                    Boolean created = transactionTemplate.execute(status -> {
+                        userAuditPartitionRepository.lockForMaintenance();
+                        if (userAuditPartitionRepository.findMonthlyPartitions().contains(month)) {
+                            return false;
+                        }
+                        userAuditPartitionRepository.createMonthlyPartition(month);
+                        return true;
+                    });
+                    if (Boolean.TRUE.equals(created)) {
+                        log.info("Created audit partition {}", UserAuditPartitionRepository.partitionName(month));
+                    }
+                } catch (RuntimeException e) {
+                    // 作成できなくても行はデフォルトパーティションに入るため、次回の実行で再試行する
+                    log.error("Failed to create audit partition {}", UserAuditPartitionRepository.partitionName(month), e);
+                }
+            }
+        }
+
+        LocalDate expiredBefore = today.minus(retention);
+        for (YearMonth month : userAuditPartitionRepository.findMonthlyPartitions()) {
+            // 月の全期間が保持期間を過ぎたパーティションだけを対象にする
+            if (month.plusMonths(1).atDay(1).isAfter(expiredBefore)) {
+                continue;
+            }
+            try {
+                Boolean expired = transactionTemplate.execute(status -> {
+                    userAuditPartitionRepository.lockForMaintenance();
+                    if (!userAuditPartitionRepository.findMonthlyPartitions().contains(month)) {
+                        return false;
+                    }
+                    userAuditPartitionRepository.detachPartition(month);
+                    if (retentionAction == RetentionAction.DROP) {
+                        userAuditPartitionRepository.dropPartition(month);
+                    }
+                    return true;
+                });
+                if (Boolean.TRUE.equals(expired)) {
+                    log.info("{} expired audit partition {}", retentionAction == RetentionAction.DROP ? "Dropped" : "Detached",
+                            UserAuditPartitionRepository.partitionName(month));
+                }
+            } catch (RuntimeException e) {
+                // パーティションは残るため、次回の実行で再試行する
+                log.error("Failed to expire audit partition {}", UserAuditPartitionRepository.partitionName(month), e);
+            }
+        }
+    }
+}
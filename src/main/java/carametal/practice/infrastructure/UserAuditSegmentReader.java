@@ -0,0 +1,344 @@
+package carametal.practice.infrastructure;
+
+import carametal.practice.entity.UserAuditEvent;
+import carametal.practice.repository.UserAuditEventJdbcRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static carametal.practice.infrastructure.UserAuditSegmentWriter.BLOOM_LONGS;
+import static carametal.practice.infrastructure.UserAuditSegmentWriter.FOOTER_BYTES;
+import static carametal.practice.infrastructure.UserAuditSegmentWriter.HEADER_BYTES;
+import static carametal.practice.infrastructure.UserAuditSegmentWriter.INDEX_ENTRY_BYTES;
+import static carametal.practice.infrastructure.UserAuditSegmentWriter.MAGIC;
+import static carametal.practice.infrastructure.UserAuditSegmentWriter.VERSION;
+
+/**
+ * {@link UserAuditSegmentWriter}が書いたセグメントをメモリマップして読む。
+ * 索引だけを開いた時点で読み込み、行データはブロック単位でマップ上から直接伸長する。
+ * 1つのマップは2GB未満しか扱えないため、ブロックの境界で区切った領域ごとにマップする。
+ * 時刻の範囲とtarget_user_idのブルームフィルタで該当しないブロックは伸長しない。
+ * マップは読み取り専用で位置を変更しないため、複数スレッドから同時に検索できる。
+ * マップはリーダーが参照されなくなった後、GCで解放される。
+ */
+public class UserAuditSegmentReader {
+
+    private static final TypeReference<Map<String, Object>> DETAILS_TYPE = new TypeReference<>() {
+    };
+
+    private static final long MAX_REGION_BYTES = Integer.MAX_VALUE;
+
+    private record Block(int region, int position, int compressedLength, int uncompressedLength, int rows,
+                         long minMicros, long maxMicros, long[] bloom) {
+    }
+
+    private final Path path;
+    private final ObjectMapper objectMapper;
+    private final List<MappedByteBuffer> regions;
+    private final List<Block> blocks;
+    private final long minMicros;
+    private final long maxMicros;
+    private final long rows;
+
+    public UserAuditSegmentReader(Path path, ObjectMapper objectMapper) throws IOException {
+        this(path, objectMapper, MAX_REGION_BYTES);
+    }
+
+    /**
+     * maxRegionBytesは1つのマップの上限(テストで小さくして領域の分割を検証する)。
+     */
+    UserAuditSegmentReader(Path path, ObjectMapper objectMapper, long maxRegionBytes) throws IOException {
+        this.path = path;
+        this.objectMapper = objectMapper;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + FOOTER_BYTES) {
+                throw new IOException("Not an audit segment: " + path);
+            }
+            ByteBuffer header = read(channel, 0, HEADER_BYTES);
+            ByteBuffer footer = read(channel, size - FOOTER_BYTES, FOOTER_BYTES);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || footer.getInt(FOOTER_BYTES - 4) != MAGIC) {
+                throw new IOException("Not an audit segment: " + path);
+            }
+
+            long indexOffset = footer.getLong(0);
+            int blockCount = footer.getInt(8);
+            this.minMicros = footer.getLong(12);
+            this.maxMicros = footer.getLong(20);
+            ByteBuffer index = read(channel, indexOffset, Math.multiplyExact(blockCount, INDEX_ENTRY_BYTES));
+
+            // マップはチャネルを閉じた後も有効
+            List<MappedByteBuffer> mapped = new ArrayList<>();
+            List<Block> entries = new ArrayList<>(blockCount);
+            long regionStart = 0;
+            long regionEnd = 0;
+            long total = 0;
+            for (int i = 0; i < blockCount; i++) {
+                int entry = i * INDEX_ENTRY_BYTES;
+                long offset = index.getLong(entry);
+                int compressedLength = index.getInt(entry + 8);
+                if (entries.isEmpty() || offset + compressedLength - regionStart > maxRegionBytes) {
+                    if (!entries.isEmpty()) {
+                        mapped.add(channel.map(FileChannel.MapMode.READ_ONLY, regionStart, regionEnd - regionStart));
+                    }
+                    regionStart = offset;
+                }
+                regionEnd = offset + compressedLength;
+                long[] bloom = new long[BLOOM_LONGS];
+                for (int b = 0; b < BLOOM_LONGS; b++) {
+                    bloom[b] = index.getLong(entry + 36 + b * 8);
+                }
+                Block block = new Block(mapped.size(), (int) (offset - regionStart), compressedLength,
+                        index.getInt(entry + 12), index.getInt(entry + 16),
+                        index.getLong(entry + 20), index.getLong(entry + 28), bloom);
+                entries.add(block);
+                total += block.rows();
+            }
+            if (!entries.isEmpty()) {
+                mapped.add(channel.map(FileChannel.MapMode.READ_ONLY, regionStart, regionEnd - regionStart));
+            }
+            this.regions = List.copyOf(mapped);
+            this.blocks = List.copyOf(entries);
+            this.rows = total;
+        }
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public long rows() {
+        return rows;
+    }
+
+    /**
+     * セグメント内の最も古い行の時刻。空のセグメントではnull。
+     */
+    public LocalDateTime from() {
+        return rows == 0 ? null : UserAuditSegmentWriter.fromMicros(minMicros);
+    }
+
+    /**
+     * セグメント内の最も新しい行の時刻。空のセグメントではnull。
+     */
+    public LocalDateTime to() {
+        return rows == 0 ? null : UserAuditSegmentWriter.fromMicros(maxMicros);
+    }
+
+    /**
+     * filterに一致する行を(created_at, id)の降順でlimit件まで返す。cursorを指定した場合はその行より後ろから返す。
+     */
+    public List<UserAuditEvent> search(UserAuditEventJdbcRepository.Filter filter,
+                                       UserAuditEventJdbcRepository.Cursor cursor, int limit) {
+        long fromMicros = filter.from() == null ? Long.MIN_VALUE : UserAuditSegmentWriter.toMicros(filter.from());
+        long toMicros = filter.to() == null ? Long.MAX_VALUE : UserAuditSegmentWriter.toMicros(filter.to());
+        long cursorMicros = cursor == null ? Long.MAX_VALUE : UserAuditSegmentWriter.toMicros(cursor.createdAt());
+
+        JsonNode detailsContains = parseDetailsFilter(filter.detailsContains());
+
+        List<UserAuditEvent> result = new ArrayList<>(Math.min(limit, 1024));
+        Inflater inflater = new Inflater();
+        try {
+            // ブロックは古い順に並んでいるため、後ろから読めば降順になる
+            for (int i = blocks.size() - 1; i >= 0 && result.size() < limit; i--) {
+                Block block = blocks.get(i);
+                if (block.minMicros() > cursorMicros || block.minMicros() >= toMicros) {
+                    continue;
+                }
+                if (block.maxMicros() < fromMicros) {
+                    break;
+                }
+                if (filter.targetUserId() != null
+                        && !UserAuditSegmentWriter.Bloom.mightContain(block.bloom(), filter.targetUserId())) {
+                    continue;
+                }
+
+                List<Row> decoded = decode(block, inflater);
+                for (int r = decoded.size() - 1; r >= 0 && result.size() < limit; r--) {
+                    Row row = decoded.get(r);
+                    if (row.micros() < fromMicros || row.micros() >= toMicros) {
+                        continue;
+                    }
+                    if (cursor != null && (row.micros() > cursorMicros
+                            || (row.micros() == cursorMicros && row.id() >= cursor.id()))) {
+                        continue;
+                    }
+                    if (matches(filter, row) && matchesDetails(detailsContains, row)) {
+                        result.add(row.toEvent(objectMapper));
+                    }
+                }
+            }
+        } finally {
+            inflater.end();
+        }
+        return result;
+    }
+
+    private boolean matches(UserAuditEventJdbcRepository.Filter filter, Row row) {
+        return (filter.userId() == null || filter.userId().equals(row.userId()))
+                && (filter.targetUserId() == null || filter.targetUserId().equals(row.targetUserId()))
+                && (filter.action() == null || filter.action() == row.action());
+    }
+
+    private JsonNode parseDetailsFilter(String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readTree(json);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("details is not valid JSON");
+        }
+    }
+
+    private boolean matchesDetails(JsonNode required, Row row) {
+        if (required == null) {
+            return true;
+        }
+        if (row.detailsJson() == null) {
+            return false;
+        }
+        try {
+            return contains(objectMapper.readTree(row.detailsJson()), required);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Audit details are not readable", e);
+        }
+    }
+
+    /**
+     * PostgreSQLのjsonbの包含(@>)と同じ規則で判定する。
+     * オブジェクトは指定したキーを全て含み、配列は指定した要素をそれぞれいずれかの要素が含めばよい。
+     */
+    static boolean contains(JsonNode actual, JsonNode required) {
+        if (required.isObject()) {
+            if (!actual.isObject()) {
+                return false;
+            }
+            for (Map.Entry<String, JsonNode> field : required.properties()) {
+                JsonNode value = actual.get(field.getKey());
+                if (value == null || !contains(value, field.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (required.isArray()) {
+            if (!actual.isArray()) {
+                return false;
+            }
+            for (JsonNode element : required) {
+                boolean found = false;
+                for (JsonNode candidate : actual) {
+                    if (contains(candidate, element)) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (required.isNumber() && actual.isNumber()) {
+            return required.decimalValue().compareTo(actual.decimalValue()) == 0;
+        }
+        return required.equals(actual);
+    }
+
+    private List<Row> decode(Block block, Inflater inflater) {
+        ByteBuffer compressed = regions.get(block.region()).slice(block.position(), block.compressedLength());
+        byte[] raw = new byte[block.uncompressedLength()];
+        inflater.reset();
+        inflater.setInput(compressed);
+        try {
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                length += inflater.inflate(raw, length, raw.length - length);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt audit segment: " + path, e);
+        }
+
+        List<Row> decoded = new ArrayList<>(block.rows());
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw))) {
+            for (int i = 0; i < block.rows(); i++) {
+                decoded.add(new Row(
+                        in.readLong(),
+                        in.readLong(),
+                        readNullableLong(in),
+                        UserAuditEvent.AuditAction.valueOf(in.readUTF()),
+                        readNullableLong(in),
+                        readNullableString(in),
+                        readNullableString(in),
+                        readNullableString(in)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt audit segment: " + path, e);
+        }
+        return decoded;
+    }
+
+    private static Long readNullableLong(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Truncated audit segment");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private record Row(long id, long micros, Long userId, UserAuditEvent.AuditAction action, Long targetUserId,
+                       String ipAddress, String userAgent, String detailsJson) {
+
+        UserAuditEvent toEvent(ObjectMapper objectMapper) {
+            UserAuditEvent event = new UserAuditEvent();
+            event.setId(id);
+            event.setUserId(userId);
+            event.setAction(action);
+            event.setTargetUserId(targetUserId);
+            event.setIpAddress(ipAddress);
+            event.setUserAgent(userAgent);
+            event.setCreatedAt(UserAuditSegmentWriter.fromMicros(micros));
+            if (detailsJson != null) {
+                try {
+                    event.setDetails(objectMapper.readValue(detailsJson, DETAILS_TYPE));
+                } catch (JsonProcessingException e) {
+                    throw new IllegalStateException("Audit details are not readable", e);
+                }
+            }
+            return event;
+        }
+    }
+}
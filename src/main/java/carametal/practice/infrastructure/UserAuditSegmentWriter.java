@@ -0,0 +1,237 @@
+package carametal.practice.infrastructure;
+
+import carametal.practice.entity.UserAuditEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * 操作ログのアーカイブセグメントを書き出す。行は(created_at, id)の昇順で渡す。
+ * <pre>
+ * [header: magic, version]
+ * [block]...              BLOCK_ROWS行ずつDeflateで圧縮した行データ
+ * [index entry]...        ブロック毎の位置・件数・時刻の範囲・target_user_idのブルームフィルタ
+ * [footer]                indexの位置・ブロック数・セグメント全体の時刻の範囲・magic
+ * </pre>
+ * 一時ファイルに書いてから最後にリネームするため、途中で失敗しても不完全なセグメントは残らない。
+ */
+public class UserAuditSegmentWriter implements AutoCloseable {
+
+    static final int MAGIC = 0x55415331; // "UAS1"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 8;
+    static final int BLOCK_ROWS = 1024;
+    static final int BLOOM_LONGS = 8;
+    static final int INDEX_ENTRY_BYTES = 8 + 4 + 4 + 4 + 8 + 8 + BLOOM_LONGS * 8;
+    static final int FOOTER_BYTES = 8 + 4 + 8 + 8 + 4;
+
+    private final Path target;
+    private final Path temporary;
+    private final ObjectMapper objectMapper;
+    private final FileChannel channel;
+    private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+    private final List<ByteBuffer> indexEntries = new ArrayList<>();
+
+    private ByteArrayOutputStream blockBytes = new ByteArrayOutputStream();
+    private DataOutputStream block = new DataOutputStream(blockBytes);
+    private int blockRows;
+    private long blockMinMicros;
+    private long blockMaxMicros;
+    private long[] blockBloom = new long[BLOOM_LONGS];
+    private long segmentMinMicros = Long.MAX_VALUE;
+    private long segmentMaxMicros = Long.MIN_VALUE;
+    private long rows;
+    private boolean finished;
+
+    public UserAuditSegmentWriter(Path target, ObjectMapper objectMapper) throws IOException {
+        this.target = target;
+        this.objectMapper = objectMapper;
+        this.temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        this.channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        channel.write(ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip());
+    }
+
+    public void append(UserAuditEvent event) {
+        long micros = toMicros(event.getCreatedAt());
+        try {
+            if (blockRows == 0) {
+                blockMinMicros = micros;
+            }
+            blockMaxMicros = micros;
+            block.writeLong(event.getId());
+            block.writeLong(micros);
+            writeNullableLong(event.getUserId());
+            block.writeUTF(event.getAction().name());
+            writeNullableLong(event.getTargetUserId());
+            writeNullableString(event.getIpAddress());
+            writeNullableString(event.getUserAgent());
+            writeNullableString(event.getDetails() == null ? null : objectMapper.writeValueAsString(event.getDetails()));
+            if (event.getTargetUserId() != null) {
+                Bloom.add(blockBloom, event.getTargetUserId());
+            }
+            blockRows++;
+            rows++;
+            if (blockRows == BLOCK_ROWS) {
+                flushBlock();
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Audit details are not serializable", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public long rows() {
+        return rows;
+    }
+
+    /**
+     * 索引とフッターを書き、fsyncしてから目的のファイル名に置き換える。
+     */
+    public void finish() throws IOException {
+        if (blockRows > 0) {
+            flushBlock();
+        }
+        long indexOffset = channel.position();
+        for (ByteBuffer entry : indexEntries) {
+            channel.write(entry);
+        }
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_BYTES)
+                .putLong(indexOffset)
+                .putInt(indexEntries.size())
+                .putLong(segmentMinMicros)
+                .putLong(segmentMaxMicros)
+                .putInt(MAGIC)
+                .flip();
+        channel.write(footer);
+        channel.force(true);
+        channel.close();
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        deflater.end();
+        if (!finished) {
+            channel.close();
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        block.flush();
+        byte[] raw = blockBytes.toByteArray();
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4 + 64);
+        byte[] buffer = new byte[64 * 1024];
+        while (!deflater.finished()) {
+            int length = deflater.deflate(buffer);
+            compressed.write(buffer, 0, length);
+        }
+
+        long offset = channel.position();
+        channel.write(ByteBuffer.wrap(compressed.toByteArray()));
+
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES)
+                .putLong(offset)
+                .putInt(compressed.size())
+                .putInt(raw.length)
+                .putInt(blockRows)
+                .putLong(blockMinMicros)
+                .putLong(blockMaxMicros);
+        for (long bits : blockBloom) {
+            entry.putLong(bits);
+        }
+        indexEntries.add(entry.flip());
+
+        segmentMinMicros = Math.min(segmentMinMicros, blockMinMicros);
+        segmentMaxMicros = Math.max(segmentMaxMicros, blockMaxMicros);
+        blockBytes = new ByteArrayOutputStream();
+        block = new DataOutputStream(blockBytes);
+        blockRows = 0;
+        blockBloom = new long[BLOOM_LONGS];
+    }
+
+    private void writeNullableLong(Long value) throws IOException {
+        block.writeBoolean(value != null);
+        if (value != null) {
+            block.writeLong(value);
+        }
+    }
+
+    private void writeNullableString(String value) throws IOException {
+        if (value == null) {
+            block.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        block.writeInt(bytes.length);
+        block.write(bytes);
+    }
+
+    static long toMicros(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + dateTime.getNano() / 1_000;
+    }
+
+    static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+
+    /**
+     * ブロック毎のtarget_user_idのブルームフィルタ(512ビット、ハッシュ3つ)。
+     */
+    static final class Bloom {
+
+        private static final int BITS = BLOOM_LONGS * 64;
+
+        private Bloom() {
+        }
+
+        static void add(long[] bloom, long value) {
+            long hash = mix(value);
+            for (int i = 0; i < 3; i++) {
+                int bit = Math.floorMod(hash >>> (i * 20), BITS);
+                bloom[bit >>> 6] |= 1L << (bit & 63);
+            }
+        }
+
+        static boolean mightContain(long[] bloom, long value) {
+            long hash = mix(value);
+            for (int i = 0; i < 3; i++) {
+                int bit = Math.floorMod(hash >>> (i * 20), BITS);
+                if ((bloom[bit >>> 6] & (1L << (bit & 63))) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long mix(long value) {
+            long z = value + 0x9E3779B97F4A7C15L;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+    }
+}
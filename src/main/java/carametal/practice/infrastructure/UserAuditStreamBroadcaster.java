@@ -0,0 +1,354 @@
+package carametal.practice.infrastructure;
+
+import carametal.practice.repository.UserOutboxRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * アウトボックスから配信されたイベントをServer-Sent Eventsの購読者へ流す。
+ * <ul>
+ *   <li>リレーのスレッドで呼ばれるため、変更を行ったリクエストのスレッドを待たせることはない。</li>
+ *   <li>リレーはインスタンス毎にイベントを取得するため、受け取ったイベントはNOTIFYで全インスタンスへ送り、
+ *       各インスタンスはLISTEN用の接続で受け取って自分の購読者へ流す。通知の取りこぼしがあり得る再接続時は
+ *       全購読者に「resync」を送る。通知のペイロード上限(8000バイト)を超えるイベントは、
+ *       対象ユーザー毎の詳細を省いて送る。</li>
+ *   <li>同じアウトボックスIDのイベント(リレーの再配信や自分が送った通知)は1回だけ流す。</li>
+ *   <li>購読者ごとに容量固定のキューと送信用の仮想スレッドを持つ。キューが溢れた購読者は
+ *       溜まった分を捨てて「resync」イベントを受け取り、/api/auditから取り直す。</li>
+ *   <li>直近replay-size件を保持し、Last-Event-IDで再接続した購読者にはその続きから送る。
+ *       保持範囲外のIDなら「resync」を送る。</li>
+ * </ul>
+ * イベントIDはアウトボックスのID。
+ */
+@Slf4j
+@Component
+public class UserAuditStreamBroadcaster implements UserOutboxConsumer {
+
+    public static final String RESYNC_EVENT = "resync";
+
+    private static final String CHANNEL = "user_audit_stream";
+    // NOTIFYのペイロードは8000バイト未満でなければならない
+    private static final int MAX_PAYLOAD_BYTES = 7999;
+    private static final int LISTEN_POLL_MILLIS = 500;
+    private static final Duration RECONNECT_DELAY = Duration.ofSeconds(5);
+
+    private record StreamEvent(long id, String name, String data) {
+    }
+
+    private static final StreamEvent RESYNC = new StreamEvent(-1, RESYNC_EVENT, "{\"reason\":\"events were dropped\"}");
+
+    private final ObjectMapper objectMapper;
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final int bufferSize;
+    private final int replaySize;
+    private final Duration timeout;
+    private final Duration heartbeat;
+
+    // 新しいイベントの追加と購読者の登録を同じロックで直列化し、再接続時に取りこぼしが出ないようにする
+    private final Object lock = new Object();
+    private final Deque<StreamEvent> replayBuffer = new ArrayDeque<>();
+    // replayBufferに入っているイベントのID(重複の判定用)
+    private final Set<Long> replayedIds = new HashSet<>();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private volatile boolean listening = true;
+    private Thread listenerThread;
+
+    public UserAuditStreamBroadcaster(ObjectMapper objectMapper,
+                                      DataSource dataSource,
+                                      JdbcTemplate jdbcTemplate,
+                                      @Value("${app.user-audit.stream.buffer-size:256}") int bufferSize,
+                                      @Value("${app.user-audit.stream.replay-size:1000}") int replaySize,
+                                      @Value("${app.user-audit.stream.timeout:PT30M}") Duration timeout,
+                                      @Value("${app.user-audit.stream.heartbeat:PT15S}") Duration heartbeat) {
+        this.objectMapper = objectMapper;
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.bufferSize = bufferSize;
+        this.replaySize = replaySize;
+        this.timeout = timeout;
+        this.heartbeat = heartbeat;
+    }
+
+    /**
+     * 購読を開始する。lastEventIdを指定した場合はその続きから送る。
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(emitter);
+        synchronized (lock) {
+            if (lastEventId != null && !lastEventId.isBlank()) {
+                replayAfter(subscriber, lastEventId.trim());
+            }
+            subscribers.add(subscriber);
+        }
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(error -> subscriber.close());
+        subscriber.start();
+        return emitter;
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    @Override
+    public CompletableFuture<Void> consume(List<UserOutboxRepository.OutboxEvent> events) {
+        List<StreamEvent> streamEvents = events.stream().map(this::toStreamEvent).toList();
+        // 自分の購読者へはすぐに流し、NOTIFYで戻ってきた分は重複として捨てる
+        broadcast(streamEvents);
+        notifyOtherInstances(streamEvents);
+        // ライブ配信はベストエフォートで、アウトボックスの削除を妨げない
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startListening() {
+        listenerThread = Thread.ofPlatform().name("user-audit-stream-listener").daemon(true).start(this::listen);
+    }
+
+    private void broadcast(List<StreamEvent> streamEvents) {
+        synchronized (lock) {
+            for (StreamEvent streamEvent : streamEvents) {
+                if (!replayedIds.add(streamEvent.id())) {
+                    continue;
+                }
+                replayBuffer.addLast(streamEvent);
+                if (replayBuffer.size() > replaySize) {
+                    replayedIds.remove(replayBuffer.removeFirst().id());
+                }
+                subscribers.forEach(subscriber -> subscriber.offer(streamEvent));
+            }
+        }
+    }
+
+    private void notifyOtherInstances(List<StreamEvent> streamEvents) {
+        List<String> payloads = new ArrayList<>(streamEvents.size());
+        for (StreamEvent streamEvent : streamEvents) {
+            payloads.add(streamEvent.data().getBytes(StandardCharsets.UTF_8).length <= MAX_PAYLOAD_BYTES
+                    ? streamEvent.data()
+                    : withoutTargets(streamEvent));
+        }
+        try {
+            jdbcTemplate.query("SELECT pg_notify(?, payload) FROM unnest(CAST(? AS text[])) AS payload",
+                    rs -> {
+                    }, CHANNEL, payloads.toArray(String[]::new));
+        } catch (DataAccessException e) {
+            log.warn("Failed to notify {} audit stream events to other instances", payloads.size(), e);
+        }
+    }
+
+    /**
+     * LISTEN用の接続を1本保持し、他のインスタンス(と自分)が送った通知を購読者へ流す。
+     * 接続が切れた場合は作り直し、その間の通知は失われるため購読者にresyncを送る。
+     */
+    private void listen() {
+        boolean reconnecting = false;
+        while (listening) {
+            try (Connection connection = dataSource.getConnection()) {
+                try {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute("LISTEN " + CHANNEL);
+                    }
+                    if (reconnecting) {
+                        resyncAll();
+                    }
+                    PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                    while (listening) {
+                        PGNotification[] notifications = pgConnection.getNotifications(LISTEN_POLL_MILLIS);
+                        if (notifications != null) {
+                            broadcast(fromNotifications(notifications));
+                        }
+                    }
+                } finally {
+                    unlisten(connection);
+                }
+            } catch (SQLException e) {
+                if (!listening) {
+                    return;
+                }
+                log.warn("Audit stream listener lost its connection, reconnecting", e);
+                reconnecting = true;
+                try {
+                    Thread.sleep(RECONNECT_DELAY.toMillis());
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * プールへ返す接続に通知が溜まり続けないよう、LISTENを解除してから返す。
+     */
+    private void unlisten(Connection connection) {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("UNLISTEN *");
+        } catch (SQLException e) {
+            log.debug("Failed to unlisten audit stream channel", e);
+        }
+    }
+
+    private List<StreamEvent> fromNotifications(PGNotification[] notifications) {
+        List<StreamEvent> streamEvents = new ArrayList<>(notifications.length);
+        for (PGNotification notification : notifications) {
+            try {
+                JsonNode data = objectMapper.readTree(notification.getParameter());
+                streamEvents.add(new StreamEvent(
+                        data.get("id").asLong(), data.get("action").asText(), notification.getParameter()));
+            } catch (JsonProcessingException | RuntimeException e) {
+                log.warn("Ignoring malformed audit stream notification", e);
+            }
+        }
+        return streamEvents;
+    }
+
+    private void resyncAll() {
+        synchronized (lock) {
+            subscribers.forEach(subscriber -> subscriber.offer(RESYNC));
+        }
+    }
+
+    private void replayAfter(Subscriber subscriber, String lastEventId) {
+        Iterator<StreamEvent> iterator = replayBuffer.iterator();
+        while (iterator.hasNext()) {
+            if (String.valueOf(iterator.next().id()).equals(lastEventId)) {
+                iterator.forEachRemaining(subscriber::offer);
+                return;
+            }
+        }
+        subscriber.offer(RESYNC);
+    }
+
+    private String withoutTargets(StreamEvent streamEvent) {
+        try {
+            ObjectNode data = (ObjectNode) objectMapper.readTree(streamEvent.data());
+            data.remove("targets");
+            data.put("targetsOmitted", true);
+            return objectMapper.writeValueAsString(data);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Stream event is not serializable", e);
+        }
+    }
+
+    private StreamEvent toStreamEvent(UserOutboxRepository.OutboxEvent event) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("id", event.id());
+        data.put("action", event.action());
+        data.put("userId", event.actorId());
+        data.put("targets", event.detailsByTargetUserId());
+        data.put("createdAt", event.createdAt());
+        try {
+            // 購読者の数に関わらずシリアライズは1回にする
+            return new StreamEvent(event.id(), event.action().name(), objectMapper.writeValueAsString(data));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Stream event is not serializable", e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        listening = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+            listenerThread.join(LISTEN_POLL_MILLIS * 2L);
+        }
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    private class Subscriber {
+
+        private final SseEmitter emitter;
+        private final BlockingQueue<StreamEvent> queue = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private Thread sender;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        /**
+         * lockを保持した状態で呼ぶ(キューへの追加は常に1スレッドから)。
+         */
+        void offer(StreamEvent event) {
+            if (!queue.offer(event)) {
+                // 追いつけない購読者のために無制限に溜めず、捨てて取り直しを求める
+                queue.clear();
+                queue.add(RESYNC);
+            }
+        }
+
+        void start() {
+            sender = Thread.ofVirtual().name("audit-stream-subscriber").start(this::run);
+        }
+
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                subscribers.remove(this);
+                if (sender != null) {
+                    sender.interrupt();
+                }
+            }
+        }
+
+        private void run() {
+            try {
+                while (!closed.get()) {
+                    StreamEvent event = queue.poll(heartbeat.toMillis(), TimeUnit.MILLISECONDS);
+                    if (event == null) {
+                        // 切断を検知するため、何もなければコメント行を送る
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    } else if (event == RESYNC) {
+                        emitter.send(SseEmitter.event().name(RESYNC_EVENT).data(event.data()));
+                    } else {
+                        emitter.send(SseEmitter.event().id(String.valueOf(event.id())).name(event.name()).data(event.data()));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Audit stream subscriber disconnected", e);
+                emitter.completeWithError(e);
+            } finally {
+                close();
+            }
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package carametal.practice.infrastructure;
+
+import carametal.practice.entity.UserAuditEvent;
+import carametal.practice.service.UserAuditService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 操作ログの書き込みキュー。専用スレッドがキューを取り出し、flush-size件またはflush-intervalごとに
+ * まとめて1トランザクションで挿入する(グループコミット)。
+ * キューの容量はイベント件数で制限し、溢れた場合の動作はoverflow-policyで選ぶ。
+ * まとめた書き込みが失敗した場合は呼び出し単位で書き直し、不正な行を含む呼び出しだけを失敗させる。
+ * 戻り値の完了は別スレッドで行うため、コールバックが書き込みスレッドを塞ぐことはない。
+ * SYNCモードではキューを使わず呼び出し元のスレッド・トランザクションで書き込む(テスト用)。
+ * キューの状態はuser.audit.writer.*のメトリクスとして公開する。
+ */
+@Slf4j
+@Component
+public class UserAuditWriter implements MeterBinder {
+
+    public enum Mode {
+        ASYNC,
+        SYNC
+    }
+
+    public enum OverflowPolicy {
+        // offer-timeoutまで空きを待ち、空かなければ拒否する
+        BLOCK,
+        // 待たずに拒否する
+        REJECT,
+        // 呼び出し元のスレッドで直接書き込む
+        CALLER_RUNS
+    }
+
+    /**
+     * 書き込みキューの状態。lagはキュー内で最も古いバッチの待ち時間。
+     */
+    public record Metrics(int queuedBatches, int queuedEvents, Duration lag,
+                          long writtenEvents, long flushes, long rejectedBatches, long failedFlushes) {
+    }
+
+    private record Pending(List<UserAuditEvent> events, int permits, CompletableFuture<Void> done, long enqueuedAtNanos) {
+    }
+
+    private final UserAuditService userAuditService;
+    private final Mode mode;
+    private final OverflowPolicy overflowPolicy;
+    private final int capacity;
+    private final int flushSize;
+    private final Duration flushInterval;
+    private final Duration offerTimeout;
+    private final Duration drainTimeout;
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Semaphore capacityPermits;
+    private final AtomicLong writtenEvents = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong rejectedBatches = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    // 呼び出し元のコールバック(再投入を含む)を書き込みスレッドで実行しないよう、完了はこちらで行う
+    private final ExecutorService completionExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Thread writerThread;
+    private volatile boolean accepting = true;
+
+    public UserAuditWriter(UserAuditService userAuditService,
+                           @Value("${app.user-audit.writer.mode:ASYNC}") Mode mode,
+                           @Value("${app.user-audit.writer.overflow-policy:BLOCK}") OverflowPolicy overflowPolicy,
+                           @Value("${app.user-audit.writer.capacity:50000}") int capacity,
+                           @Value("${app.user-audit.writer.flush-size:2000}") int flushSize,
+                           @Value("${app.user-audit.writer.flush-interval:PT0.2S}") Duration flushInterval,
+                           @Value("${app.user-audit.writer.offer-timeout:PT5S}") Duration offerTimeout,
+                           @Value("${app.user-audit.writer.drain-timeout:PT30S}") Duration drainTimeout) {
+        this.userAuditService = userAuditService;
+        this.mode = mode;
+        this.overflowPolicy = overflowPolicy;
+        this.capacity = capacity;
+        this.flushSize = flushSize;
+        this.flushInterval = flushInterval;
+        this.offerTimeout = offerTimeout;
+        this.drainTimeout = drainTimeout;
+        this.capacityPermits = new Semaphore(capacity);
+        this.writerThread = mode == Mode.ASYNC
+                ? Thread.ofPlatform().name("user-audit-writer").daemon(true).start(this::runWriter)
+                : null;
+    }
+
+    /**
+     * 操作ログをキューに積む。戻り値はコミットされた時点で(書き込みスレッドとは別のスレッドで)完了する。
+     * キューが満杯で受け付けられなかった場合はRejectedExecutionExceptionで完了する。
+     */
+    public CompletableFuture<Void> submit(List<UserAuditEvent> events) {
+        if (events.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (mode == Mode.SYNC) {
+            return writeInCaller(events);
+        }
+        if (!accepting) {
+            rejectedBatches.incrementAndGet();
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Audit writer is shutting down"));
+        }
+
+        // 容量より大きいバッチも受け付けられるよう、必要な許可数は容量で頭打ちにする
+        int permits = Math.min(events.size(), capacity);
+        if (!acquire(permits)) {
+            if (overflowPolicy == OverflowPolicy.CALLER_RUNS) {
+                return writeInCaller(events);
+            }
+            rejectedBatches.incrementAndGet();
+            return CompletableFuture.failedFuture(new RejectedExecutionException(
+                    "Audit queue is full (" + capacity + " events)"));
+        }
+
+        Pending pending = new Pending(List.copyOf(events), permits, new CompletableFuture<>(), System.nanoTime());
+        queue.add(pending);
+        return pending.done();
+    }
+
+    public Metrics metrics() {
+        return new Metrics(queue.size(), queuedEvents(), lag(),
+                writtenEvents.get(), flushes.get(), rejectedBatches.get(), failedFlushes.get());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("user.audit.writer.queued.batches", queue, BlockingQueue::size)
+                .description("Batches waiting to be written")
+                .register(registry);
+        Gauge.builder("user.audit.writer.queued.events", this, UserAuditWriter::queuedEvents)
+                .description("Audit events waiting to be written")
+                .baseUnit("events")
+                .register(registry);
+        TimeGauge.builder("user.audit.writer.lag", this, TimeUnit.NANOSECONDS, writer -> writer.lag().toNanos())
+                .description("Time the oldest queued batch has been waiting")
+                .register(registry);
+        FunctionCounter.builder("user.audit.writer.written", writtenEvents, AtomicLong::get)
+                .description("Audit events written")
+                .baseUnit("events")
+                .register(registry);
+        FunctionCounter.builder("user.audit.writer.flushes", flushes, AtomicLong::get)
+                .register(registry);
+        FunctionCounter.builder("user.audit.writer.rejected", rejectedBatches, AtomicLong::get)
+                .description("Batches rejected because the queue was full or shutting down")
+                .baseUnit("batches")
+                .register(registry);
+        FunctionCounter.builder("user.audit.writer.failed.flushes", failedFlushes, AtomicLong::get)
+                .register(registry);
+    }
+
+    private int queuedEvents() {
+        return capacity - capacityPermits.availablePermits();
+    }
+
+    private Duration lag() {
+        Pending oldest = queue.peek();
+        return oldest != null ? Duration.ofNanos(System.nanoTime() - oldest.enqueuedAtNanos()) : Duration.ZERO;
+    }
+
+    private boolean acquire(int permits) {
+        if (overflowPolicy != OverflowPolicy.BLOCK) {
+            return capacityPermits.tryAcquire(permits);
+        }
+        try {
+            return capacityPermits.tryAcquire(permits, offerTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private CompletableFuture<Void> writeInCaller(List<UserAuditEvent> events) {
+        try {
+            userAuditService.logAll(events);
+            writtenEvents.addAndGet(events.size());
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void runWriter() {
+        try {
+            while (accepting || !queue.isEmpty()) {
+                Pending first = queue.poll(flushInterval.toNanos(), TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<Pending> batch = new ArrayList<>();
+                batch.add(first);
+                int rows = first.events().size();
+                long deadline = System.nanoTime() + flushInterval.toNanos();
+                while (rows < flushSize) {
+                    Pending next = queue.poll(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    rows += next.events().size();
+                }
+                flush(batch, rows);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failRemaining();
+    }
+
+    /**
+     * 書き込めなかった分は呼び出し元に失敗として返す(アウトボックス経由なら後で再配信される)
+     */
+    private void failRemaining() {
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            complete(pending, new RejectedExecutionException("Audit writer stopped"));
+        }
+    }
+
+    private void flush(List<Pending> batch, int rows) {
+        List<UserAuditEvent> events = new ArrayList<>(rows);
+        batch.forEach(pending -> events.addAll(pending.events()));
+        long start = System.nanoTime();
+        try {
+            userAuditService.logAll(events);
+        } catch (RuntimeException e) {
+            failedFlushes.incrementAndGet();
+            if (batch.size() == 1) {
+                log.warn("Failed to write {} audit events", rows, e);
+                complete(batch.get(0), e);
+            } else {
+                // 1件の不正な行で他の呼び出し元の分まで失敗させないよう、呼び出し単位で書き直す
+                log.warn("Failed to write {} audit events from {} batches, retrying batch by batch", rows, batch.size(), e);
+                batch.forEach(pending -> flush(List.of(pending), pending.events().size()));
+            }
+            return;
+        }
+        writtenEvents.addAndGet(rows);
+        flushes.incrementAndGet();
+        log.debug("Flushed {} audit events from {} batches in {} ms",
+                rows, batch.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        batch.forEach(pending -> complete(pending, null));
+    }
+
+    private void complete(Pending pending, Throwable failure) {
+        capacityPermits.release(pending.permits());
+        Runnable completion = failure == null
+                ? () -> pending.done().complete(null)
+                : () -> pending.done().completeExceptionally(failure);
+        try {
+            completionExecutor.execute(completion);
+        } catch (RejectedExecutionException e) {
+            // 停止後はこのスレッドで完了させる
+            completion.run();
+        }
+    }
+
+    /**
+     * 受け付けを止め、drain-timeoutまでキューに残った分を書き込んでから終了する。
+     */
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        accepting = false;
+        if (writerThread == null) {
+            completionExecutor.shutdown();
+            return;
+        }
+        writerThread.join(drainTimeout.toMillis());
+        if (writerThread.isAlive()) {
+            log.warn("Audit writer did not drain within {}, {} events left", drainTimeout, metrics().queuedEvents());
+            writerThread.interrupt();
+            writerThread.join();
+        }
+        failRemaining();
+        completionExecutor.shutdown();
+        completionExecutor.awaitTermination(drainTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+}
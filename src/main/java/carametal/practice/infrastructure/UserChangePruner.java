@@ -0,0 +1,60 @@
+package carametal.practice.infrastructure;
+
+import carametal.practice.repository.UserChangeRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * 保持期間を過ぎた変更フィード(user_changes)の行を削除するバックグラウンド処理。
+ * 先に削除済みの位置(user_change_horizon)を進めてコミットしてから、その位置までの行をbatchSize件ずつ削除する。
+ * これより前のカーソルで読みに来たクライアントには410を返し、検索からの再同期を求める。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserChangePruner {
+
+    private final UserChangeRepository userChangeRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.user-change.batch-size:10000}")
+    private int batchSize;
+
+    @Value("${app.user-change.retention:P7D}")
+    private Duration retention;
+
+    @Scheduled(cron = "${app.user-change.prune-cron:0 15 3 * * *}")
+    public void prune() {
+        int pruned = pruneBefore(LocalDateTime.now().minus(retention));
+        if (pruned > 0) {
+            log.info("Pruned {} user changes older than {}", pruned, retention);
+        }
+    }
+
+    /**
+     * changedBeforeより前に記録された行と、それより位置が前の行を削除する。
+     */
+    public int pruneBefore(LocalDateTime changedBefore) {
+        Optional<UserChangeRepository.Position> horizon = userChangeRepository.findLastPositionBefore(changedBefore);
+        if (horizon.isEmpty()) {
+            return 0;
+        }
+        transactionTemplate.executeWithoutResult(status -> userChangeRepository.advanceHorizon(horizon.get()));
+
+        int total = 0;
+        int deleted;
+        do {
+            deleted = transactionTemplate.execute(status -> userChangeRepository.deleteUpTo(horizon.get(), batchSize));
+            total += deleted;
+        } while (deleted == batchSize);
+        return total;
+    }
+}
@@ -0,0 +1,110 @@
+package carametal.practice.infrastructure;
+
+import carametal.practice.domain.event.UserCreatedBatchEvent;
+import carametal.practice.domain.event.UserCreatedEvent;
+import carametal.practice.domain.event.UserDeletedBatchEvent;
+import carametal.practice.domain.event.UserDeletedEvent;
+import carametal.practice.domain.event.UserRolesChangedBatchEvent;
+import carametal.practice.domain.event.UserUpdatedEvent;
+import carametal.practice.repository.UserDirectoryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Subscriber that keeps the user_directory read model in sync with user domain events.
+ * Receives events from {@link UserEventDispatcher} after the originating transaction commits,
+ * so a failure here never rolls back the write, and events for one user are applied in order.
+ * The directory-wide change counter is advanced only after the row is refreshed, so a search
+ * response can never be cached under a newer version than the data it contains.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserDirectoryProjector implements UserEventSubscriber {
+
+    private final UserDirectoryRepository userDirectoryRepository;
+
+    /**
+     * Handles UserCreatedEvent and inserts the user's directory row.
+     */
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void handleUserCreatedEvent(UserCreatedEvent event) {
+        log.debug("Projecting UserCreatedEvent for user ID: {}", event.getUserId());
+        userDirectoryRepository.refresh(List.of(event.getUserId()));
+        userDirectoryRepository.incrementVersion();
+    }
+
+    /**
+     * Handles UserCreatedBatchEvent and inserts all directory rows with one set-based statement.
+     */
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void handleUserCreatedBatchEvent(UserCreatedBatchEvent event) {
+        log.debug("Projecting UserCreatedBatchEvent for {} users", event.getEvents().size());
+        userDirectoryRepository.refresh(event.getEvents().stream().map(UserCreatedEvent::getUserId).toList());
+        userDirectoryRepository.incrementVersion();
+    }
+
+    /**
+     * Handles UserRolesChangedBatchEvent and refreshes the role names of every changed user.
+     */
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void handleUserRolesChangedBatchEvent(UserRolesChangedBatchEvent event) {
+        log.debug("Projecting UserRolesChangedBatchEvent for {} users", event.getUserIds().size());
+        userDirectoryRepository.refresh(event.getUserIds());
+        userDirectoryRepository.incrementVersion();
+    }
+
+    /**
+     * Handles UserUpdatedEvent and rebuilds the user's directory row.
+     */
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void handleUserUpdatedEvent(UserUpdatedEvent event) {
+        log.debug("Projecting UserUpdatedEvent for user ID: {}", event.getUserId());
+        userDirectoryRepository.refresh(List.of(event.getUserId()));
+        userDirectoryRepository.incrementVersion();
+    }
+
+    /**
+     * Handles UserDeletedEvent and removes the user's directory row.
+     */
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void handleUserDeletedEvent(UserDeletedEvent event) {
+        log.debug("Projecting UserDeletedEvent for user ID: {}", event.getUserId());
+        userDirectoryRepository.deleteByUserIds(List.of(event.getUserId()));
+        userDirectoryRepository.incrementVersion();
+    }
+
+    /**
+     * Handles UserDeletedBatchEvent and removes all directory rows with one statement.
+     */
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void handleUserDeletedBatchEvent(UserDeletedBatchEvent event) {
+        log.debug("Projecting UserDeletedBatchEvent for {} users", event.getEvents().size());
+        userDirectoryRepository.deleteByUserIds(event.getEvents().stream().map(UserDeletedEvent::getUserId).toList());
+        userDirectoryRepository.incrementVersion();
+    }
+
+    /**
+     * Rebuilds the rows of users whose events were dropped, removing rows of users deleted in the meantime.
+     */
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void resyncUsers(Collection<Long> userIds) {
+        log.info("Resyncing directory rows for {} users after dropped events", userIds.size());
+        userDirectoryRepository.refresh(userIds);
+        userDirectoryRepository.deleteRemoved(userIds);
+        userDirectoryRepository.incrementVersion();
+    }
+}
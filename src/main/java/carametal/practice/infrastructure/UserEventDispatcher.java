@@ -0,0 +1,379 @@
+package carametal.practice.infrastructure;
+
+import carametal.practice.domain.event.UserCreatedBatchEvent;
+import carametal.practice.domain.event.UserCreatedEvent;
+import carametal.practice.domain.event.UserDeletedBatchEvent;
+import carametal.practice.domain.event.UserDeletedEvent;
+import carametal.practice.domain.event.UserRolesChangedBatchEvent;
+import carametal.practice.domain.event.UserUpdatedEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * コミットされたユーザーのドメインイベントを{@link UserEventSubscriber}へ非同期に配信する。
+ * <ul>
+ *   <li>イベントはユーザーIDのハッシュで固定数のレーンに振り分ける。各レーンは専用スレッド1本と
+ *       容量固定のキューを持つため、同じユーザーのイベントは発生順に処理され、別のユーザーは並列に処理される。</li>
+ *   <li>一括イベントはレーン毎に分割して、それぞれのレーンへ1件ずつ積む。</li>
+ *   <li>レーンのキューが満杯の場合はoffer-timeoutまで呼び出し元を待たせる。呼び出し元はコミット直後で
+ *       まだコネクションを返していないため、無期限には待たせない。時間内に空かなければイベントを捨て、
+ *       そのユーザーをレーンの再同期対象に加える。レーンのスレッドは次の処理の前に
+ *       {@link UserEventSubscriber#resyncUsers}を呼び、購読者は現在のDBの状態から作り直す。
+ *       購読者が失敗したイベントの対象ユーザーも同じく再同期する。</li>
+ *   <li>終了時にdrain-timeoutまでに配信できなかったイベントは、対象ユーザーを終了処理のスレッドで再同期する。</li>
+ * </ul>
+ * ロールバックされた変更は配信しない。操作ログのアウトボックスへの追記は発行元のトランザクションで
+ * 行う必要があるため、{@link UserEventListener}はここではなく同期のリスナーのまま。
+ * SYNCモードではレーンを使わず呼び出し元のスレッドで配信する(テスト用)。
+ * レーン毎の状態はuser.event.lane.*、待たされた回数と捨てた件数はuser.event.dispatcher.*のメトリクスとして公開する。
+ */
+@Slf4j
+@Component
+public class UserEventDispatcher implements MeterBinder {
+
+    // drain-timeoutを過ぎて割り込んだレーンのスレッドが止まるのを待つ時間
+    private static final Duration SHUTDOWN_GRACE = Duration.ofSeconds(1);
+
+    public enum Mode {
+        ASYNC,
+        SYNC
+    }
+
+    /**
+     * レーンの状態。lagはキュー内で最も古いイベントの待ち時間。
+     */
+    public record LaneMetrics(int lane, int queued, int capacity, Duration lag, long dispatched, long failed) {
+    }
+
+    /**
+     * backpressureWaitsはキューが満杯で呼び出し元が待たされた回数、droppedEventsはそのうちoffer-timeoutを超えて捨てた件数。
+     */
+    public record Metrics(List<LaneMetrics> lanes, long backpressureWaits, long droppedEvents) {
+    }
+
+    private record Pending(Object event, long enqueuedAtNanos) {
+    }
+
+    private final List<UserEventSubscriber> subscribers;
+    private final Mode mode;
+    private final int capacity;
+    private final Duration offerTimeout;
+    private final Duration drainTimeout;
+    private final List<Lane> lanes;
+    private final AtomicLong backpressureWaits = new AtomicLong();
+    private final AtomicLong droppedEvents = new AtomicLong();
+
+    public UserEventDispatcher(List<UserEventSubscriber> subscribers,
+                               @Value("${app.user-event.dispatcher.mode:ASYNC}") Mode mode,
+                               @Value("${app.user-event.dispatcher.lanes:0}") int lanes,
+                               @Value("${app.user-event.dispatcher.capacity:10000}") int capacity,
+                               @Value("${app.user-event.dispatcher.offer-timeout:PT1S}") Duration offerTimeout,
+                               @Value("${app.user-event.dispatcher.drain-timeout:PT30S}") Duration drainTimeout) {
+        this.subscribers = List.copyOf(subscribers);
+        this.mode = mode;
+        this.capacity = capacity;
+        this.offerTimeout = offerTimeout;
+        this.drainTimeout = drainTimeout;
+        // 0の場合はコア数と同じにする
+        int laneCount = lanes > 0 ? lanes : Runtime.getRuntime().availableProcessors();
+        List<Lane> created = new ArrayList<>(laneCount);
+        if (mode == Mode.ASYNC) {
+            for (int i = 0; i < laneCount; i++) {
+                created.add(new Lane(i));
+            }
+        }
+        this.lanes = List.copyOf(created);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, classes = {
+            UserCreatedEvent.class, UserCreatedBatchEvent.class, UserRolesChangedBatchEvent.class,
+            UserUpdatedEvent.class, UserDeletedEvent.class, UserDeletedBatchEvent.class})
+    public void onCommitted(Object event) {
+        dispatch(event);
+    }
+
+    /**
+     * イベントをレーンへ積む。SYNCモードではその場で配信する。
+     */
+    public void dispatch(Object event) {
+        if (mode == Mode.SYNC) {
+            deliver(event);
+            return;
+        }
+        switch (event) {
+            case UserCreatedBatchEvent batch -> split(batch.getEvents(), UserCreatedEvent::getUserId).forEach(
+                    (lane, events) -> lanes.get(lane).enqueue(UserCreatedBatchEvent.builder()
+                            .createdBy(batch.getCreatedBy())
+                            .events(events)
+                            .occurredAt(batch.getOccurredAt())
+                            .build()));
+            case UserDeletedBatchEvent batch -> split(batch.getEvents(), UserDeletedEvent::getUserId).forEach(
+                    (lane, events) -> lanes.get(lane).enqueue(UserDeletedBatchEvent.builder()
+                            .deletedBy(batch.getDeletedBy())
+                            .events(events)
+                            .occurredAt(batch.getOccurredAt())
+                            .build()));
+            case UserRolesChangedBatchEvent batch -> split(batch.getUserIds(), Function.identity()).forEach(
+                    (lane, userIds) -> lanes.get(lane).enqueue(UserRolesChangedBatchEvent.builder()
+                            .changedBy(batch.getChangedBy())
+                            .roleName(batch.getRoleName())
+                            .change(batch.getChange())
+                            .userIds(userIds)
+                            .occurredAt(batch.getOccurredAt())
+                            .build()));
+            case UserCreatedEvent created -> laneOf(created.getUserId()).enqueue(created);
+            case UserUpdatedEvent updated -> laneOf(updated.getUserId()).enqueue(updated);
+            case UserDeletedEvent deleted -> laneOf(deleted.getUserId()).enqueue(deleted);
+            default -> throw new IllegalArgumentException("Unsupported user event: " + event.getClass().getName());
+        }
+    }
+
+    public Metrics metrics() {
+        return new Metrics(lanes.stream().map(Lane::metrics).toList(), backpressureWaits.get(), droppedEvents.get());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("user.event.dispatcher.backpressure.waits", backpressureWaits, AtomicLong::get)
+                .description("Times a committing caller had to wait for a full lane")
+                .register(registry);
+        FunctionCounter.builder("user.event.dispatcher.dropped", droppedEvents, AtomicLong::get)
+                .description("Events dropped after offer-timeout and replaced by a resync")
+                .baseUnit("events")
+                .register(registry);
+        for (Lane lane : lanes) {
+            Tags tags = Tags.of("lane", Integer.toString(lane.index));
+            Gauge.builder("user.event.lane.queued", lane.queue, BlockingQueue::size)
+                    .tags(tags)
+                    .baseUnit("events")
+                    .register(registry);
+            TimeGauge.builder("user.event.lane.lag", lane, TimeUnit.NANOSECONDS, Lane::lagNanos)
+                    .tags(tags)
+                    .description("Time the oldest queued event has been waiting")
+                    .register(registry);
+            FunctionCounter.builder("user.event.lane.dispatched", lane.dispatched, AtomicLong::get)
+                    .tags(tags)
+                    .register(registry);
+            FunctionCounter.builder("user.event.lane.failed", lane.failed, AtomicLong::get)
+                    .tags(tags)
+                    .register(registry);
+        }
+    }
+
+    /**
+     * 受け付けを止め、drain-timeoutまで各レーンに残った分を配信してから終了する。
+     */
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        lanes.forEach(lane -> lane.accepting = false);
+        long deadline = System.nanoTime() + drainTimeout.toNanos();
+        for (Lane lane : lanes) {
+            lane.thread.join(Math.max(TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()), 1));
+            if (lane.thread.isAlive()) {
+                log.warn("User event lane {} did not drain within {}, {} events left",
+                        lane.index, drainTimeout, lane.queue.size());
+                lane.thread.interrupt();
+                lane.thread.join(SHUTDOWN_GRACE.toMillis());
+            }
+        }
+
+        // 配信できずに残ったイベントは捨て、対象ユーザーを現在のDBの状態から作り直す
+        Set<Long> remaining = new LinkedHashSet<>();
+        lanes.forEach(lane -> remaining.addAll(lane.drainUserIds()));
+        if (remaining.isEmpty()) {
+            return;
+        }
+        for (UserEventSubscriber subscriber : subscribers) {
+            try {
+                subscriber.resyncUsers(List.copyOf(remaining));
+            } catch (RuntimeException e) {
+                log.error("Failed to resync {} users on shutdown", remaining.size(), e);
+            }
+        }
+    }
+
+    private <T> Map<Integer, List<T>> split(List<T> items, Function<T, Long> userId) {
+        Map<Integer, List<T>> byLane = new LinkedHashMap<>();
+        for (T item : items) {
+            byLane.computeIfAbsent(laneIndex(userId.apply(item)), lane -> new ArrayList<>()).add(item);
+        }
+        return byLane;
+    }
+
+    private Lane laneOf(Long userId) {
+        return lanes.get(laneIndex(userId));
+    }
+
+    private int laneIndex(Long userId) {
+        if (userId == null) {
+            return 0;
+        }
+        // 連番のIDが偏らないよう混ぜてから割る
+        return Math.floorMod(Long.hashCode(userId * 0x9E3779B97F4A7C15L), lanes.size());
+    }
+
+    private List<Long> userIds(Object event) {
+        return switch (event) {
+            case UserCreatedEvent e -> List.of(e.getUserId());
+            case UserCreatedBatchEvent e -> e.getEvents().stream().map(UserCreatedEvent::getUserId).toList();
+            case UserRolesChangedBatchEvent e -> e.getUserIds();
+            case UserUpdatedEvent e -> List.of(e.getUserId());
+            case UserDeletedEvent e -> List.of(e.getUserId());
+            case UserDeletedBatchEvent e -> e.getEvents().stream().map(UserDeletedEvent::getUserId).toList();
+            default -> throw new IllegalArgumentException("Unsupported user event: " + event.getClass().getName());
+        };
+    }
+
+    private void deliver(Object event) {
+        for (UserEventSubscriber subscriber : subscribers) {
+            switch (event) {
+                case UserCreatedEvent e -> subscriber.handleUserCreatedEvent(e);
+                case UserCreatedBatchEvent e -> subscriber.handleUserCreatedBatchEvent(e);
+                case UserRolesChangedBatchEvent e -> subscriber.handleUserRolesChangedBatchEvent(e);
+                case UserUpdatedEvent e -> subscriber.handleUserUpdatedEvent(e);
+                case UserDeletedEvent e -> subscriber.handleUserDeletedEvent(e);
+                case UserDeletedBatchEvent e -> subscriber.handleUserDeletedBatchEvent(e);
+                default -> throw new IllegalArgumentException("Unsupported user event: " + event.getClass().getName());
+            }
+        }
+    }
+
+    private final class Lane {
+
+        private final int index;
+        private final BlockingQueue<Pending> queue;
+        private final Thread thread;
+        private final AtomicLong dispatched = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final Set<Long> resyncUserIds = ConcurrentHashMap.newKeySet();
+        private volatile boolean accepting = true;
+
+        Lane(int index) {
+            this.index = index;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.thread = Thread.ofPlatform().name("user-event-lane-" + index).daemon(true).start(this::run);
+        }
+
+        void enqueue(Object event) {
+            if (!accepting) {
+                log.warn("User event dispatcher is shutting down, dropped {} and scheduled a resync",
+                        event.getClass().getSimpleName());
+                droppedEvents.incrementAndGet();
+                resyncUserIds.addAll(userIds(event));
+                return;
+            }
+            Pending pending = new Pending(event, System.nanoTime());
+            if (queue.offer(pending)) {
+                return;
+            }
+            backpressureWaits.incrementAndGet();
+            try {
+                if (queue.offer(pending, offerTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                    return;
+                }
+                log.warn("User event lane {} has been full ({} events) for {}, dropped {} and scheduled a resync",
+                        index, capacity, offerTimeout, event.getClass().getSimpleName());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Interrupted while waiting for user event lane {}, dropped {} and scheduled a resync",
+                        index, event.getClass().getSimpleName());
+            }
+            droppedEvents.incrementAndGet();
+            resyncUserIds.addAll(userIds(event));
+        }
+
+        LaneMetrics metrics() {
+            return new LaneMetrics(index, queue.size(), capacity, Duration.ofNanos(lagNanos()),
+                    dispatched.get(), failed.get());
+        }
+
+        long lagNanos() {
+            Pending oldest = queue.peek();
+            return oldest != null ? System.nanoTime() - oldest.enqueuedAtNanos() : 0;
+        }
+
+        private void run() {
+            try {
+                while (accepting || !queue.isEmpty() || !resyncUserIds.isEmpty()) {
+                    resync();
+                    Pending pending = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (pending == null) {
+                        continue;
+                    }
+                    try {
+                        deliver(pending.event());
+                        dispatched.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        // 1件の失敗でレーン全体を止めず、対象ユーザーは次のループで再同期する
+                        failed.incrementAndGet();
+                        resyncUserIds.addAll(userIds(pending.event()));
+                        log.error("Failed to dispatch {} on lane {}, scheduled a resync",
+                                pending.event().getClass().getSimpleName(), index, e);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * キューに残ったイベントを捨て、それらと再同期待ちのユーザーIDを返す(終了時に使う)。
+         */
+        Set<Long> drainUserIds() {
+            List<Pending> left = new ArrayList<>();
+            queue.drainTo(left);
+            droppedEvents.addAndGet(left.size());
+            Set<Long> userIds = new LinkedHashSet<>(resyncUserIds);
+            resyncUserIds.removeAll(userIds);
+            left.forEach(pending -> userIds.addAll(userIds(pending.event())));
+            return userIds;
+        }
+
+        /**
+         * 捨てたイベントの対象ユーザーを作り直す。購読者は現在のDBの状態から作り直すため、
+         * キューに残っている同じユーザーのイベントより先に行っても結果は変わらない。
+         */
+        private void resync() {
+            if (resyncUserIds.isEmpty()) {
+                return;
+            }
+            List<Long> userIds = new ArrayList<>(resyncUserIds);
+            resyncUserIds.removeAll(userIds);
+            for (UserEventSubscriber subscriber : subscribers) {
+                try {
+                    subscriber.resyncUsers(userIds);
+                } catch (RuntimeException e) {
+                    // 次のループで再試行する
+                    resyncUserIds.addAll(userIds);
+                    failed.incrementAndGet();
+                    log.error("Failed to resync {} users on lane {}", userIds.size(), index, e);
+                    return;
+                }
+            }
+        }
+    }
+}
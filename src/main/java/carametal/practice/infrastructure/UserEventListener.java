@@ -1,50 +1,97 @@
 package carametal.practice.infrastructure;
 
+import carametal.practice.domain.event.UserCreatedBatchEvent;
 import carametal.practice.domain.event.UserCreatedEvent;
+import carametal.practice.domain.event.UserDeletedBatchEvent;
 import carametal.practice.domain.event.UserDeletedEvent;
+import carametal.practice.domain.event.UserRolesChangedBatchEvent;
 import carametal.practice.domain.event.UserUpdatedEvent;
-import carametal.practice.service.UserAuditService;
+import carametal.practice.entity.UserAuditEvent;
+import carametal.practice.repository.UserChangeRepository;
+import carametal.practice.repository.UserOutboxRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Event listener for user domain events.
- * Handles the translation of domain events to audit log entries.
+ * Translates domain events into audit details and appends them to the outbox in the
+ * publisher's transaction. The audit log itself is written by {@link UserOutboxRelay} after commit,
+ * so a write request only pays for one outbox insert per event.
+ * Each changed user is also appended to the user_changes feed in the same transaction.
  */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class UserEventListener {
 
-    private final UserAuditService userAuditService;
+    private final UserOutboxRepository userOutboxRepository;
+    private final UserChangeRepository userChangeRepository;
 
     /**
-     * Handles UserCreatedEvent and logs the user creation audit event.
+     * Handles UserCreatedEvent and records the user creation.
      */
     @EventListener
     public void handleUserCreatedEvent(UserCreatedEvent event) {
         log.debug("Handling UserCreatedEvent for user ID: {}", event.getUserId());
         
+        userOutboxRepository.append(
+            UserAuditEvent.AuditAction.USER_CREATED,
+            event.getCreatedBy(),
+            Map.of(event.getUserId(), createdDetails(event))
+        );
+        userChangeRepository.append(UserChangeRepository.Change.CREATED, List.of(event.getUserId()));
+    }
+
+    /**
+     * Handles UserCreatedBatchEvent and records all user creations as one outbox row.
+     */
+    @EventListener
+    public void handleUserCreatedBatchEvent(UserCreatedBatchEvent event) {
+        log.debug("Handling UserCreatedBatchEvent for {} users", event.getEvents().size());
+        
+        Map<Long, Map<String, Object>> detailsByUserId = new LinkedHashMap<>();
+        for (UserCreatedEvent created : event.getEvents()) {
+            detailsByUserId.put(created.getUserId(), createdDetails(created));
+        }
+        
+        userOutboxRepository.append(UserAuditEvent.AuditAction.USER_CREATED, event.getCreatedBy(), detailsByUserId);
+        userChangeRepository.append(UserChangeRepository.Change.CREATED, detailsByUserId.keySet());
+    }
+
+    /**
+     * Handles UserRolesChangedBatchEvent and records one ROLE_ASSIGNED / ROLE_REMOVED entry
+     * per changed user as one outbox row.
+     */
+    @EventListener
+    public void handleUserRolesChangedBatchEvent(UserRolesChangedBatchEvent event) {
+        log.debug("Handling UserRolesChangedBatchEvent ({} {}) for {} users",
+                event.getChange(), event.getRoleName(), event.getUserIds().size());
+        
         Map<String, Object> details = new HashMap<>();
-        details.put("username", event.getUsername().getValue());
-        details.put("email", event.getEmail().getValue());
-        details.put("roles", event.getRoleNames());
+        details.put("role", event.getRoleName());
         details.put("occurredAt", event.getOccurredAt());
         
-        userAuditService.logUserCreated(
-            event.getCreatedBy(),
-            event.getUserId(),
-            details
-        );
+        Map<Long, Map<String, Object>> detailsByUserId = new LinkedHashMap<>();
+        for (Long userId : event.getUserIds()) {
+            detailsByUserId.put(userId, details);
+        }
+        
+        UserAuditEvent.AuditAction action = event.getChange() == UserRolesChangedBatchEvent.Change.ASSIGNED
+                ? UserAuditEvent.AuditAction.ROLE_ASSIGNED
+                : UserAuditEvent.AuditAction.ROLE_REMOVED;
+        userOutboxRepository.append(action, event.getChangedBy(), detailsByUserId);
+        userChangeRepository.append(UserChangeRepository.Change.UPDATED, event.getUserIds());
     }
 
     /**
-     * Handles UserUpdatedEvent and logs the user update audit event.
+     * Handles UserUpdatedEvent and records the user update.
      */
     @EventListener
     public void handleUserUpdatedEvent(UserUpdatedEvent event) {
@@ -59,29 +106,59 @@ public class UserEventListener {
         details.put("newRoles", event.getNewRoleNames());
         details.put("occurredAt", event.getOccurredAt());
         
-        userAuditService.logUserUpdated(
+        userOutboxRepository.append(
+            UserAuditEvent.AuditAction.USER_UPDATED,
             event.getUpdatedBy(),
-            event.getUserId(),
-            details
+            Map.of(event.getUserId(), details)
         );
+        userChangeRepository.append(UserChangeRepository.Change.UPDATED, List.of(event.getUserId()));
     }
 
     /**
-     * Handles UserDeletedEvent and logs the user deletion audit event.
+     * Handles UserDeletedEvent and records the user deletion.
      */
     @EventListener
     public void handleUserDeletedEvent(UserDeletedEvent event) {
         log.debug("Handling UserDeletedEvent for user ID: {}", event.getUserId());
         
+        userOutboxRepository.append(
+            UserAuditEvent.AuditAction.USER_DELETED,
+            event.getDeletedBy(),
+            Map.of(event.getUserId(), deletedDetails(event))
+        );
+        userChangeRepository.append(UserChangeRepository.Change.DELETED, List.of(event.getUserId()));
+    }
+
+    /**
+     * Handles UserDeletedBatchEvent and records all user deletions as one outbox row.
+     */
+    @EventListener
+    public void handleUserDeletedBatchEvent(UserDeletedBatchEvent event) {
+        log.debug("Handling UserDeletedBatchEvent for {} users", event.getEvents().size());
+        
+        Map<Long, Map<String, Object>> detailsByUserId = new LinkedHashMap<>();
+        for (UserDeletedEvent deleted : event.getEvents()) {
+            detailsByUserId.put(deleted.getUserId(), deletedDetails(deleted));
+        }
+        
+        userOutboxRepository.append(UserAuditEvent.AuditAction.USER_DELETED, event.getDeletedBy(), detailsByUserId);
+        userChangeRepository.append(UserChangeRepository.Change.DELETED, detailsByUserId.keySet());
+    }
+
+    private Map<String, Object> deletedDetails(UserDeletedEvent event) {
         Map<String, Object> details = new HashMap<>();
         details.put("username", event.getUsername().getValue());
         details.put("email", event.getEmail().getValue());
         details.put("occurredAt", event.getOccurredAt());
-        
-        userAuditService.logUserDeleted(
-            event.getDeletedBy(),
-            event.getUserId(),
-            details
-        );
+        return details;
+    }
+
+    private Map<String, Object> createdDetails(UserCreatedEvent event) {
+        Map<String, Object> details = new HashMap<>();
+        details.put("username", event.getUsername().getValue());
+        details.put("email", event.getEmail().getValue());
+        details.put("roles", event.getRoleNames());
+        details.put("occurredAt", event.getOccurredAt());
+        return details;
     }
 }
\ No newline at end of file
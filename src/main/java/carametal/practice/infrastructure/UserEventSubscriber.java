@@ -0,0 +1,43 @@
+package carametal.practice.infrastructure;
+
+import carametal.practice.domain.event.UserCreatedBatchEvent;
+import carametal.practice.domain.event.UserCreatedEvent;
+import carametal.practice.domain.event.UserDeletedBatchEvent;
+import carametal.practice.domain.event.UserDeletedEvent;
+import carametal.practice.domain.event.UserRolesChangedBatchEvent;
+import carametal.practice.domain.event.UserUpdatedEvent;
+
+import java.util.Collection;
+
+/**
+ * {@link UserEventDispatcher}からコミット後のユーザーのドメインイベントを受け取る。
+ * 同じユーザーのイベントは常に同じレーン(スレッド)で発生順に届く。
+ * 一括イベントはレーン毎に分割されるため、1回の呼び出しに含まれるのは元のイベントの一部のユーザーだけ。
+ * 必要なイベントのメソッドだけを実装する。
+ */
+public interface UserEventSubscriber {
+
+    default void handleUserCreatedEvent(UserCreatedEvent event) {
+    }
+
+    default void handleUserCreatedBatchEvent(UserCreatedBatchEvent event) {
+    }
+
+    default void handleUserRolesChangedBatchEvent(UserRolesChangedBatchEvent event) {
+    }
+
+    default void handleUserUpdatedEvent(UserUpdatedEvent event) {
+    }
+
+    default void handleUserDeletedEvent(UserDeletedEvent event) {
+    }
+
+    default void handleUserDeletedBatchEvent(UserDeletedBatchEvent event) {
+    }
+
+    /**
+     * レーンが満杯でイベントを捨てたユーザーについて、イベントに頼らず現在のDBの状態から作り直す。
+     */
+    default void resyncUsers(Collection<Long> userIds) {
+    }
+}
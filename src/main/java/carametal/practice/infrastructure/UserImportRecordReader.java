@@ -0,0 +1,171 @@
+package carametal.practice.infrastructure;
+
+import carametal.practice.dto.UserRegistrationRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * インポートファイルを1行ずつ読み、1レコードずつ返す。ファイル全体をメモリに載せない。
+ * <ul>
+ *   <li>CSV: 1行目はヘッダー(username,email,password,roles)。rolesは「;」区切り。</li>
+ *   <li>NDJSON: 1行に1つのJSONオブジェクト(UserRegistrationRequestと同じ項目)。</li>
+ * </ul>
+ * 解析できない行は例外にせず、エラー付きのレコードとして返す。
+ */
+public class UserImportRecordReader {
+
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    /**
+     * 1行分の読み取り結果。requestかerrorのどちらかを持つ。
+     */
+    public record Record(long lineNumber, long bytes, UserRegistrationRequest request, String error) {
+    }
+
+    private static final List<String> CSV_COLUMNS = List.of("username", "email", "password", "roles");
+
+    private final BufferedReader reader;
+    private final Format format;
+    private final ObjectMapper objectMapper;
+    private Map<String, Integer> csvColumns;
+    private long lineNumber;
+
+    public UserImportRecordReader(BufferedReader reader, Format format, ObjectMapper objectMapper) {
+        this.reader = reader;
+        this.format = format;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 次のレコードを返す。終端ではnull。空行は読み飛ばす。
+     */
+    public Record next() throws IOException {
+        String line;
+        long skippedBytes = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            long bytes = skippedBytes + line.getBytes(StandardCharsets.UTF_8).length + 1;
+            if (line.isBlank()) {
+                skippedBytes = bytes;
+                continue;
+            }
+            if (format == Format.CSV && csvColumns == null) {
+                String error = readCsvHeader(line);
+                if (error == null) {
+                    skippedBytes = bytes;
+                    continue;
+                }
+                return new Record(lineNumber, bytes, null, error);
+            }
+            try {
+                UserRegistrationRequest request = format == Format.CSV ? parseCsv(line) : parseJson(line);
+                return new Record(lineNumber, bytes, request, null);
+            } catch (IllegalArgumentException e) {
+                return new Record(lineNumber, bytes, null, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private String readCsvHeader(String line) {
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = splitCsv(line);
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!columns.keySet().containsAll(CSV_COLUMNS)) {
+            // ヘッダーが不正な場合は以降の行を解釈できないため、列順をデフォルトとみなして続行する
+            csvColumns = new HashMap<>();
+            for (int i = 0; i < CSV_COLUMNS.size(); i++) {
+                csvColumns.put(CSV_COLUMNS.get(i), i);
+            }
+            return "Header must contain " + String.join(",", CSV_COLUMNS) + ", assuming that column order";
+        }
+        csvColumns = columns;
+        return null;
+    }
+
+    private UserRegistrationRequest parseCsv(String line) {
+        List<String> fields = splitCsv(line);
+        return UserRegistrationRequest.builder()
+                .username(csvField(fields, "username"))
+                .email(csvField(fields, "email"))
+                .password(csvField(fields, "password"))
+                .roleNames(parseRoles(csvField(fields, "roles")))
+                .build();
+    }
+
+    private String csvField(List<String> fields, String column) {
+        int index = csvColumns.get(column);
+        return index < fields.size() ? fields.get(index).trim() : null;
+    }
+
+    private Set<String> parseRoles(String roles) {
+        if (roles == null || roles.isBlank()) {
+            return Set.of();
+        }
+        Set<String> roleNames = new LinkedHashSet<>();
+        Arrays.stream(roles.split(";"))
+                .map(String::trim)
+                .filter(role -> !role.isEmpty())
+                .forEach(roleNames::add);
+        return roleNames;
+    }
+
+    /**
+     * 1行のCSVを分割する(ダブルクォートと""によるエスケープに対応。行をまたぐ値は非対応)。
+     */
+    private List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private UserRegistrationRequest parseJson(String line) {
+        try {
+            return objectMapper.readValue(line, UserRegistrationRequest.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid JSON: " + e.getOriginalMessage());
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package carametal.practice.infrastructure;
+
+import carametal.practice.repository.UserOutboxRepository;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * アウトボックスから配信されるイベントの受け手。
+ * 戻り値が正常に完了した時点で配信済みとなり、行が削除される。
+ * 例外で完了した場合は再試行される(RejectedExecutionExceptionは受け手が混んでいるだけとみなし、試行回数に数えない)。
+ */
+public interface UserOutboxConsumer {
+
+    CompletableFuture<Void> consume(List<UserOutboxRepository.OutboxEvent> events);
+}
@@ -0,0 +1,132 @@
+package carametal.practice.infrastructure;
+
+import carametal.practice.repository.UserOutboxRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * アウトボックスのイベントをコミット後に各UserOutboxConsumerへ配信するバックグラウンド処理。
+ * イベントはリースを付けて取得し、すべての受け手が完了を返した時点で削除する。配信は少なくとも1回保証される。
+ * 受け手は非同期に完了してよく、リレーは完了を待たずに次のバッチを取得する。
+ * バッチが失敗した場合は1件ずつ配信し直し、失敗した行だけattemptsを加算する。
+ * 完了後の処理(削除・解放・再配信)はリレー専用のスレッドで行い、受け手のスレッドを塞がない。
+ * 受け手が混雑していてバッチを解放した場合は、次の実行まで取得を止める。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserOutboxRelay {
+
+    private final UserOutboxRepository userOutboxRepository;
+    private final List<UserOutboxConsumer> consumers;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService callbackExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicLong releasedBatches = new AtomicLong();
+
+    @Value("${app.user-outbox.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.user-outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${app.user-outbox.lease:PT5M}")
+    private Duration lease;
+
+    @Scheduled(fixedDelayString = "${app.user-outbox.interval:PT1S}")
+    public void relay() {
+        int relayed = relayPending();
+        if (relayed > 0) {
+            log.debug("Relayed {} outbox events", relayed);
+        }
+    }
+
+    /**
+     * 未配信のイベントがなくなるまでbatchSize件ずつ取得して受け手に渡す。取得した件数を返す。
+     * 途中でバッチが解放された場合は、解放した行をすぐ取り直さないようそこで止める。
+     */
+    public int relayPending() {
+        int total = 0;
+        long releasedBefore = releasedBatches.get();
+        List<UserOutboxRepository.OutboxEvent> events;
+        do {
+            LocalDateTime leaseUntil = LocalDateTime.now().plus(lease);
+            events = transactionTemplate.execute(
+                    status -> userOutboxRepository.claimPending(batchSize, maxAttempts, leaseUntil));
+            deliver(events, true);
+            total += events.size();
+        } while (events.size() == batchSize && releasedBatches.get() == releasedBefore);
+        return total;
+    }
+
+    private void deliver(List<UserOutboxRepository.OutboxEvent> events, boolean retryIndividually) {
+        if (events.isEmpty()) {
+            return;
+        }
+        CompletableFuture.allOf(consumers.stream()
+                        .map(consumer -> consume(consumer, events))
+                        .toArray(CompletableFuture[]::new))
+                .whenCompleteAsync((result, failure) -> {
+                    if (failure == null) {
+                        acknowledge(events);
+                    } else if (unwrap(failure) instanceof RejectedExecutionException) {
+                        log.debug("Outbox consumer is busy, releasing {} events", events.size());
+                        transactionTemplate.executeWithoutResult(status -> userOutboxRepository.release(ids(events)));
+                        releasedBatches.incrementAndGet();
+                    } else if (retryIndividually && events.size() > 1) {
+                        log.warn("Failed to relay {} outbox events as a batch, retrying one by one", events.size(), failure);
+                        events.forEach(event -> deliver(List.of(event), false));
+                    } else {
+                        UserOutboxRepository.OutboxEvent event = events.get(0);
+                        log.error("Failed to relay outbox event {}", event.id(), failure);
+                        transactionTemplate.executeWithoutResult(
+                                status -> userOutboxRepository.recordFailure(event.id(), unwrap(failure).toString()));
+                    }
+                }, callbackExecutor);
+    }
+
+    private CompletableFuture<Void> consume(UserOutboxConsumer consumer, List<UserOutboxRepository.OutboxEvent> events) {
+        try {
+            return consumer.consume(events);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void acknowledge(List<UserOutboxRepository.OutboxEvent> events) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> userOutboxRepository.deleteAll(ids(events)));
+        } catch (RuntimeException e) {
+            // 削除できなかった行はリースの期限後に再配信される
+            log.warn("Failed to acknowledge {} outbox events", events.size(), e);
+        }
+    }
+
+    private List<Long> ids(List<UserOutboxRepository.OutboxEvent> events) {
+        return events.stream().map(UserOutboxRepository.OutboxEvent::id).toList();
+    }
+
+    private Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // 完了していない行はリースの期限後に再配信される
+        callbackExecutor.shutdown();
+    }
+}
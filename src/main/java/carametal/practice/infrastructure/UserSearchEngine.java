@@ -0,0 +1,362 @@
+package carametal.practice.infrastructure;
+
+import carametal.practice.entity.User;
+import carametal.practice.entity.UserDirectoryEntry;
+import carametal.practice.repository.UserDirectoryRepository;
+import carametal.practice.repository.UserRepository;
+import carametal.practice.specification.UserDirectorySpecification;
+import carametal.practice.specification.UserSpecification;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * ユーザー検索の実行コンポーネント。
+ * 検索条件の組み合わせ(フィルタ・ソート列・方向)は数パターンしかないため、
+ * 起動時に各パターンのJPQLを組み立てておき、リクエスト毎のCriteria構築を省く。
+ * 同一のJPQL文字列はHibernateのクエリプランキャッシュに乗るため、SQLへの変換も初回のみとなる。
+ * 既知のパターンに当てはまらない検索(複数列ソート等)はSpecificationで実行する。
+ * PARALLELモードではページ取得と件数取得を別々の読み取り専用コネクション上で
+ * 仮想スレッドにより同時に実行し、レイテンシを両者の和から最大値に近づける。
+ */
+@Component
+@RequiredArgsConstructor
+public class UserSearchEngine {
+
+    /**
+     * ソートに使用できるプロパティ(インデックスのある列のみ)
+     */
+    public static final Set<String> SORTABLE_PROPERTIES = Set.of("id", "username", "email");
+
+    private static final Map<QueryShape, CompiledQuery> COMPILED_QUERIES = compileAll();
+
+    /**
+     * 検索条件が不正(ソートできない列、不正なページ指定など)。
+     */
+    public static class InvalidSearchException extends RuntimeException {
+
+        public InvalidSearchException(String message) {
+            super(message);
+        }
+    }
+
+    private final EntityManager entityManager;
+    private final UserRepository userRepository;
+    private final UserDirectoryRepository userDirectoryRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final ExecutorService searchExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Value("${app.user-search.execution-mode:SEQUENTIAL}")
+    private ExecutionMode executionMode;
+
+    @Value("${app.user-search.deadline:5s}")
+    private Duration deadline;
+
+    /**
+     * ページ取得と件数取得の実行方法
+     */
+    public enum ExecutionMode {
+        /** 同一トランザクション内でページ→件数の順に実行する */
+        SEQUENTIAL,
+        /** 別々の読み取り専用トランザクションで同時に実行する */
+        PARALLEL
+    }
+
+    /**
+     * 検索対象のテーブル
+     */
+    public enum Source {
+        /** users / user_roles を直接検索する */
+        USERS("User", Map.of("id", "id", "username", "username", "email", "email"),
+                "lower(e.username)", "lower(e.email)"),
+        /** 非正規化された読み取りモデル user_directory を検索する */
+        DIRECTORY("UserDirectoryEntry", Map.of("id", "userId", "username", "username", "email", "emailLower"),
+                "e.usernameLower", "e.emailLower");
+
+        private final String entityName;
+        private final Map<String, String> sortProperties;
+        private final String usernameExpression;
+        private final String emailExpression;
+
+        Source(String entityName, Map<String, String> sortProperties,
+               String usernameExpression, String emailExpression) {
+            this.entityName = entityName;
+            this.sortProperties = sortProperties;
+            this.usernameExpression = usernameExpression;
+            this.emailExpression = emailExpression;
+        }
+    }
+
+    /**
+     * リクエストのページ指定からPageableを組み立てる。不正な値は{@link InvalidSearchException}とする。
+     */
+    public static Pageable pageRequest(int page, int size, String sort, String direction) {
+        if (page < 0 || size < 1) {
+            throw new InvalidSearchException("Invalid page: page=" + page + ", size=" + size);
+        }
+        if (!SORTABLE_PROPERTIES.contains(sort)) {
+            throw new InvalidSearchException("Unsupported sort property: " + sort);
+        }
+        Sort.Direction sortDirection = Sort.Direction.fromOptionalString(direction)
+                .orElseThrow(() -> new InvalidSearchException("Unsupported sort direction: " + direction));
+        return PageRequest.of(page, size, Sort.by(sortDirection, sort));
+    }
+
+    public Page<User> search(String username, String email, Pageable pageable) {
+        return execute(Source.USERS, User.class, username, email, pageable);
+    }
+
+    public Page<UserDirectoryEntry> searchDirectory(String username, String email, Pageable pageable) {
+        return execute(Source.DIRECTORY, UserDirectoryEntry.class, username, email, pageable);
+    }
+
+    /**
+     * ユーザーの作成・更新・削除の度に進むディレクトリ全体の変更カウンタ。
+     * 検索結果のETagに使用する。
+     */
+    public long currentVersion() {
+        return userDirectoryRepository.currentVersion();
+    }
+
+    private <T> Page<T> execute(Source source, Class<T> resultType, String username, String email, Pageable pageable) {
+        validateSort(pageable.getSort());
+
+        String usernamePattern = toPattern(username);
+        String emailPattern = toPattern(email);
+
+        Optional<QueryShape> shape = QueryShape.of(
+                source, usernamePattern != null, emailPattern != null, pageable.getSort());
+        if (shape.isEmpty()) {
+            return searchBySpecification(source, resultType, usernamePattern, emailPattern, pageable);
+        }
+
+        CompiledQuery compiled = COMPILED_QUERIES.get(shape.get());
+        long deadlineNanos = System.nanoTime() + deadline.toNanos();
+
+        Supplier<List<T>> contentQuery = () -> {
+            TypedQuery<T> query = entityManager.createQuery(compiled.selectJpql(), resultType);
+            bindParameters(query, usernamePattern, emailPattern);
+            applyTimeout(query, deadlineNanos);
+            query.setFirstResult((int) pageable.getOffset());
+            query.setMaxResults(pageable.getPageSize());
+            return query.getResultList();
+        };
+        Supplier<Long> countQuery = () -> {
+            TypedQuery<Long> query = entityManager.createQuery(compiled.countJpql(), Long.class);
+            bindParameters(query, usernamePattern, emailPattern);
+            applyTimeout(query, deadlineNanos);
+            return query.getSingleResult();
+        };
+
+        if (executionMode == ExecutionMode.PARALLEL) {
+            return executeInParallel(contentQuery, countQuery, pageable, deadlineNanos);
+        }
+
+        try {
+            return readOnlyTransaction(TransactionDefinition.PROPAGATION_REQUIRED).execute(status ->
+                    PageableExecutionUtils.getPage(contentQuery.get(), pageable, countQuery::get));
+        } catch (jakarta.persistence.QueryTimeoutException e) {
+            // PARALLELと同じく、DB側でキャンセルされた場合も期限切れとして扱う
+            throw new QueryTimeoutException("User search exceeded deadline of " + deadline, e);
+        }
+    }
+
+    private <T> Page<T> executeInParallel(Supplier<List<T>> contentQuery, Supplier<Long> countQuery,
+                                          Pageable pageable, long deadlineNanos) {
+        // それぞれ独立したトランザクション(=コネクション)で実行する
+        TransactionTemplate transaction = readOnlyTransaction(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        Future<List<T>> contentFuture = searchExecutor.submit(() -> transaction.execute(status -> contentQuery.get()));
+        Future<Long> countFuture = searchExecutor.submit(() -> transaction.execute(status -> countQuery.get()));
+
+        try {
+            List<T> content = contentFuture.get(remainingNanos(deadlineNanos), TimeUnit.NANOSECONDS);
+            Long total = countFuture.get(remainingNanos(deadlineNanos), TimeUnit.NANOSECONDS);
+            return new PageImpl<>(content, pageable, total);
+        } catch (TimeoutException e) {
+            throw new QueryTimeoutException("User search exceeded deadline of " + deadline);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryTimeoutException("User search was interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof jakarta.persistence.QueryTimeoutException) {
+                throw new QueryTimeoutException("User search exceeded deadline of " + deadline, e.getCause());
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            // 片方が失敗・タイムアウトした場合にもう片方を打ち切る(完了済みなら何もしない)
+            contentFuture.cancel(true);
+            countFuture.cancel(true);
+        }
+    }
+
+    private TransactionTemplate readOnlyTransaction(int propagation) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        transaction.setPropagationBehavior(propagation);
+        return transaction;
+    }
+
+    private void applyTimeout(TypedQuery<?> query, long deadlineNanos) {
+        long remaining = remainingNanos(deadlineNanos);
+        if (remaining == 0) {
+            throw new QueryTimeoutException("User search exceeded deadline of " + deadline);
+        }
+        // DB側でも期限切れのクエリをキャンセルさせる。JDBCのタイムアウトは秒単位で、Hibernateはミリ秒の指定を
+        // 四捨五入して0秒(=無制限)にしてしまうため、秒に切り上げてから渡す
+        long remainingSeconds = (remaining + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+        query.setHint("jakarta.persistence.query.timeout", TimeUnit.SECONDS.toMillis(remainingSeconds));
+    }
+
+    private static long remainingNanos(long deadlineNanos) {
+        return Math.max(0, deadlineNanos - System.nanoTime());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        searchExecutor.shutdownNow();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Page<T> searchBySpecification(Source source, Class<T> resultType,
+                                              String usernamePattern, String emailPattern, Pageable pageable) {
+        if (source == Source.DIRECTORY) {
+            return (Page<T>) searchDirectoryBySpecification(usernamePattern, emailPattern, pageable);
+        }
+
+        Specification<User> spec = null;
+
+        if (usernamePattern != null) {
+            spec = UserSpecification.hasUsernameContaining(usernamePattern);
+        }
+
+        if (emailPattern != null) {
+            if (spec == null) {
+                spec = UserSpecification.hasEmailContaining(emailPattern);
+            } else {
+                spec = spec.and(UserSpecification.hasEmailContaining(emailPattern));
+            }
+        }
+
+        return (Page<T>) (spec != null ? userRepository.findAll(spec, pageable) : userRepository.findAll(pageable));
+    }
+
+    private Page<UserDirectoryEntry> searchDirectoryBySpecification(String usernamePattern, String emailPattern,
+                                                                    Pageable pageable) {
+        Specification<UserDirectoryEntry> spec = UserDirectorySpecification.hasUsernameContaining(usernamePattern)
+                .and(UserDirectorySpecification.hasEmailContaining(emailPattern));
+
+        Sort sort = Sort.by(pageable.getSort().stream()
+                .map(order -> order.withProperty(Source.DIRECTORY.sortProperties.get(order.getProperty())))
+                .toList());
+        Pageable directoryPageable = pageable.isPaged()
+                ? PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort)
+                : Pageable.unpaged(sort);
+
+        return userDirectoryRepository.findAll(spec, directoryPageable);
+    }
+
+    private void validateSort(Sort sort) {
+        for (Sort.Order order : sort) {
+            if (!SORTABLE_PROPERTIES.contains(order.getProperty())) {
+                throw new InvalidSearchException("Unsupported sort property: " + order.getProperty());
+            }
+        }
+    }
+
+    private static String toPattern(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        return value;
+    }
+
+    private static void bindParameters(TypedQuery<?> query, String usernamePattern, String emailPattern) {
+        if (usernamePattern != null) {
+            query.setParameter("username", "%" + usernamePattern.toLowerCase() + "%");
+        }
+        if (emailPattern != null) {
+            query.setParameter("email", "%" + emailPattern.toLowerCase() + "%");
+        }
+    }
+
+    private static Map<QueryShape, CompiledQuery> compileAll() {
+        Map<QueryShape, CompiledQuery> queries = new HashMap<>();
+        for (Source source : Source.values()) {
+            for (boolean byUsername : new boolean[]{false, true}) {
+                for (boolean byEmail : new boolean[]{false, true}) {
+                    for (String property : SORTABLE_PROPERTIES) {
+                        for (Sort.Direction direction : Sort.Direction.values()) {
+                            QueryShape shape = new QueryShape(source, byUsername, byEmail, property, direction);
+                            queries.put(shape, shape.compile());
+                        }
+                    }
+                }
+            }
+        }
+        return Map.copyOf(queries);
+    }
+
+    private record QueryShape(Source source, boolean byUsername, boolean byEmail,
+                              String sortProperty, Sort.Direction direction) {
+
+        static Optional<QueryShape> of(Source source, boolean byUsername, boolean byEmail, Sort sort) {
+            List<Sort.Order> orders = sort.toList();
+            if (orders.size() != 1) {
+                return Optional.empty();
+            }
+            Sort.Order order = orders.get(0);
+            if (order.isIgnoreCase() || order.getNullHandling() != Sort.NullHandling.NATIVE) {
+                return Optional.empty();
+            }
+            return Optional.of(new QueryShape(source, byUsername, byEmail, order.getProperty(), order.getDirection()));
+        }
+
+        CompiledQuery compile() {
+            StringBuilder where = new StringBuilder();
+            if (byUsername) {
+                where.append(" where ").append(source.usernameExpression).append(" like :username");
+            }
+            if (byEmail) {
+                where.append(byUsername ? " and " : " where ").append(source.emailExpression).append(" like :email");
+            }
+            String from = " from " + source.entityName + " e" + where;
+            return new CompiledQuery(
+                    "select e" + from + " order by e." + source.sortProperties.get(sortProperty) + " " + direction.name(),
+                    "select count(e)" + from);
+        }
+    }
+
+    private record CompiledQuery(String selectJpql, String countJpql) {
+    }
+}
@@ -7,6 +7,8 @@ import carametal.practice.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 @Component
 @RequiredArgsConstructor
 public class UserUniquenessCheckerImpl implements UserUniquenessChecker {
@@ -14,26 +16,11 @@ public class UserUniquenessCheckerImpl implements UserUniquenessChecker {
     private final UserRepository userRepository;
     
     @Override
-    public boolean isUsernameUnique(Username username) {
-        return !userRepository.existsByUsername(username.getValue());
-    }
-    
-    @Override
-    public boolean isEmailUnique(Email email) {
-        return !userRepository.existsByEmail(email.getValue());
-    }
-    
-    @Override
-    public boolean isUsernameUniqueExcluding(Username username, Long excludeUserId) {
-        return userRepository.findByUsername(username.getValue())
-                .map(user -> user.getId().equals(excludeUserId))
-                .orElse(true);
-    }
-    
-    @Override
-    public boolean isEmailUniqueExcluding(Email email, Long excludeUserId) {
-        return userRepository.findByEmail(email.getValue())
-                .map(user -> user.getId().equals(excludeUserId))
-                .orElse(true);
+    public Conflicts findConflicts(Username username, Email email, Long excludeUserId) {
+        List<UserRepository.UniqueKeys> conflicts = userRepository.findUniqueKeyConflicts(
+                username.getValue(), email.getValue(), excludeUserId);
+        return new Conflicts(
+                conflicts.stream().anyMatch(keys -> keys.getUsername().equals(username.getValue())),
+                conflicts.stream().anyMatch(keys -> keys.getEmail().equals(email.getValue())));
     }
-}
\ No newline at end of file
+}
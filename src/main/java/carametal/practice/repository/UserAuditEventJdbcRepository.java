@@ -0,0 +1,197 @@
+package carametal.practice.repository;
+
+import carametal.practice.entity.UserAuditEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * user_audit_eventsへのJDBCバッチ挿入。
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserAuditEventJdbcRepository {
+
+    private static final int BATCH_SIZE = 500;
+    private static final int STREAM_FETCH_SIZE = 1000;
+    private static final TypeReference<Map<String, Object>> DETAILS_TYPE = new TypeReference<>() {
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final SequenceIdAllocator sequenceIdAllocator;
+
+    /**
+     * 操作ログの検索条件。nullの項目は絞り込まない。期間はfrom以上to未満。
+     * detailsContainsはdetailsが包含するJSONオブジェクト(@>)、detailsPathはdetailsに一致するJSONPath(@?)。
+     */
+    public record Filter(Long userId, Long targetUserId, UserAuditEvent.AuditAction action,
+                         LocalDateTime from, LocalDateTime to, String detailsContains, String detailsPath) {
+
+        public Filter(Long userId, Long targetUserId, UserAuditEvent.AuditAction action,
+                      LocalDateTime from, LocalDateTime to) {
+            this(userId, targetUserId, action, from, to, null, null);
+        }
+    }
+
+    /**
+     * キーセットページングの位置。この行より前(古い側)から取得する。
+     */
+    public record Cursor(LocalDateTime createdAt, Long id) {
+    }
+
+    public void insertAll(List<UserAuditEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+
+        // 列のデフォルト(nextval)に任せると1行ごとに50件分のブロックを消費するため、IDはまとめて払い出す
+        List<Long> ids = sequenceIdAllocator.allocate("user_audit_events_id_seq", events.size());
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            UserAuditEvent event = events.get(i);
+            event.setId(ids.get(i));
+            if (event.getCreatedAt() == null) {
+                event.setCreatedAt(now.toLocalDateTime());
+            }
+            rows.add(new Object[]{
+                    event.getId(),
+                    event.getUserId(),
+                    event.getAction().getCode(),
+                    event.getTargetUserId(),
+                    event.getIpAddress(),
+                    event.getUserAgent(),
+                    toJson(event),
+                    Timestamp.valueOf(event.getCreatedAt())});
+        }
+
+        String sql = """
+                INSERT INTO user_audit_events (id, user_id, action, target_user_id, ip_address, user_agent, details, created_at)
+                VALUES (?, ?, ?, ?, ?, ?, CAST(? AS jsonb), ?)
+                """;
+        for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+            jdbcTemplate.batchUpdate(sql, rows.subList(from, Math.min(from + BATCH_SIZE, rows.size())));
+        }
+    }
+
+    /**
+     * (created_at, id)の降順でlimit件取得する。cursorを指定した場合はその行より後ろから取得する。
+     * 期間を指定するとパーティションが絞り込まれ、(user_id | target_user_id, created_at, id)の
+     * 複合インデックスか主キー(created_at, id)を順に読むだけで済む。
+     */
+    public List<UserAuditEvent> findPage(Filter filter, Cursor cursor, int limit) {
+        StringBuilder sql = new StringBuilder("""
+                SELECT id, user_id, action, target_user_id, ip_address, user_agent, details, created_at
+                FROM user_audit_events
+                WHERE TRUE
+                """);
+        List<Object> args = new ArrayList<>();
+        if (filter.userId() != null) {
+            sql.append(" AND user_id = ?");
+            args.add(filter.userId());
+        }
+        if (filter.targetUserId() != null) {
+            sql.append(" AND target_user_id = ?");
+            args.add(filter.targetUserId());
+        }
+        if (filter.action() != null) {
+            sql.append(" AND action = ?");
+            args.add(filter.action().getCode());
+        }
+        if (filter.from() != null) {
+            sql.append(" AND created_at >= ?");
+            args.add(Timestamp.valueOf(filter.from()));
+        }
+        if (filter.to() != null) {
+            sql.append(" AND created_at < ?");
+            args.add(Timestamp.valueOf(filter.to()));
+        }
+        // jsonb_path_opsのGINインデックスが使える演算子だけを使う
+        if (filter.detailsContains() != null) {
+            sql.append(" AND details @> CAST(? AS jsonb)");
+            args.add(filter.detailsContains());
+        }
+        if (filter.detailsPath() != null) {
+            // PostgreSQLのJDBCドライバは?をパラメーターとみなすため、演算子の?は??と書く
+            sql.append(" AND details @?? CAST(? AS jsonpath)");
+            args.add(filter.detailsPath());
+        }
+        if (cursor != null) {
+            sql.append(" AND (created_at, id) < (?, ?)");
+            args.add(Timestamp.valueOf(cursor.createdAt()));
+            args.add(cursor.id());
+        }
+        sql.append(" ORDER BY created_at DESC, id DESC LIMIT ?");
+        args.add(limit);
+
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> mapRow(rs), args.toArray());
+    }
+
+    /**
+     * 月毎のパーティションの全行を(created_at, id)の昇順でconsumerへ渡す(アーカイブ用)。
+     * サーバー側カーソルでSTREAM_FETCH_SIZE件ずつ読むため、トランザクション内で呼び出す。
+     */
+    public void streamPartition(YearMonth month, Consumer<UserAuditEvent> consumer) {
+        String sql = """
+                SELECT id, user_id, action, target_user_id, ip_address, user_agent, details, created_at
+                FROM %s
+                ORDER BY created_at, id
+                """.formatted(UserAuditPartitionRepository.partitionName(month));
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(STREAM_FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) rs -> consumer.accept(mapRow(rs)));
+    }
+
+    private UserAuditEvent mapRow(ResultSet rs) throws SQLException {
+        UserAuditEvent event = new UserAuditEvent();
+        event.setId(rs.getLong("id"));
+        event.setUserId(rs.getObject("user_id", Long.class));
+        event.setAction(UserAuditEvent.AuditAction.fromCode(rs.getShort("action")));
+        event.setTargetUserId(rs.getObject("target_user_id", Long.class));
+        event.setIpAddress(rs.getString("ip_address"));
+        event.setUserAgent(rs.getString("user_agent"));
+        event.setDetails(fromJson(rs.getString("details")));
+        event.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+        return event;
+    }
+
+    private Map<String, Object> fromJson(String details) {
+        if (details == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(details, DETAILS_TYPE);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Audit details are not readable", e);
+        }
+    }
+
+    private String toJson(UserAuditEvent event) {
+        if (event.getDetails() == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(event.getDetails());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Audit details are not serializable", e);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package carametal.practice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * user_audit_eventsの月毎のパーティション(user_audit_events_yYYYYmMM)を操作するDDL。
+ * テーブル名は年月からだけ組み立てるため、外部の値がSQLに入ることはない。
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserAuditPartitionRepository {
+
+    public static final String PARENT_TABLE = "user_audit_events";
+    public static final String DEFAULT_PARTITION = "user_audit_events_default";
+
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("'y'yyyy'm'MM");
+    private static final Pattern NAME_PATTERN = Pattern.compile(PARENT_TABLE + "_y(\\d{4})m(\\d{2})");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public static String partitionName(YearMonth month) {
+        return PARENT_TABLE + "_" + month.format(NAME_FORMAT);
+    }
+
+    /**
+     * 現在アタッチされている月毎のパーティションを古い順に返す(デフォルトパーティションは含まない)。
+     */
+    public List<YearMonth> findMonthlyPartitions() {
+        return jdbcTemplate.queryForList("""
+                        SELECT c.relname
+                        FROM pg_inherits i
+                        JOIN pg_class c ON c.oid = i.inhrelid
+                        WHERE i.inhparent = CAST(? AS regclass)
+                        """, String.class, PARENT_TABLE).stream()
+                .map(name -> {
+                    Matcher matcher = NAME_PATTERN.matcher(name);
+                    return matcher.matches()
+                            ? YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)))
+                            : null;
+                })
+                .filter(Objects::nonNull)
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * デフォルトパーティションに行がある月を古い順に返す。
+     */
+    public List<YearMonth> findDefaultPartitionMonths() {
+        return jdbcTemplate.queryForList(
+                        "SELECT DISTINCT CAST(date_trunc('month', created_at) AS date) FROM " + DEFAULT_PARTITION,
+                        Date.class).stream()
+                .map(date -> YearMonth.from(date.toLocalDate()))
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * パーティションのDDLを行う前に、現在のトランザクションが終わるまで有効なロックを取る。
+     * 他のインスタンスが同じ処理をしている間は待つため、取得後にパーティションの状態を確認し直すこと。
+     */
+    public void lockForMaintenance() {
+        // 複数のインスタンスが同時に実行してもDDLが衝突しないよう、親テーブル名をキーにして直列化する
+        jdbcTemplate.query("SELECT pg_advisory_xact_lock(hashtext(?))", rs -> {
+        }, PARENT_TABLE);
+    }
+
+    /**
+     * 指定した月のパーティションを作成する。
+     * その月の行が既にデフォルトパーティションに入っている場合は、新しいテーブルへ移してからアタッチする
+     * (デフォルトパーティションに範囲内の行があるとPARTITION OFでの作成が失敗するため)。
+     */
+    public void createMonthlyPartition(YearMonth month) {
+        String name = partitionName(month);
+        Timestamp from = Timestamp.valueOf(month.atDay(1).atStartOfDay());
+        Timestamp to = Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay());
+        String bounds = "FROM ('" + from + "') TO ('" + to + "')";
+
+        Boolean hasDefaultRows = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM " + DEFAULT_PARTITION + " WHERE created_at >= ? AND created_at < ?)",
+                Boolean.class, from, to);
+        if (!Boolean.TRUE.equals(hasDefaultRows)) {
+            jdbcTemplate.execute("CREATE TABLE " + name + " PARTITION OF " + PARENT_TABLE + " FOR VALUES " + bounds);
+            return;
+        }
+
+        jdbcTemplate.execute("CREATE TABLE " + name
+                + " (LIKE " + PARENT_TABLE + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+        jdbcTemplate.update("""
+                WITH moved AS (
+                    DELETE FROM %s WHERE created_at >= ? AND created_at < ? RETURNING *
+                )
+                INSERT INTO %s SELECT * FROM moved
+                """.formatted(DEFAULT_PARTITION, name), from, to);
+        jdbcTemplate.execute("ALTER TABLE " + PARENT_TABLE + " ATTACH PARTITION " + name + " FOR VALUES " + bounds);
+    }
+
+    /**
+     * パーティションを切り離す。テーブル自体は残るため、アーカイブ後に別途削除する。
+     */
+    public void detachPartition(YearMonth month) {
+        jdbcTemplate.execute("ALTER TABLE " + PARENT_TABLE + " DETACH PARTITION " + partitionName(month));
+    }
+
+    public long countRows(YearMonth month) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + partitionName(month), Long.class);
+    }
+
+    public void dropPartition(YearMonth month) {
+        jdbcTemplate.execute("DROP TABLE " + partitionName(month));
+    }
+}
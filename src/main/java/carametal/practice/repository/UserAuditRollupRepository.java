@@ -0,0 +1,133 @@
+package carametal.practice.repository;
+
+import carametal.practice.entity.UserAuditEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 操作ログの集計テーブル(user_audit_action_hourly, user_audit_actor_daily)へのJDBCアクセス。
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserAuditRollupRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public record ActionCount(LocalDateTime bucket, UserAuditEvent.AuditAction action, long count) {
+    }
+
+    public record ActorCount(LocalDate day, Long userId, long count) {
+    }
+
+    private record ActionKey(LocalDateTime bucket, short action) implements Comparable<ActionKey> {
+        @Override
+        public int compareTo(ActionKey other) {
+            int result = bucket.compareTo(other.bucket);
+            return result != 0 ? result : Short.compare(action, other.action);
+        }
+    }
+
+    private record ActorKey(LocalDate day, Long userId) implements Comparable<ActorKey> {
+        @Override
+        public int compareTo(ActorKey other) {
+            int result = day.compareTo(other.day);
+            return result != 0 ? result : userId.compareTo(other.userId);
+        }
+    }
+
+    /**
+     * 挿入した操作ログの件数を集計テーブルへ加算する。
+     * 先にメモリ上でまとめてからキー順に1回ずつ加算し、並行する書き込みとのデッドロックを避ける。
+     */
+    public void increment(List<UserAuditEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        Map<ActionKey, Long> actionCounts = new TreeMap<>();
+        Map<ActorKey, Long> actorCounts = new TreeMap<>();
+        for (UserAuditEvent event : events) {
+            LocalDateTime createdAt = event.getCreatedAt();
+            actionCounts.merge(new ActionKey(createdAt.truncatedTo(ChronoUnit.HOURS), event.getAction().getCode()), 1L, Long::sum);
+            if (event.getUserId() != null) {
+                actorCounts.merge(new ActorKey(createdAt.toLocalDate(), event.getUserId()), 1L, Long::sum);
+            }
+        }
+
+        List<Object[]> actionRows = new ArrayList<>(actionCounts.size());
+        actionCounts.forEach((key, count) -> actionRows.add(new Object[]{Timestamp.valueOf(key.bucket()), key.action(), count}));
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO user_audit_action_hourly (bucket, action, event_count) VALUES (?, ?, ?)
+                ON CONFLICT (bucket, action) DO UPDATE SET event_count = user_audit_action_hourly.event_count + EXCLUDED.event_count
+                """, actionRows);
+
+        if (!actorCounts.isEmpty()) {
+            List<Object[]> actorRows = new ArrayList<>(actorCounts.size());
+            actorCounts.forEach((key, count) -> actorRows.add(new Object[]{Date.valueOf(key.day()), key.userId(), count}));
+            jdbcTemplate.batchUpdate("""
+                    INSERT INTO user_audit_actor_daily (day, user_id, event_count) VALUES (?, ?, ?)
+                    ON CONFLICT (day, user_id) DO UPDATE SET event_count = user_audit_actor_daily.event_count + EXCLUDED.event_count
+                    """, actorRows);
+        }
+    }
+
+    /**
+     * 操作種別ごとの件数をtruncUnit(hour | day)単位で、時刻と操作種別の名前の順に返す。期間はfrom以上to未満。
+     */
+    public List<ActionCount> findActionCounts(String truncUnit, LocalDateTime from, LocalDateTime to,
+                                              UserAuditEvent.AuditAction action) {
+        StringBuilder sql = new StringBuilder("""
+                SELECT date_trunc(?, bucket) AS bucket, action, SUM(event_count) AS event_count
+                FROM user_audit_action_hourly
+                WHERE bucket >= ? AND bucket < ?
+                """);
+        List<Object> args = new ArrayList<>(List.of(truncUnit, Timestamp.valueOf(from), Timestamp.valueOf(to)));
+        if (action != null) {
+            sql.append(" AND action = ?");
+            args.add(action.getCode());
+        }
+        sql.append(" GROUP BY 1, 2");
+
+        // コード順ではなく、これまでどおり名前の順に並べる
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> new ActionCount(
+                        rs.getTimestamp("bucket").toLocalDateTime(),
+                        UserAuditEvent.AuditAction.fromCode(rs.getShort("action")),
+                        rs.getLong("event_count")), args.toArray()).stream()
+                .sorted(Comparator.comparing(ActionCount::bucket)
+                        .thenComparing(count -> count.action().name()))
+                .toList();
+    }
+
+    /**
+     * 操作者ごとの日次件数を、日付の昇順・件数の降順で返す。期間はfrom以上to未満。
+     */
+    public List<ActorCount> findActorCounts(LocalDate from, LocalDate to, Long userId) {
+        StringBuilder sql = new StringBuilder("""
+                SELECT day, user_id, event_count
+                FROM user_audit_actor_daily
+                WHERE day >= ? AND day < ?
+                """);
+        List<Object> args = new ArrayList<>(List.of(Date.valueOf(from), Date.valueOf(to)));
+        if (userId != null) {
+            sql.append(" AND user_id = ?");
+            args.add(userId);
+        }
+        sql.append(" ORDER BY day, event_count DESC, user_id");
+
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> new ActorCount(
+                rs.getDate("day").toLocalDate(),
+                rs.getLong("user_id"),
+                rs.getLong("event_count")), args.toArray());
+    }
+}
@@ -0,0 +1,138 @@
+package carametal.practice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * user_changes(ユーザーの変更フィード)へのJDBCアクセス。
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserChangeRepository {
+
+    public enum Change {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    /**
+     * フィード内の位置。(txId, seq)の順に並ぶ。
+     */
+    public record Position(long txId, long seq) {
+
+        public static final Position START = new Position(0, 0);
+
+        public boolean isBefore(Position other) {
+            return txId < other.txId || (txId == other.txId && seq < other.seq);
+        }
+    }
+
+    /**
+     * 変更1件。CREATED / UPDATEDではユーザーの現在の値を持つ(読み出し時に削除済みならnull)。
+     */
+    public record ChangeRow(Position position, Long userId, Change change, LocalDateTime changedAt,
+                            String username, String email, List<String> roleNames) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void append(Change change, Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update("INSERT INTO user_changes (user_id, change) SELECT unnest(?), ?",
+                userIds.toArray(Long[]::new), change.name());
+    }
+
+    /**
+     * afterより後の変更を位置の順にlimit件取得する。
+     * 実行中のトランザクションが書いた(またはそれより新しい)行は、そのトランザクションが終わるまで返さない。
+     */
+    public List<ChangeRow> findAfter(Position after, int limit) {
+        return jdbcTemplate.query("""
+                SELECT c.tx_id, c.seq, c.user_id, c.change, c.changed_at, u.username, u.email, u.role_names
+                FROM user_changes c
+                LEFT JOIN LATERAL (
+                    SELECT u.username,
+                           u.email,
+                           COALESCE(array_agg(r.role_name ORDER BY r.role_name)
+                                    FILTER (WHERE r.role_name IS NOT NULL), '{}') AS role_names
+                    FROM users u
+                    LEFT JOIN user_roles ur ON ur.user_id = u.user_id
+                    LEFT JOIN roles r ON r.role_id = ur.role_id
+                    WHERE u.user_id = c.user_id AND u.deleted_at IS NULL AND c.change <> 'DELETED'
+                    GROUP BY u.user_id
+                ) u ON TRUE
+                WHERE (c.tx_id, c.seq) > (?, ?)
+                  AND c.tx_id < txid_snapshot_xmin(txid_current_snapshot())
+                ORDER BY c.tx_id, c.seq
+                LIMIT ?
+                """, (rs, rowNum) -> {
+            Array roleNames = rs.getArray("role_names");
+            return new ChangeRow(
+                    new Position(rs.getLong("tx_id"), rs.getLong("seq")),
+                    rs.getLong("user_id"),
+                    Change.valueOf(rs.getString("change")),
+                    rs.getTimestamp("changed_at").toLocalDateTime(),
+                    rs.getString("username"),
+                    rs.getString("email"),
+                    roleNames == null ? null : Arrays.asList((String[]) roleNames.getArray()));
+        }, after.txId(), after.seq(), limit);
+    }
+
+    /**
+     * 保持期間外として削除済み(または削除中)の位置。これより前のカーソルの続きは返せない。
+     */
+    public Position findHorizon() {
+        return jdbcTemplate.queryForObject("SELECT tx_id, seq FROM user_change_horizon",
+                (rs, rowNum) -> new Position(rs.getLong("tx_id"), rs.getLong("seq")));
+    }
+
+    /**
+     * changedBeforeより前に記録された、コミット済みの最後の位置。
+     */
+    public Optional<Position> findLastPositionBefore(LocalDateTime changedBefore) {
+        return jdbcTemplate.query("""
+                SELECT tx_id, seq
+                FROM user_changes
+                WHERE changed_at < ?
+                  AND tx_id < txid_snapshot_xmin(txid_current_snapshot())
+                ORDER BY tx_id DESC, seq DESC
+                LIMIT 1
+                """, (rs, rowNum) -> new Position(rs.getLong("tx_id"), rs.getLong("seq")),
+                Timestamp.valueOf(changedBefore)).stream().findFirst();
+    }
+
+    /**
+     * 削除済みの位置をpositionまで進める(戻さない)。
+     */
+    public void advanceHorizon(Position position) {
+        jdbcTemplate.update("""
+                UPDATE user_change_horizon SET tx_id = ?, seq = ?
+                WHERE (tx_id, seq) < (?, ?)
+                """, position.txId(), position.seq(), position.txId(), position.seq());
+    }
+
+    /**
+     * position以前の行を位置の順にlimit件まで削除する。
+     */
+    public int deleteUpTo(Position position, int limit) {
+        return jdbcTemplate.update("""
+                DELETE FROM user_changes
+                WHERE seq IN (SELECT seq FROM user_changes
+                              WHERE (tx_id, seq) <= (?, ?)
+                              ORDER BY tx_id, seq
+                              LIMIT ?)
+                """, position.txId(), position.seq(), limit);
+    }
+}
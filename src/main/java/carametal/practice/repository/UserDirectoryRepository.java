@@ -0,0 +1,81 @@
+package carametal.practice.repository;
+
+import carametal.practice.entity.UserDirectoryEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+
+@Repository
+public interface UserDirectoryRepository extends JpaRepository<UserDirectoryEntry, Long>, JpaSpecificationExecutor<UserDirectoryEntry> {
+
+    /**
+     * 指定ユーザーの行をusers / user_rolesから再構築する(存在しなければ挿入)。
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO user_directory (user_id, username, username_lower, email_lower, role_names,
+                                        registration_date, last_login, refreshed_at)
+            SELECT u.user_id,
+                   u.username,
+                   lower(u.username),
+                   lower(u.email),
+                   CAST(COALESCE(array_agg(r.role_name ORDER BY r.role_name)
+                                 FILTER (WHERE r.role_name IS NOT NULL), '{}') AS text[]),
+                   u.registration_date,
+                   u.last_login,
+                   CURRENT_TIMESTAMP
+            FROM users u
+            LEFT JOIN user_roles ur ON ur.user_id = u.user_id
+            LEFT JOIN roles r ON r.role_id = ur.role_id
+            WHERE u.user_id IN (:userIds) AND u.deleted_at IS NULL
+            GROUP BY u.user_id
+            ON CONFLICT (user_id) DO UPDATE SET
+                username = EXCLUDED.username,
+                username_lower = EXCLUDED.username_lower,
+                email_lower = EXCLUDED.email_lower,
+                role_names = EXCLUDED.role_names,
+                registration_date = EXCLUDED.registration_date,
+                last_login = EXCLUDED.last_login,
+                refreshed_at = EXCLUDED.refreshed_at
+            """, nativeQuery = true)
+    int refresh(@Param("userIds") Collection<Long> userIds);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM user_directory WHERE user_id IN (:userIds)", nativeQuery = true)
+    int deleteByUserIds(@Param("userIds") Collection<Long> userIds);
+
+    /**
+     * 指定ユーザーのうち、削除済み(論理削除を含む)のユーザーの行を削除する。
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            DELETE FROM user_directory d
+            WHERE d.user_id IN (:userIds)
+              AND NOT EXISTS (SELECT 1 FROM users u WHERE u.user_id = d.user_id AND u.deleted_at IS NULL)
+            """, nativeQuery = true)
+    int deleteRemoved(@Param("userIds") Collection<Long> userIds);
+
+    /**
+     * ディレクトリ全体の変更カウンタを進める。
+     */
+    @Transactional
+    @Query(value = "SELECT nextval('user_directory_version_seq')", nativeQuery = true)
+    long incrementVersion();
+
+    /**
+     * ディレクトリ全体の変更カウンタの現在値。一度もnextvalしていない間は0を返す
+     * (last_valueは初回のnextvalの前後で同じ値のため、is_calledで区別する)。
+     */
+    @Query(value = "SELECT CASE WHEN is_called THEN last_value ELSE 0 END FROM user_directory_version_seq",
+            nativeQuery = true)
+    long currentVersion();
+}
@@ -0,0 +1,210 @@
+package carametal.practice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * 大量件数向けのusers / user_rolesへのJDBCバッチ操作。
+ * 1件ずつのエンティティ保存では往復回数が件数に比例するため、一括処理ではこちらを使う。
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserJdbcRepository {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SequenceIdAllocator sequenceIdAllocator;
+
+    /**
+     * 一括登録する1ユーザー分の値
+     */
+    public record NewUser(String username, String email, String passwordHash,
+                          LocalDateTime registrationDate, Set<Long> roleIds) {
+    }
+
+    /**
+     * 既に使用されているユーザー名・メールアドレス
+     */
+    public record ExistingValues(Set<String> usernames, Set<String> emails) {
+    }
+
+    /**
+     * 論理削除したユーザーの削除時点の値
+     */
+    public record DeletedUser(Long userId, String username, String email) {
+    }
+
+    /**
+     * 指定したユーザー名・メールアドレスのうち既存のものを1回のクエリで取得する。
+     */
+    public ExistingValues findExisting(Collection<String> usernames, Collection<String> emails) {
+        Set<String> existingUsernames = new HashSet<>();
+        Set<String> existingEmails = new HashSet<>();
+        String[] usernameArray = usernames.toArray(String[]::new);
+        String[] emailArray = emails.toArray(String[]::new);
+
+        jdbcTemplate.query(
+                "SELECT username, email FROM users WHERE (username = ANY(?) OR email = ANY(?)) AND deleted_at IS NULL",
+                rs -> {
+                    existingUsernames.add(rs.getString("username"));
+                    existingEmails.add(rs.getString("email"));
+                },
+                usernameArray, emailArray);
+
+        existingUsernames.retainAll(usernames);
+        existingEmails.retainAll(emails);
+        return new ExistingValues(existingUsernames, existingEmails);
+    }
+
+    /**
+     * ユーザーとuser_rolesをバッチで挿入し、採番したIDを入力と同じ順序で返す。
+     */
+    public List<Long> insertAll(List<NewUser> users, Long createdBy) {
+        if (users.isEmpty()) {
+            return List.of();
+        }
+
+        // IDはシーケンスからまとめて払い出し、挿入時に明示する
+        List<Long> ids = sequenceIdAllocator.allocate("users_user_id_seq", users.size());
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        List<Object[]> userRows = new ArrayList<>(users.size());
+        List<Object[]> roleRows = new ArrayList<>();
+        for (int i = 0; i < users.size(); i++) {
+            NewUser user = users.get(i);
+            Long id = ids.get(i);
+            userRows.add(new Object[]{
+                    id, user.username(), user.email(), user.passwordHash(),
+                    Timestamp.valueOf(user.registrationDate()), createdBy, now, createdBy, now});
+            for (Long roleId : user.roleIds()) {
+                roleRows.add(new Object[]{id, roleId});
+            }
+        }
+
+        batchUpdate("""
+                INSERT INTO users (user_id, username, email, password, registration_date,
+                                   created_by, created_at, updated_by, updated_at)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+                """, userRows);
+        batchUpdate("INSERT INTO user_roles (user_id, role_id) VALUES (?, ?)", roleRows);
+
+        return ids;
+    }
+
+    /**
+     * 指定ユーザーにロールを付与し、新たに付与したユーザーのIDを返す。
+     * 付与済み・存在しないユーザーは無視する。変更したユーザーはバージョンと更新者を進める。
+     */
+    public List<Long> assignRole(Long roleId, Collection<Long> userIds, Long updatedBy) {
+        return touchUsers("""
+                WITH changed AS (
+                    INSERT INTO user_roles (user_id, role_id)
+                    SELECT u.user_id, ? FROM users u WHERE u.user_id = ANY(?) AND u.deleted_at IS NULL
+                    ON CONFLICT DO NOTHING
+                    RETURNING user_id
+                )
+                """, roleId, userIds, updatedBy);
+    }
+
+    /**
+     * 指定ユーザーからロールを剥奪し、実際に剥奪したユーザーのIDを返す。
+     */
+    public List<Long> removeRole(Long roleId, Collection<Long> userIds, Long updatedBy) {
+        return touchUsers("""
+                WITH changed AS (
+                    DELETE FROM user_roles WHERE role_id = ? AND user_id = ANY(?)
+                    RETURNING user_id
+                )
+                """, roleId, userIds, updatedBy);
+    }
+
+    private List<Long> touchUsers(String changedCte, Long roleId, Collection<Long> userIds, Long updatedBy) {
+        // user_rolesの変更とusersのバージョン更新を1文(1往復)で行う
+        return jdbcTemplate.queryForList(changedCte + """
+                UPDATE users u
+                SET version = u.version + 1, updated_by = ?, updated_at = ?
+                FROM changed c
+                WHERE u.user_id = c.user_id
+                RETURNING u.user_id
+                """, Long.class,
+                roleId, userIds.toArray(Long[]::new), updatedBy, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    /**
+     * 1行の更新でユーザーを論理削除する。既に削除済み・存在しない場合は空を返す。
+     */
+    public Optional<DeletedUser> softDelete(Long userId, Long deletedBy) {
+        return softDeleteAll(List.of(userId), deletedBy).stream().findFirst();
+    }
+
+    /**
+     * 指定ユーザーを1文のUPDATEでまとめて論理削除し、実際に削除したユーザーを返す。
+     */
+    public List<DeletedUser> softDeleteAll(Collection<Long> userIds, Long deletedBy) {
+        if (userIds.isEmpty()) {
+            return List.of();
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        return jdbcTemplate.query("""
+                UPDATE users
+                SET deleted_at = ?, updated_by = ?, updated_at = ?, version = version + 1
+                WHERE user_id = ANY(?) AND deleted_at IS NULL
+                RETURNING user_id, username, email
+                """,
+                (rs, rowNum) -> new DeletedUser(rs.getLong("user_id"), rs.getString("username"), rs.getString("email")),
+                now, deletedBy, now, userIds.toArray(Long[]::new));
+    }
+
+    /**
+     * deletedBeforeより前に論理削除された行を最大limit件物理削除し、削除件数を返す。
+     * user_rolesはON DELETE CASCADEで削除される。並行する削除処理とはSKIP LOCKEDで行を分け合う。
+     */
+    public int purgeDeleted(LocalDateTime deletedBefore, int limit) {
+        return jdbcTemplate.update("""
+                DELETE FROM users
+                WHERE user_id IN (
+                    SELECT user_id FROM users
+                    WHERE deleted_at < ?
+                    ORDER BY deleted_at
+                    LIMIT ?
+                    FOR UPDATE SKIP LOCKED
+                )
+                """, Timestamp.valueOf(deletedBefore), limit);
+    }
+
+    /**
+     * ユーザーIDからユーザー名を1回のクエリで引く。論理削除済みのユーザーも含む(物理削除済みは含まれない)。
+     */
+    public Map<Long, String> findUsernames(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, String> usernames = new HashMap<>();
+        jdbcTemplate.query("SELECT user_id, username FROM users WHERE user_id = ANY(?)",
+                rs -> {
+                    usernames.put(rs.getLong("user_id"), rs.getString("username"));
+                },
+                (Object) userIds.toArray(Long[]::new));
+        return usernames;
+    }
+
+    private void batchUpdate(String sql, List<Object[]> rows) {
+        for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+            jdbcTemplate.batchUpdate(sql, rows.subList(from, Math.min(from + BATCH_SIZE, rows.size())));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package carametal.practice.repository;
+
+import carametal.practice.entity.UserAuditEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * user_outbox_eventsへのJDBCアクセス。
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserOutboxRepository {
+
+    private static final TypeReference<Map<Long, Map<String, Object>>> PAYLOAD_TYPE = new TypeReference<>() {
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * アウトボックスの1行。1つのドメインイベント(一括操作なら対象ユーザー全員分)を表す。
+     */
+    public record OutboxEvent(Long id, UserAuditEvent.AuditAction action, Long actorId,
+                              Map<Long, Map<String, Object>> detailsByTargetUserId, LocalDateTime createdAt) {
+    }
+
+    public void append(UserAuditEvent.AuditAction action, Long actorId, Map<Long, Map<String, Object>> detailsByTargetUserId) {
+        if (detailsByTargetUserId.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(
+                "INSERT INTO user_outbox_events (action, actor_id, payload) VALUES (?, ?, CAST(? AS jsonb))",
+                action.name(), actorId, toJson(detailsByTargetUserId));
+    }
+
+    /**
+     * 未配信のイベントを古い順にlimit件取得し、leaseUntilまで他のリレーから取得されないようにする。
+     * 行ロックは取得の間だけで、配信中はロックを持たない。期限までに削除されなかった行は再度取得される。
+     * 失敗がmaxAttemptsに達した行は対象外(last_errorを見て手動で対処する)。
+     */
+    public List<OutboxEvent> claimPending(int limit, int maxAttempts, LocalDateTime leaseUntil) {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxEvent> events = jdbcTemplate.query("""
+                UPDATE user_outbox_events SET claimed_until = ?
+                WHERE id IN (
+                    SELECT id FROM user_outbox_events
+                    WHERE attempts < ? AND (claimed_until IS NULL OR claimed_until < ?)
+                    ORDER BY id
+                    LIMIT ?
+                    FOR UPDATE SKIP LOCKED
+                )
+                RETURNING id, action, actor_id, payload, created_at
+                """, this::mapRow, Timestamp.valueOf(leaseUntil), maxAttempts, Timestamp.valueOf(now), limit);
+        return events.stream().sorted(Comparator.comparing(OutboxEvent::id)).toList();
+    }
+
+    public void deleteAll(List<Long> ids) {
+        jdbcTemplate.update("DELETE FROM user_outbox_events WHERE id = ANY(?)", (Object) ids.toArray(Long[]::new));
+    }
+
+    /**
+     * 試行回数に数えずに取得を解除する(受け手が混んでいて受け付けられなかった場合)。
+     */
+    public void release(List<Long> ids) {
+        jdbcTemplate.update("UPDATE user_outbox_events SET claimed_until = NULL WHERE id = ANY(?)",
+                (Object) ids.toArray(Long[]::new));
+    }
+
+    public void recordFailure(Long id, String error) {
+        jdbcTemplate.update(
+                "UPDATE user_outbox_events SET attempts = attempts + 1, last_error = ?, claimed_until = NULL WHERE id = ?",
+                error, id);
+    }
+
+    private OutboxEvent mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return new OutboxEvent(
+                rs.getLong("id"),
+                UserAuditEvent.AuditAction.valueOf(rs.getString("action")),
+                rs.getObject("actor_id", Long.class),
+                fromJson(rs.getString("payload")),
+                rs.getTimestamp("created_at").toLocalDateTime());
+    }
+
+    private String toJson(Map<Long, Map<String, Object>> payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Outbox payload is not serializable", e);
+        }
+    }
+
+    private Map<Long, Map<String, Object>> fromJson(String payload) {
+        try {
+            return objectMapper.readValue(payload, PAYLOAD_TYPE);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Outbox payload is not readable", e);
+        }
+    }
+}
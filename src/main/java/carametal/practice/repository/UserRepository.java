@@ -3,8 +3,11 @@ package carametal.practice.repository;
 import carametal.practice.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -14,7 +17,22 @@ public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificat
     
     Optional<User> findByUsername(String username);
     
-    boolean existsByEmail(String email);
+    /**
+     * 指定したユーザー名・メールアドレスを使用している他ユーザーの値を1回のクエリで取得する。
+     * エンティティ(とEAGERのロール)は読み込まない。
+     */
+    @Query("select u.username as username, u.email as email from User u "
+            + "where (u.username = :username or u.email = :email) "
+            + "and (:excludeUserId is null or u.id <> :excludeUserId)")
+    List<UniqueKeys> findUniqueKeyConflicts(@Param("username") String username,
+                                            @Param("email") String email,
+                                            @Param("excludeUserId") Long excludeUserId);
     
-    boolean existsByUsername(String username);
+    @Query("select u.version from User u where u.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+    
+    interface UniqueKeys {
+        String getUsername();
+        String getEmail();
+    }
 }
\ No newline at end of file
@@ -1,47 +1,158 @@
 package carametal.practice.service;
 
+import carametal.practice.dto.AuditEventPageResponse;
+import carametal.practice.dto.AuditEventResponse;
 import carametal.practice.entity.UserAuditEvent;
-import carametal.practice.repository.UserAuditEventRepository;
+import carametal.practice.infrastructure.UserAuditArchive;
+import carametal.practice.repository.UserAuditEventJdbcRepository;
+import carametal.practice.repository.UserAuditRollupRepository;
+import carametal.practice.repository.UserJdbcRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.BadSqlGrammarException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 @Transactional
 public class UserAuditService {
 
-    private final UserAuditEventRepository auditEventRepository;
+    public static final int MAX_PAGE_SIZE = 200;
+    private static final int MAX_DETAILS_FILTER_LENGTH = 1000;
 
-    public void logUserCreated(Long userId, Long targetUserId, Map<String, Object> details) {
-        logAuditEvent(userId, UserAuditEvent.AuditAction.USER_CREATED, targetUserId, details);
-    }
+    private final UserAuditEventJdbcRepository auditEventJdbcRepository;
+    private final UserJdbcRepository userJdbcRepository;
+    private final UserAuditRollupRepository auditRollupRepository;
+    private final UserAuditArchive userAuditArchive;
+    private final ObjectMapper objectMapper;
 
-    public void logUserUpdated(Long userId, Long targetUserId, Map<String, Object> details) {
-        logAuditEvent(userId, UserAuditEvent.AuditAction.USER_UPDATED, targetUserId, details);
+    /**
+     * 作成済みの操作ログをJDBCバッチでまとめて記録する。操作ログの書き込みはアウトボックスから
+     * UserAuditWriterを経由するこの経路だけ。
+     */
+    public void logAll(List<UserAuditEvent> auditEvents) {
+        auditEventJdbcRepository.insertAll(auditEvents);
+        auditRollupRepository.increment(auditEvents);
     }
 
-    public void logUserDeleted(Long userId, Long targetUserId, Map<String, Object> details) {
-        logAuditEvent(userId, UserAuditEvent.AuditAction.USER_DELETED, targetUserId, details);
+    /**
+     * 操作ログを新しい順にキーセットページングで取得する。
+     * ユーザー名はページ内のユーザーIDをまとめて1回で引く。
+     */
+    @Transactional(readOnly = true)
+    public AuditEventPageResponse findAuditEvents(UserAuditEventJdbcRepository.Filter filter, String cursor, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (filter.from() != null && filter.to() != null && !filter.from().isBefore(filter.to())) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        validateDetailsFilter(filter);
+
+        // 1件多く読み、次のページの有無を判定する
+        UserAuditEventJdbcRepository.Cursor position = decodeCursor(cursor);
+        List<UserAuditEvent> live;
+        try {
+            live = auditEventJdbcRepository.findPage(filter, position, size + 1);
+        } catch (BadSqlGrammarException e) {
+            // JSONPathの構文はDBでしか検証できない
+            if (filter.detailsPath() != null) {
+                throw new IllegalArgumentException("Invalid detailsPath: " + filter.detailsPath());
+            }
+            throw e;
+        }
+        List<UserAuditEvent> events = merge(live, userAuditArchive.search(filter, position, size + 1), size + 1);
+        boolean hasNext = events.size() > size;
+        List<UserAuditEvent> page = hasNext ? events.subList(0, size) : events;
+
+        Set<Long> userIds = new HashSet<>();
+        page.forEach(event -> {
+            if (event.getUserId() != null) {
+                userIds.add(event.getUserId());
+            }
+            if (event.getTargetUserId() != null) {
+                userIds.add(event.getTargetUserId());
+            }
+        });
+        Map<Long, String> usernames = userJdbcRepository.findUsernames(userIds);
+
+        List<AuditEventResponse> responses = page.stream()
+                .map(event -> AuditEventResponse.builder()
+                        .id(event.getId())
+                        .action(event.getAction())
+                        .userId(event.getUserId())
+                        .username(usernames.get(event.getUserId()))
+                        .targetUserId(event.getTargetUserId())
+                        .targetUsername(usernames.get(event.getTargetUserId()))
+                        .details(event.getDetails())
+                        .createdAt(event.getCreatedAt())
+                        .build())
+                .toList();
+        String nextCursor = hasNext ? encodeCursor(page.get(page.size() - 1)) : null;
+        return new AuditEventPageResponse(responses, nextCursor);
     }
 
-    public void logRoleAssigned(Long userId, Long targetUserId, Map<String, Object> details) {
-        logAuditEvent(userId, UserAuditEvent.AuditAction.ROLE_ASSIGNED, targetUserId, details);
+    private void validateDetailsFilter(UserAuditEventJdbcRepository.Filter filter) {
+        if (filter.detailsContains() != null) {
+            if (filter.detailsContains().length() > MAX_DETAILS_FILTER_LENGTH) {
+                throw new IllegalArgumentException("details is too long");
+            }
+            try {
+                if (!objectMapper.readTree(filter.detailsContains()).isObject()) {
+                    throw new IllegalArgumentException("details must be a JSON object");
+                }
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("details is not valid JSON");
+            }
+        }
+        if (filter.detailsPath() != null && filter.detailsPath().length() > MAX_DETAILS_FILTER_LENGTH) {
+            throw new IllegalArgumentException("detailsPath is too long");
+        }
     }
 
-    public void logRoleRemoved(Long userId, Long targetUserId, Map<String, Object> details) {
-        logAuditEvent(userId, UserAuditEvent.AuditAction.ROLE_REMOVED, targetUserId, details);
+    /**
+     * テーブルとアーカイブの結果を(created_at, id)の降順でマージする。
+     * アーカイブの書き込み後、パーティションの削除前は同じ行が両方にあるため、IDで重複を除く。
+     */
+    private List<UserAuditEvent> merge(List<UserAuditEvent> live, List<UserAuditEvent> archived, int limit) {
+        if (archived.isEmpty()) {
+            return live;
+        }
+        Map<Long, UserAuditEvent> byId = new LinkedHashMap<>();
+        live.forEach(event -> byId.put(event.getId(), event));
+        archived.forEach(event -> byId.putIfAbsent(event.getId(), event));
+        return byId.values().stream()
+                .sorted(Comparator.comparing(UserAuditEvent::getCreatedAt).thenComparing(UserAuditEvent::getId).reversed())
+                .limit(limit)
+                .toList();
     }
 
-    private void logAuditEvent(Long userId, UserAuditEvent.AuditAction action, Long targetUserId, Map<String, Object> details) {
-        UserAuditEvent auditEvent = new UserAuditEvent();
-        auditEvent.setUserId(userId);
-        auditEvent.setAction(action);
-        auditEvent.setTargetUserId(targetUserId);
-        auditEvent.setDetails(details);
+    private String encodeCursor(UserAuditEvent last) {
+        String value = last.getCreatedAt() + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
 
-        auditEventRepository.save(auditEvent);
+    private UserAuditEventJdbcRepository.Cursor decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            return new UserAuditEventJdbcRepository.Cursor(LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
     }
-}
\ No newline at end of file
+}
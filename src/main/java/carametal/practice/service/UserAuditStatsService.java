@@ -0,0 +1,72 @@
+package carametal.practice.service;
+
+import carametal.practice.dto.AuditActionStatResponse;
+import carametal.practice.dto.AuditActorStatResponse;
+import carametal.practice.entity.UserAuditEvent;
+import carametal.practice.repository.UserAuditRollupRepository;
+import carametal.practice.repository.UserJdbcRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * ダッシュボード向けの操作ログの集計。操作ログ本体ではなく集計テーブルだけを読む。
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class UserAuditStatsService {
+
+    public enum Granularity {
+        HOUR(Duration.ofDays(31)),
+        DAY(Duration.ofDays(366));
+
+        private final Duration maxRange;
+
+        Granularity(Duration maxRange) {
+            this.maxRange = maxRange;
+        }
+    }
+
+    private final UserAuditRollupRepository auditRollupRepository;
+    private final UserJdbcRepository userJdbcRepository;
+
+    public List<AuditActionStatResponse> countByAction(Granularity granularity, LocalDateTime from, LocalDateTime to,
+                                                       UserAuditEvent.AuditAction action) {
+        validateRange(from, to, granularity.maxRange);
+        String truncUnit = granularity == Granularity.HOUR ? "hour" : "day";
+        // 集計は1時間単位のため、範囲の端も時間単位に揃える
+        LocalDateTime alignedFrom = from.truncatedTo(ChronoUnit.HOURS);
+        return auditRollupRepository.findActionCounts(truncUnit, alignedFrom, to, action).stream()
+                .map(count -> new AuditActionStatResponse(count.bucket(), count.action(), count.count()))
+                .toList();
+    }
+
+    public List<AuditActorStatResponse> countByActor(LocalDate from, LocalDate to, Long userId) {
+        validateRange(from.atStartOfDay(), to.atStartOfDay(), Granularity.DAY.maxRange);
+        List<UserAuditRollupRepository.ActorCount> counts = auditRollupRepository.findActorCounts(from, to, userId);
+
+        Map<Long, String> usernames = userJdbcRepository.findUsernames(
+                counts.stream().map(UserAuditRollupRepository.ActorCount::userId).collect(Collectors.toSet()));
+        return counts.stream()
+                .map(count -> new AuditActorStatResponse(count.day(), count.userId(), usernames.get(count.userId()), count.count()))
+                .toList();
+    }
+
+    private void validateRange(LocalDateTime from, LocalDateTime to, Duration maxRange) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        if (Duration.between(from, to).compareTo(maxRange) > 0) {
+            throw new IllegalArgumentException("Range must not exceed " + maxRange.toDays() + " days");
+        }
+    }
+}
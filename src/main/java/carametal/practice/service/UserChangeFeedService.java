@@ -0,0 +1,103 @@
+package carametal.practice.service;
+
+import carametal.practice.dto.UserChangeFeedResponse;
+import carametal.practice.dto.UserChangeResponse;
+import carametal.practice.repository.UserChangeRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 下流サービスの同期用の変更フィード。afterの位置より後の変更を、(tx_id, seq)のインデックスを順に読んで返す。
+ * 1回の取得量は変更件数に比例し、ディレクトリ全体の大きさには依存しない。
+ * 保持期間(app.user-change.retention)を過ぎた変更は{@link carametal.practice.infrastructure.UserChangePruner}が削除する。
+ * 削除済みの範囲を指すカーソルは{@link ExpiredCursorException}とし、クライアントには検索からの再同期を求める。
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class UserChangeFeedService {
+
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * カーソルが保持期間外として削除済みの範囲を指している。
+     */
+    public static class ExpiredCursorException extends RuntimeException {
+
+        public ExpiredCursorException(String message) {
+            super(message);
+        }
+    }
+
+    private final UserChangeRepository userChangeRepository;
+
+    /**
+     * afterより後の変更をlimit件まで読み、同じユーザーの変更はページ内で最後の1件にまとめて返す。
+     * afterを省略した場合は、保持している最も古い変更から返す。
+     */
+    public UserChangeFeedResponse findChanges(String after, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        UserChangeRepository.Position position = decodeCursor(after);
+
+        // 1件多く読み、続きの有無を判定する
+        List<UserChangeRepository.ChangeRow> rows = userChangeRepository.findAfter(position, limit + 1);
+        // 削除済みの位置は行を削除する前に進むため、読んだ後に確かめれば読み飛ばした行がないことを保証できる
+        if (after != null && !after.isBlank() && position.isBefore(userChangeRepository.findHorizon())) {
+            throw new ExpiredCursorException("Cursor is older than the retained changes: " + after);
+        }
+        boolean hasMore = rows.size() > limit;
+        List<UserChangeRepository.ChangeRow> page = hasMore ? rows.subList(0, limit) : rows;
+
+        Map<Long, UserChangeRepository.ChangeRow> latestByUser = new LinkedHashMap<>();
+        for (UserChangeRepository.ChangeRow row : page) {
+            // 最後の変更の位置に並ぶよう、入れ直す
+            latestByUser.remove(row.userId());
+            latestByUser.put(row.userId(), row);
+        }
+        List<UserChangeResponse> changes = latestByUser.values().stream()
+                .map(this::toResponse)
+                .toList();
+
+        UserChangeRepository.Position next = page.isEmpty() ? position : page.get(page.size() - 1).position();
+        return new UserChangeFeedResponse(changes, encodeCursor(next), hasMore);
+    }
+
+    private UserChangeResponse toResponse(UserChangeRepository.ChangeRow row) {
+        // CREATED / UPDATEDの後に削除されたユーザーは、現在の値がないため削除として返す
+        boolean gone = row.change() != UserChangeRepository.Change.DELETED && row.username() == null;
+        return UserChangeResponse.builder()
+                .userId(row.userId())
+                .change(gone ? UserChangeRepository.Change.DELETED : row.change())
+                .changedAt(row.changedAt())
+                .username(row.username())
+                .email(row.email())
+                .roleNames(row.roleNames())
+                .build();
+    }
+
+    private String encodeCursor(UserChangeRepository.Position position) {
+        String value = position.txId() + "." + position.seq();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private UserChangeRepository.Position decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return UserChangeRepository.Position.START;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\.");
+            return new UserChangeRepository.Position(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+}
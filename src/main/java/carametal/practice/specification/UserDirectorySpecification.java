@@ -0,0 +1,25 @@
+package carametal.practice.specification;
+
+import carametal.practice.entity.UserDirectoryEntry;
+import org.springframework.data.jpa.domain.Specification;
+
+public class UserDirectorySpecification {
+
+    public static Specification<UserDirectoryEntry> hasUsernameContaining(String username) {
+        return (root, query, criteriaBuilder) -> {
+            if (username == null || username.trim().isEmpty()) {
+                return criteriaBuilder.conjunction();
+            }
+            return criteriaBuilder.like(root.get("usernameLower"), "%" + username.toLowerCase() + "%");
+        };
+    }
+
+    public static Specification<UserDirectoryEntry> hasEmailContaining(String email) {
+        return (root, query, criteriaBuilder) -> {
+            if (email == null || email.trim().isEmpty()) {
+                return criteriaBuilder.conjunction();
+            }
+            return criteriaBuilder.like(root.get("emailLower"), "%" + email.toLowerCase() + "%");
+        };
+    }
+}
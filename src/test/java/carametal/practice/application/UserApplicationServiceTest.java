@@ -9,8 +9,10 @@ import carametal.practice.entity.User;
 import carametal.practice.repository.UserRepository;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.jdbc.Sql;
 
+import java.sql.Timestamp;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -24,6 +26,9 @@ class UserApplicationServiceTest extends BaseIntegrationTest {
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
     @Test
     void registerUser_正常ケース() {
         // Given
@@ -139,6 +144,27 @@ class UserApplicationServiceTest extends BaseIntegrationTest {
         assertTrue(exception.getMessage().contains("Username already exists"));
     }
     
+    @Test
+    void registerUser_重複メールでエラー() {
+        // Given
+        UserRegistrationRequest request = UserRegistrationRequest.builder()
+                .username("newuser")
+                .email("testadmin@example.com") // 既存のメールアドレス
+                .password("password123")
+                .roleNames(Set.of("EMPLOYEE"))
+                .build();
+        
+        User currentUser = userRepository.findByUsername("testadmin").orElseThrow();
+        
+        // When & Then
+        IllegalArgumentException exception = assertThrows(
+                IllegalArgumentException.class,
+                () -> userApplicationService.registerUser(request, currentUser)
+        );
+        
+        assertTrue(exception.getMessage().contains("Email already exists"));
+    }
+    
     @Test
     void updateUser_正常ケース() {
         // Given
@@ -227,6 +253,36 @@ class UserApplicationServiceTest extends BaseIntegrationTest {
         assertFalse(userRepository.existsById(targetUserId));
     }
     
+    @Test
+    void deleteUser_論理削除され同じユーザー名で再登録できる() {
+        // Given
+        User targetUser = userRepository.findByUsername("employee").orElseThrow();
+        Long targetUserId = targetUser.getId();
+        User currentUser = userRepository.findByUsername("testadmin").orElseThrow();
+        
+        // When
+        userApplicationService.deleteUser(targetUserId, currentUser);
+        
+        // Then - 行は残るがエンティティとしては見えない
+        assertNotNull(jdbcTemplate.queryForObject(
+                "SELECT deleted_at FROM users WHERE user_id = ?", Timestamp.class, targetUserId));
+        assertTrue(userRepository.findByUsername("employee").isEmpty());
+        
+        // 削除済みのユーザー名・メールアドレスは再利用できる
+        UserRegistrationRequest request = UserRegistrationRequest.builder()
+                .username("employee")
+                .email("employee@example.com")
+                .password("password123")
+                .roleNames(Set.of("EMPLOYEE"))
+                .build();
+        UserRegistrationResponse response = userApplicationService.registerUser(request, currentUser);
+        assertNotEquals(targetUserId, response.getId());
+        
+        // 2回目の削除は存在しない扱い
+        assertThrows(IllegalArgumentException.class,
+                () -> userApplicationService.deleteUser(targetUserId, currentUser));
+    }
+    
     @Test
     void deleteUser_存在しないユーザーでエラー() {
         // Given
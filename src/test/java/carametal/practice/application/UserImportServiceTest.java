@@ -0,0 +1,112 @@
+package carametal.practice.application;
+
+import carametal.practice.base.BaseIntegrationTest;
+import carametal.practice.dto.UserImportJobResponse;
+import carametal.practice.entity.User;
+import carametal.practice.infrastructure.UserImportRecordReader;
+import carametal.practice.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * インポートジョブはバックグラウンドで別トランザクションとしてコミットするため、テストトランザクションは使わない。
+ */
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Sql("/test-data.sql")
+@Sql(statements = "TRUNCATE users, roles, user_roles, user_audit_events, user_outbox_events, user_changes, user_directory RESTART IDENTITY CASCADE",
+        executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class UserImportServiceTest extends BaseIntegrationTest {
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void submit_CSVの不正な行はスキップして残りを登録する() throws Exception {
+        String csv = """
+                username,email,password,roles
+                import1,import1@example.com,password123,EMPLOYEE
+                "import2","import2@example.com","password123","EMPLOYEE;USER_ADMIN"
+                x,invalid-email,password123,EMPLOYEE
+
+                import3,import3@example.com,password123,
+                import4,"unterminated,password123,EMPLOYEE
+                testadmin,duplicate@example.com,password123,EMPLOYEE
+                """;
+
+        UserImportJobResponse job = awaitCompletion(submit(csv, UserImportRecordReader.Format.CSV));
+
+        assertEquals(UserImportJobResponse.Status.COMPLETED, job.getStatus());
+        assertEquals(6, job.getProcessed());
+        assertEquals(2, job.getCreated());
+        assertEquals(4, job.getFailed());
+        // 解析エラーは読み込み時、検証(ロールなしを含む)・重複エラーはチャンク登録時に記録される
+        assertEquals(Set.of(4L, 6L, 7L, 8L),
+                job.getErrors().stream().map(UserImportJobResponse.RowError::getLine).collect(Collectors.toSet()));
+        assertNull(job.getEtaSeconds());
+
+        assertTrue(userRepository.findByUsername("import1").isPresent());
+        assertEquals(2, userRepository.findByUsername("import2").orElseThrow().getRoles().size());
+        assertTrue(userRepository.findByUsername("import3").isEmpty());
+    }
+
+    @Test
+    void submit_NDJSONの不正なJSONは失敗として記録する() throws Exception {
+        String ndjson = """
+                {"username":"ndjson1","email":"ndjson1@example.com","password":"password123","roleNames":["EMPLOYEE"]}
+                {"username":"ndjson2",
+                {"username":"ndjson3","email":"ndjson3@example.com","password":"password123","roleNames":["EMPLOYEE"]}
+                """;
+
+        UserImportJobResponse job = awaitCompletion(submit(ndjson, UserImportRecordReader.Format.NDJSON));
+
+        assertEquals(UserImportJobResponse.Status.COMPLETED, job.getStatus());
+        assertEquals(2, job.getCreated());
+        assertEquals(1, job.getFailed());
+        assertEquals(2, job.getErrors().get(0).getLine());
+        assertEquals(2, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM users WHERE username IN ('ndjson1', 'ndjson3')", Integer.class));
+    }
+
+    @Test
+    void getJob_存在しないジョブは空() {
+        assertTrue(userImportService.getJob(UUID.randomUUID()).isEmpty());
+    }
+
+    private UUID submit(String content, UserImportRecordReader.Format format) {
+        User currentUser = userRepository.findByUsername("testadmin").orElseThrow();
+        UserImportJobResponse response = userImportService.submit(
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), format, currentUser);
+        assertNotNull(response.getJobId());
+        return response.getJobId();
+    }
+
+    private UserImportJobResponse awaitCompletion(UUID jobId) throws InterruptedException {
+        long deadline = System.nanoTime() + 30_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            UserImportJobResponse job = userImportService.getJob(jobId).orElseThrow();
+            if (job.getFinishedAt() != null) {
+                return job;
+            }
+            Thread.sleep(50);
+        }
+        return fail("Import job did not finish");
+    }
+}
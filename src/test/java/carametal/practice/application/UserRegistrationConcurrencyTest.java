@@ -0,0 +1,117 @@
+package carametal.practice.application;
+
+import carametal.practice.base.BaseIntegrationTest;
+import carametal.practice.dto.UserRegistrationRequest;
+import carametal.practice.entity.User;
+import carametal.practice.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 同じユーザー名・メールアドレスでの同時登録が、DBの一意制約によって1件だけ成功することを検証する。
+ * 各スレッドが個別にコミットするため、テストトランザクションは使わない。
+ */
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Sql("/test-data.sql")
+@Sql(statements = "TRUNCATE users, roles, user_roles, user_audit_events, user_outbox_events, user_changes, user_directory RESTART IDENTITY CASCADE",
+        executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class UserRegistrationConcurrencyTest extends BaseIntegrationTest {
+
+    private static final int THREADS = 16;
+
+    @Autowired
+    private UserApplicationService userApplicationService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void registerUser_同じユーザー名の同時登録は1件だけ成功() throws Exception {
+        List<Throwable> failures = registerConcurrently(i -> UserRegistrationRequest.builder()
+                .username("contended")
+                .email("contended" + i + "@example.com")
+                .password("password123")
+                .roleNames(Set.of("EMPLOYEE"))
+                .build());
+
+        assertEquals(THREADS - 1, failures.size());
+        failures.forEach(failure -> {
+            assertInstanceOf(IllegalArgumentException.class, failure);
+            assertTrue(failure.getMessage().contains("Username already exists"), failure.getMessage());
+        });
+        assertEquals(1, countUsers("username = 'contended'"));
+    }
+
+    @Test
+    void registerUser_同じメールアドレスの同時登録は1件だけ成功() throws Exception {
+        List<Throwable> failures = registerConcurrently(i -> UserRegistrationRequest.builder()
+                .username("contended" + i)
+                .email("contended@example.com")
+                .password("password123")
+                .roleNames(Set.of("EMPLOYEE"))
+                .build());
+
+        assertEquals(THREADS - 1, failures.size());
+        failures.forEach(failure -> {
+            assertInstanceOf(IllegalArgumentException.class, failure);
+            assertTrue(failure.getMessage().contains("Email already exists"), failure.getMessage());
+        });
+        assertEquals(1, countUsers("email = 'contended@example.com'"));
+    }
+
+    private List<Throwable> registerConcurrently(RequestFactory requestFactory) throws InterruptedException {
+        User currentUser = userRepository.findByUsername("testadmin").orElseThrow();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>(THREADS);
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS)) {
+            for (int i = 0; i < THREADS; i++) {
+                UserRegistrationRequest request = requestFactory.create(i);
+                Callable<Object> task = () -> {
+                    start.await();
+                    return userApplicationService.registerUser(request, currentUser);
+                };
+                futures.add(executor.submit(task));
+            }
+            start.countDown();
+        }
+
+        List<Throwable> failures = new ArrayList<>();
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                failures.add(e.getCause());
+            }
+        }
+        return failures;
+    }
+
+    private int countUsers(String condition) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users WHERE " + condition, Integer.class);
+    }
+
+    @FunctionalInterface
+    private interface RequestFactory {
+        UserRegistrationRequest create(int index);
+    }
+}
@@ -0,0 +1,143 @@
+package carametal.practice.application;
+
+import carametal.practice.base.BaseIntegrationTest;
+import carametal.practice.dto.UserRegistrationRequest;
+import carametal.practice.entity.User;
+import carametal.practice.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 登録1件あたりにコネクションを保持している時間を計測し、
+ * パスワードのハッシュ化中にコネクションを借りていないことを検証する。
+ */
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Sql("/test-data.sql")
+@Sql(statements = "TRUNCATE users, roles, user_roles, user_audit_events, user_outbox_events, user_changes, user_directory RESTART IDENTITY CASCADE",
+        executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class UserRegistrationConnectionHoldTest extends BaseIntegrationTest {
+
+    @Autowired
+    private UserApplicationService userApplicationService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private ConnectionHoldRecorder connectionHoldRecorder;
+
+    @Test
+    void registerUser_ハッシュ化の間コネクションを保持しない() {
+        User currentUser = userRepository.findByUsername("testadmin").orElseThrow();
+        // クエリプラン等の初期化分を除くため1件登録しておく
+        userApplicationService.registerUser(request("warmup"), currentUser);
+
+        long hashStart = System.nanoTime();
+        passwordEncoder.encode("password123");
+        Duration hashing = Duration.ofNanos(System.nanoTime() - hashStart);
+
+        connectionHoldRecorder.reset();
+        userApplicationService.registerUser(request("measured"), currentUser);
+        List<Duration> holds = connectionHoldRecorder.holds();
+
+        Duration longest = holds.stream().max(Duration::compareTo).orElseThrow();
+        assertTrue(longest.compareTo(hashing) < 0, "connection held for " + longest.toMillis() + " ms (longest of "
+                + holds.size() + "), hashing takes " + hashing.toMillis() + " ms");
+    }
+
+    private UserRegistrationRequest request(String username) {
+        return UserRegistrationRequest.builder()
+                .username(username)
+                .email(username + "@example.com")
+                .password("password123")
+                .roleNames(Set.of("EMPLOYEE"))
+                .build();
+    }
+
+    @TestConfiguration
+    static class Config {
+
+        @Bean
+        ConnectionHoldRecorder connectionHoldRecorder() {
+            return new ConnectionHoldRecorder();
+        }
+
+        @Bean
+        static BeanPostProcessor connectionHoldRecordingPostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource dataSource && "dataSource".equals(beanName)) {
+                        return new RecordingDataSource(dataSource);
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+
+    /**
+     * プールからの貸し出し(getConnection)から返却(close)までの時間を記録する
+     */
+    static class ConnectionHoldRecorder {
+
+        private static final List<Duration> HOLDS = new CopyOnWriteArrayList<>();
+
+        void reset() {
+            HOLDS.clear();
+        }
+
+        List<Duration> holds() {
+            return List.copyOf(HOLDS);
+        }
+    }
+
+    static class RecordingDataSource extends DelegatingDataSource {
+
+        RecordingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            long borrowedAt = System.nanoTime();
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if ("close".equals(method.getName())) {
+                            ConnectionHoldRecorder.HOLDS.add(Duration.ofNanos(System.nanoTime() - borrowedAt));
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                    });
+        }
+    }
+}
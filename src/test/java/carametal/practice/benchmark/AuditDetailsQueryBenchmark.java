@@ -0,0 +1,100 @@
+package carametal.practice.benchmark;
+
+import carametal.practice.base.BaseIntegrationTest;
+import carametal.practice.entity.UserAuditEvent;
+import carametal.practice.repository.UserAuditEventJdbcRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * detailsの包含(@>)とJSONPath(@?)による絞り込みを、GINインデックス(jsonb_path_ops)がある場合とない場合で比べるベンチマーク。
+ * インデックスはテストのトランザクション内で削除するため、ロールバックで元に戻る。
+ * {@code ./gradlew benchmark} で実行する(Dockerが必要)。
+ */
+@Tag("benchmark")
+class AuditDetailsQueryBenchmark extends BaseIntegrationTest {
+
+    private static final int ROW_COUNT = 2_000_000;
+    private static final int RARE_ROLE_EVERY = 10_000;
+    private static final int PAGE_SIZE = 50;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 10;
+
+    private static final String CREATE_DETAILS_INDEX =
+            "CREATE INDEX idx_user_audit_events_details ON user_audit_events USING gin (details jsonb_path_ops)";
+
+    private static final UserAuditEventJdbcRepository.Filter BY_EMAIL = new UserAuditEventJdbcRepository.Filter(
+            null, null, null, null, null, "{\"oldEmail\": \"user123457@example.com\"}", null);
+    private static final UserAuditEventJdbcRepository.Filter BY_ROLE = new UserAuditEventJdbcRepository.Filter(
+            null, null, null, null, null, null, "$.newRoles[*] ? (@ == \"AUDITOR\")");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserAuditEventJdbcRepository userAuditEventJdbcRepository;
+
+    @Test
+    void measureDetailsQueries() {
+        // 1行ずつGINに追加するより、投入後にまとめて作る方が速い
+        jdbcTemplate.execute("DROP INDEX idx_user_audit_events_details");
+        jdbcTemplate.update("""
+                INSERT INTO user_audit_events (id, user_id, target_user_id, created_at, action, details)
+                SELECT g, g % 50, g % 100000, TIMESTAMP '2025-01-01' + g * INTERVAL '1 second', ?,
+                       jsonb_build_object(
+                           'oldEmail', 'user' || g || '@example.com',
+                           'newEmail', 'user' || g || '@example.org',
+                           'newRoles', CASE WHEN g % ? = 0
+                                            THEN jsonb_build_array('EMPLOYEE', 'AUDITOR')
+                                            ELSE jsonb_build_array('EMPLOYEE') END)
+                FROM generate_series(1, ?) g
+                """, UserAuditEvent.AuditAction.USER_UPDATED.getCode(), RARE_ROLE_EVERY, ROW_COUNT);
+        jdbcTemplate.execute(CREATE_DETAILS_INDEX);
+        jdbcTemplate.execute("ANALYZE user_audit_events");
+
+        List<UserAuditEvent> emailWithIndex = userAuditEventJdbcRepository.findPage(BY_EMAIL, null, PAGE_SIZE);
+        List<UserAuditEvent> roleWithIndex = userAuditEventJdbcRepository.findPage(BY_ROLE, null, PAGE_SIZE);
+        double emailIndexed = measureMillis(BY_EMAIL);
+        double roleIndexed = measureMillis(BY_ROLE);
+        long indexKilobytes = jdbcTemplate.queryForObject(
+                "SELECT pg_total_relation_size(CAST('idx_user_audit_events_details' AS regclass)) / 1024", Long.class);
+
+        jdbcTemplate.execute("DROP INDEX idx_user_audit_events_details");
+        jdbcTemplate.execute("ANALYZE user_audit_events");
+
+        double emailScanned = measureMillis(BY_EMAIL);
+        double roleScanned = measureMillis(BY_ROLE);
+
+        System.out.printf("details @> (1 row)          : %8.2f ms with GIN, %8.2f ms without%n", emailIndexed, emailScanned);
+        System.out.printf("details @? (%d rows, page %d): %8.2f ms with GIN, %8.2f ms without%n",
+                ROW_COUNT / RARE_ROLE_EVERY, PAGE_SIZE, roleIndexed, roleScanned);
+        System.out.printf("GIN index size              : %,d kB for %,d rows%n", indexKilobytes, ROW_COUNT);
+
+        // インデックスの有無で結果が変わらないこと
+        assertEquals(List.of(123_457L), ids(emailWithIndex));
+        assertEquals(ids(emailWithIndex), ids(userAuditEventJdbcRepository.findPage(BY_EMAIL, null, PAGE_SIZE)));
+        assertEquals(PAGE_SIZE, roleWithIndex.size());
+        assertEquals(ids(roleWithIndex), ids(userAuditEventJdbcRepository.findPage(BY_ROLE, null, PAGE_SIZE)));
+    }
+
+    private double measureMillis(UserAuditEventJdbcRepository.Filter filter) {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            userAuditEventJdbcRepository.findPage(filter, null, PAGE_SIZE);
+        }
+        long start = System.nanoTime();
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            userAuditEventJdbcRepository.findPage(filter, null, PAGE_SIZE);
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / MEASURED_ROUNDS;
+    }
+
+    private List<Long> ids(List<UserAuditEvent> events) {
+        return events.stream().map(UserAuditEvent::getId).toList();
+    }
+}
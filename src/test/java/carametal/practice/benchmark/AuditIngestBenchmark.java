@@ -0,0 +1,130 @@
+package carametal.practice.benchmark;
+
+import carametal.practice.base.BaseIntegrationTest;
+import carametal.practice.entity.UserAuditEvent;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * user_audit_eventsの旧レイアウト(action VARCHAR、主キー(id, created_at)と単一用途のインデックス4本)と
+ * 現在のレイアウト(action smallint、主キー(created_at, id)と複合インデックス2本)の挿入スループットと
+ * インデックスの大きさを比べるベンチマーク。同じ行を同じJDBCバッチで別々のテーブルに挿入する。
+ * {@code ./gradlew benchmark} で実行する(Dockerが必要)。
+ */
+@Tag("benchmark")
+class AuditIngestBenchmark extends BaseIntegrationTest {
+
+    private static final int ROW_COUNT = 50_000;
+    private static final int BATCH_SIZE = 500;
+    private static final int WARMUP_ROUNDS = 2;
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    private static final String BEFORE_DDL = """
+            CREATE TABLE audit_ingest_before (
+                id BIGINT NOT NULL,
+                user_id BIGINT,
+                action VARCHAR(50) NOT NULL,
+                target_user_id BIGINT,
+                ip_address VARCHAR(45),
+                user_agent TEXT,
+                details JSONB,
+                created_at TIMESTAMP NOT NULL,
+                PRIMARY KEY (id, created_at)
+            );
+            CREATE INDEX ON audit_ingest_before(user_id, created_at DESC, id DESC);
+            CREATE INDEX ON audit_ingest_before(target_user_id, created_at DESC, id DESC);
+            CREATE INDEX ON audit_ingest_before(created_at DESC, id DESC);
+            CREATE INDEX ON audit_ingest_before(action, created_at DESC, id DESC);
+            """;
+
+    private static final String AFTER_DDL = """
+            CREATE TABLE audit_ingest_after (
+                id BIGINT NOT NULL,
+                user_id BIGINT,
+                target_user_id BIGINT,
+                created_at TIMESTAMP NOT NULL,
+                action SMALLINT NOT NULL,
+                ip_address VARCHAR(45),
+                user_agent TEXT,
+                details JSONB,
+                PRIMARY KEY (created_at, id)
+            );
+            CREATE INDEX ON audit_ingest_after(user_id, created_at DESC, id DESC);
+            CREATE INDEX ON audit_ingest_after(target_user_id, created_at DESC, id DESC);
+            """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void measureIngestThroughput() {
+        jdbcTemplate.execute(BEFORE_DDL);
+        jdbcTemplate.execute(AFTER_DDL);
+
+        double before = measureRowsPerSecond("audit_ingest_before", UserAuditEvent.AuditAction::name);
+        double after = measureRowsPerSecond("audit_ingest_after", UserAuditEvent.AuditAction::getCode);
+
+        System.out.printf("before (varchar action, 5 indexes)  : %,.0f rows/s, indexes %,d kB, table %,d kB%n",
+                before, indexKilobytes("audit_ingest_before"), tableKilobytes("audit_ingest_before"));
+        System.out.printf("after  (smallint action, 3 indexes) : %,.0f rows/s, indexes %,d kB, table %,d kB%n",
+                after, indexKilobytes("audit_ingest_after"), tableKilobytes("audit_ingest_after"));
+
+        assertEquals(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM audit_ingest_before", Long.class),
+                jdbcTemplate.queryForObject("SELECT COUNT(*) FROM audit_ingest_after", Long.class));
+    }
+
+    private double measureRowsPerSecond(String table, Function<UserAuditEvent.AuditAction, Object> action) {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            insert(table, round, action);
+        }
+        long start = System.nanoTime();
+        insert(table, WARMUP_ROUNDS, action);
+        long elapsed = System.nanoTime() - start;
+        return ROW_COUNT / (elapsed / 1_000_000_000.0);
+    }
+
+    private void insert(String table, int round, Function<UserAuditEvent.AuditAction, Object> action) {
+        UserAuditEvent.AuditAction[] actions = UserAuditEvent.AuditAction.values();
+        List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+        String sql = "INSERT INTO " + table
+                + " (id, user_id, action, target_user_id, ip_address, user_agent, details, created_at)"
+                + " VALUES (?, ?, ?, ?, ?, ?, CAST(? AS jsonb), ?)";
+        for (int i = 0; i < ROW_COUNT; i++) {
+            long id = (long) round * ROW_COUNT + i;
+            rows.add(new Object[]{
+                    id,
+                    (long) (i % 50),
+                    action.apply(actions[i % actions.length]),
+                    (long) (i % 5_000),
+                    "192.0.2." + (i % 250),
+                    "benchmark",
+                    "{\"round\":" + round + ",\"index\":" + i + "}",
+                    Timestamp.valueOf(BASE_TIME.plusNanos(id * 1_000_000L))});
+            if (rows.size() == BATCH_SIZE) {
+                jdbcTemplate.batchUpdate(sql, rows);
+                rows.clear();
+            }
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, rows);
+        }
+    }
+
+    private long indexKilobytes(String table) {
+        return jdbcTemplate.queryForObject("SELECT pg_indexes_size(CAST(? AS regclass)) / 1024", Long.class, table);
+    }
+
+    private long tableKilobytes(String table) {
+        return jdbcTemplate.queryForObject("SELECT pg_relation_size(CAST(? AS regclass)) / 1024", Long.class, table);
+    }
+}
@@ -0,0 +1,105 @@
+package carametal.practice.benchmark;
+
+import carametal.practice.base.BaseIntegrationTest;
+import carametal.practice.entity.User;
+import carametal.practice.entity.UserAuditEvent;
+import carametal.practice.repository.UserAuditEventJdbcRepository;
+import carametal.practice.repository.UserAuditEventRepository;
+import carametal.practice.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * シーケンス採番(pooled-lo)とJDBCバッチを有効にした状態での挿入スループットを計測するベンチマーク。
+ * {@code ./gradlew benchmark} で実行する(Dockerが必要)。
+ */
+@Tag("benchmark")
+class InsertThroughputBenchmark extends BaseIntegrationTest {
+
+    private static final int ROW_COUNT = 10_000;
+    private static final int WARMUP_ROUNDS = 2;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserAuditEventRepository userAuditEventRepository;
+
+    @Autowired
+    private UserAuditEventJdbcRepository userAuditEventJdbcRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void measureInsertThroughput() {
+        IntFunction<Integer> auditJpa = round -> {
+            userAuditEventRepository.saveAll(auditEvents(round));
+            return ROW_COUNT;
+        };
+        IntFunction<Integer> auditJdbc = round -> {
+            userAuditEventJdbcRepository.insertAll(auditEvents(round));
+            return ROW_COUNT;
+        };
+        IntFunction<Integer> usersJpa = round -> {
+            List<User> users = new ArrayList<>(ROW_COUNT);
+            for (int i = 0; i < ROW_COUNT; i++) {
+                User user = User.builder()
+                        .username("bench_" + round + "_" + i)
+                        .email("bench_" + round + "_" + i + "@example.com")
+                        .password("x")
+                        .build();
+                user.setCreatedBy(1L);
+                user.setUpdatedBy(1L);
+                users.add(user);
+            }
+            userRepository.saveAll(users);
+            return ROW_COUNT;
+        };
+
+        System.out.printf("audit events (JPA saveAll) : %,.0f rows/s%n", measureRowsPerSecond(auditJpa));
+        System.out.printf("audit events (JDBC batch)  : %,.0f rows/s%n", measureRowsPerSecond(auditJdbc));
+        System.out.printf("users (JPA saveAll)        : %,.0f rows/s%n", measureRowsPerSecond(usersJpa));
+
+        // 採番ブロックが重ならないこと(JPAとJDBCの混在でも一意)
+        assertEquals(userAuditEventRepository.count(),
+                userAuditEventRepository.findAll().stream().map(UserAuditEvent::getId).distinct().count());
+    }
+
+    private List<UserAuditEvent> auditEvents(int round) {
+        List<UserAuditEvent> events = new ArrayList<>(ROW_COUNT);
+        for (int i = 0; i < ROW_COUNT; i++) {
+            UserAuditEvent event = new UserAuditEvent();
+            event.setUserId(1L);
+            event.setAction(UserAuditEvent.AuditAction.USER_CREATED);
+            event.setTargetUserId((long) i);
+            event.setDetails(Map.of("round", round, "index", i));
+            events.add(event);
+        }
+        return events;
+    }
+
+    private double measureRowsPerSecond(IntFunction<Integer> insert) {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            insert.apply(round);
+            entityManager.flush();
+            entityManager.clear();
+        }
+
+        long start = System.nanoTime();
+        int rows = insert.apply(WARMUP_ROUNDS);
+        entityManager.flush();
+        long elapsed = System.nanoTime() - start;
+        entityManager.clear();
+        return rows / (elapsed / 1_000_000_000.0);
+    }
+}
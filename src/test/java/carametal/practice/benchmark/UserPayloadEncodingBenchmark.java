@@ -0,0 +1,101 @@
+package carametal.practice.benchmark;
+
+import carametal.practice.dto.UserUpdateResponse;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import net.datafaker.Faker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 1,000件のユーザーページをJSON / CBOR / Smileでエンコード・デコードした際の
+ * ペイロードサイズと処理時間を比較するベンチマーク。
+ * {@code ./gradlew benchmark} で実行する。
+ */
+@Tag("benchmark")
+class UserPayloadEncodingBenchmark {
+
+    private static final int PAGE_SIZE = 1_000;
+    private static final int WARMUP_ITERATIONS = 200;
+    private static final int MEASURED_ITERATIONS = 500;
+    private static final TypeReference<List<UserUpdateResponse>> PAGE_TYPE = new TypeReference<>() {};
+
+    private final Faker faker = new Faker();
+    private List<UserUpdateResponse> page;
+
+    @BeforeEach
+    void setUp() {
+        page = new ArrayList<>(PAGE_SIZE);
+        LocalDateTime now = LocalDateTime.now();
+        for (long i = 1; i <= PAGE_SIZE; i++) {
+            page.add(UserUpdateResponse.builder()
+                    .id(i)
+                    .username(faker.internet().username())
+                    .email(faker.internet().emailAddress())
+                    .registrationDate(now.minusDays(i))
+                    .lastUpdated(now.minusHours(i))
+                    .roleNames(Set.of("EMPLOYEE", "USER_ADMIN"))
+                    .build());
+        }
+    }
+
+    @Test
+    void compareEncodings() throws Exception {
+        // アプリケーションと同じくJackson2ObjectMapperBuilder経由でマッパーを構築する
+        ObjectMapper json = Jackson2ObjectMapperBuilder.json().build();
+        ObjectMapper cbor = Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build();
+        ObjectMapper smile = Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).build();
+
+        Result jsonResult = measure("JSON", json);
+        Result cborResult = measure("CBOR", cbor);
+        Result smileResult = measure("Smile", smile);
+
+        System.out.printf("%-6s %12s %14s %14s%n", "format", "bytes", "encode(us/op)", "decode(us/op)");
+        for (Result result : List.of(jsonResult, cborResult, smileResult)) {
+            System.out.printf("%-6s %12d %14.1f %14.1f%n",
+                    result.format(), result.bytes(), result.encodeMicros(), result.decodeMicros());
+        }
+
+        assertTrue(cborResult.bytes() < jsonResult.bytes());
+        assertTrue(smileResult.bytes() < jsonResult.bytes());
+    }
+
+    private Result measure(String format, ObjectMapper mapper) throws Exception {
+        byte[] encoded = mapper.writeValueAsBytes(page);
+        assertEquals(page, mapper.readValue(encoded, PAGE_TYPE));
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            mapper.readValue(mapper.writeValueAsBytes(page), PAGE_TYPE);
+        }
+
+        long encodeNanos = 0;
+        long decodeNanos = 0;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            long start = System.nanoTime();
+            byte[] bytes = mapper.writeValueAsBytes(page);
+            long encodedAt = System.nanoTime();
+            mapper.readValue(bytes, PAGE_TYPE);
+            long decodedAt = System.nanoTime();
+            encodeNanos += encodedAt - start;
+            decodeNanos += decodedAt - encodedAt;
+        }
+
+        return new Result(format, encoded.length,
+                encodeNanos / 1_000.0 / MEASURED_ITERATIONS,
+                decodeNanos / 1_000.0 / MEASURED_ITERATIONS);
+    }
+
+    private record Result(String format, int bytes, double encodeMicros, double decodeMicros) {
+    }
+}
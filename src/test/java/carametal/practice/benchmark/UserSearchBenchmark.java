@@ -0,0 +1,101 @@
+package carametal.practice.benchmark;
+
+import carametal.practice.base.BaseIntegrationTest;
+import carametal.practice.entity.User;
+import carametal.practice.infrastructure.UserSearchEngine;
+import carametal.practice.repository.UserRepository;
+import carametal.practice.specification.UserSpecification;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Specificationによる検索とUserSearchEngineの事前構築クエリによる検索の
+ * 1リクエストあたりのCPU時間を比較するベンチマーク。
+ * {@code ./gradlew benchmark} で実行する(Dockerが必要)。
+ */
+@Tag("benchmark")
+class UserSearchBenchmark extends BaseIntegrationTest {
+
+    private static final int USER_COUNT = 5_000;
+    private static final int WARMUP_ITERATIONS = 300;
+    private static final int MEASURED_ITERATIONS = 1_000;
+
+    @Autowired
+    private UserSearchEngine userSearchEngine;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        List<Object[]> rows = new ArrayList<>(USER_COUNT);
+        for (int i = 0; i < USER_COUNT; i++) {
+            rows.add(new Object[]{"bench_user_" + i, "bench" + i + "@example.com"});
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO users (username, email, password, created_by, created_at, updated_by, updated_at) "
+                        + "VALUES (?, ?, 'x', 1, CURRENT_TIMESTAMP, 1, CURRENT_TIMESTAMP)",
+                rows);
+    }
+
+    @Test
+    void compareSearchCpuTime() {
+        Pageable pageable = PageRequest.of(3, 20, Sort.by(Sort.Direction.ASC, "username"));
+
+        Supplier<Page<User>> specification = () -> userRepository.findAll(
+                UserSpecification.hasUsernameContaining("user_1")
+                        .and(UserSpecification.hasEmailContaining("example")),
+                pageable);
+        Supplier<Page<User>> engine = () -> userSearchEngine.search("user_1", "example", pageable);
+
+        assertEquals(specification.get().getContent().stream().map(User::getId).toList(),
+                engine.get().getContent().stream().map(User::getId).toList());
+
+        double specificationMicros = measureCpuMicros(specification);
+        double engineMicros = measureCpuMicros(engine);
+
+        System.out.printf("Specification: %.1f us/request (CPU)%n", specificationMicros);
+        System.out.printf("SearchEngine : %.1f us/request (CPU)%n", engineMicros);
+        System.out.printf("saved        : %.1f%%%n", (1 - engineMicros / specificationMicros) * 100);
+    }
+
+    private double measureCpuMicros(Supplier<Page<User>> search) {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            search.get();
+            entityManager.clear();
+        }
+
+        long cpuNanos = 0;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            long start = threadMXBean.getCurrentThreadCpuTime();
+            search.get();
+            cpuNanos += threadMXBean.getCurrentThreadCpuTime() - start;
+            entityManager.clear();
+        }
+        return cpuNanos / 1_000.0 / MEASURED_ITERATIONS;
+    }
+}
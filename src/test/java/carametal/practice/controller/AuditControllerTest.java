@@ -0,0 +1,449 @@
+package carametal.practice.controller;
+
+import carametal.practice.base.BaseIntegrationTest;
+import carametal.practice.dto.LoginRequest;
+import carametal.practice.entity.UserAuditEvent;
+import carametal.practice.infrastructure.UserAuditArchive;
+import carametal.practice.infrastructure.UserAuditSegmentWriter;
+import carametal.practice.infrastructure.UserAuditStreamBroadcaster;
+import carametal.practice.repository.UserOutboxRepository;
+import carametal.practice.repository.UserRepository;
+import carametal.practice.service.UserAuditService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@Sql("/test-data.sql")
+class AuditControllerTest extends BaseIntegrationTest {
+
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2025, 4, 1, 9, 0);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserAuditStreamBroadcaster userAuditStreamBroadcaster;
+
+    @Autowired
+    private UserAuditService userAuditService;
+
+    @Autowired
+    private UserAuditArchive userAuditArchive;
+
+    private Long adminId;
+    private Long employeeId;
+    private Long userAdminId;
+
+    @BeforeEach
+    void setUp() {
+        adminId = userRepository.findByUsername("testadmin").orElseThrow().getId();
+        employeeId = userRepository.findByUsername("employee").orElseThrow().getId();
+        userAdminId = userRepository.findByUsername("useradmin").orElseThrow().getId();
+
+        // 同じ時刻の行を含めて、(created_at, id)の順序でページをまたいでも欠けないことを確認する
+        insertAuditEvent(1L, adminId, "USER_CREATED", employeeId, BASE_TIME);
+        insertAuditEvent(2L, adminId, "USER_UPDATED", employeeId, BASE_TIME.plusHours(1),
+                "{\"oldEmail\": \"old@example.com\", \"newEmail\": \"employee@example.com\", \"newRoles\": [\"EMPLOYEE\"]}");
+        insertAuditEvent(3L, adminId, "ROLE_ASSIGNED", employeeId, BASE_TIME.plusHours(1));
+        insertAuditEvent(4L, userAdminId, "USER_UPDATED", employeeId, BASE_TIME.plusHours(2),
+                "{\"oldEmail\": \"employee@example.com\", \"newEmail\": \"new@example.com\", \"newRoles\": [\"EMPLOYEE\", \"USER_ADMIN\"]}");
+        insertAuditEvent(5L, adminId, "USER_CREATED", userAdminId, BASE_TIME.plusHours(3));
+    }
+
+    @Test
+    void findAuditEvents_対象ユーザーの履歴をページをまたいで新しい順に取得する() throws Exception {
+        String token = getJwtToken("testadmin@example.com", "password123");
+
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            var request = get("/api/audit")
+                    .header("Authorization", "Bearer " + token)
+                    .param("targetUserId", employeeId.toString())
+                    .param("size", "2");
+            if (cursor != null) {
+                request.param("cursor", cursor);
+            }
+            JsonNode page = readJson(mockMvc.perform(request).andExpect(status().isOk()).andReturn());
+            for (JsonNode event : page.get("events")) {
+                ids.add(event.get("id").asLong());
+                assertEquals("employee", event.get("targetUsername").asText());
+            }
+            cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(List.of(4L, 3L, 2L, 1L), ids);
+        assertEquals(2, pages);
+    }
+
+    @Test
+    void findAuditEvents_操作者と操作種別と期間で絞り込む() throws Exception {
+        String token = getJwtToken("testadmin@example.com", "password123");
+
+        JsonNode page = readJson(mockMvc.perform(get("/api/audit")
+                        .header("Authorization", "Bearer " + token)
+                        .param("userId", adminId.toString())
+                        .param("action", "USER_CREATED")
+                        .param("from", BASE_TIME.plusMinutes(1).toString())
+                        .param("to", BASE_TIME.plusDays(1).toString()))
+                .andExpect(status().isOk())
+                .andReturn());
+
+        assertEquals(1, page.get("events").size());
+        JsonNode event = page.get("events").get(0);
+        assertEquals(5L, event.get("id").asLong());
+        assertEquals("testadmin", event.get("username").asText());
+        assertEquals("useradmin", event.get("targetUsername").asText());
+        assertTrue(page.get("nextCursor").isNull());
+    }
+
+    @Test
+    void findAuditEvents_不正なcursorとsize() throws Exception {
+        String token = getJwtToken("testadmin@example.com", "password123");
+
+        mockMvc.perform(get("/api/audit")
+                        .header("Authorization", "Bearer " + token)
+                        .param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/audit")
+                        .header("Authorization", "Bearer " + token)
+                        .param("size", "1000"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void findAuditEvents_detailsの包含とJSONPathで絞り込む() throws Exception {
+        String token = getJwtToken("testadmin@example.com", "password123");
+
+        JsonNode byContainment = readJson(mockMvc.perform(get("/api/audit")
+                        .header("Authorization", "Bearer " + token)
+                        .param("details", "{\"oldEmail\": \"old@example.com\"}"))
+                .andExpect(status().isOk())
+                .andReturn());
+        assertEquals(List.of(2L), eventIds(byContainment));
+
+        // 配列は要素の一部を指定しても一致する
+        JsonNode byArrayElement = readJson(mockMvc.perform(get("/api/audit")
+                        .header("Authorization", "Bearer " + token)
+                        .param("details", "{\"newRoles\": [\"EMPLOYEE\"]}"))
+                .andExpect(status().isOk())
+                .andReturn());
+        assertEquals(List.of(4L, 2L), eventIds(byArrayElement));
+
+        JsonNode byPath = readJson(mockMvc.perform(get("/api/audit")
+                        .header("Authorization", "Bearer " + token)
+                        .param("detailsPath", "$.newRoles[*] ? (@ == \"USER_ADMIN\")"))
+                .andExpect(status().isOk())
+                .andReturn());
+        assertEquals(List.of(4L), eventIds(byPath));
+    }
+
+    @Test
+    void findAuditEvents_不正なdetails() throws Exception {
+        String token = getJwtToken("testadmin@example.com", "password123");
+
+        mockMvc.perform(get("/api/audit")
+                        .header("Authorization", "Bearer " + token)
+                        .param("details", "{oldEmail"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/audit")
+                        .header("Authorization", "Bearer " + token)
+                        .param("details", "[\"EMPLOYEE\"]"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void findAuditEvents_不正なdetailsPath() throws Exception {
+        // 構文エラーでトランザクションが中断されるため、このテストでは以降DBを使わない
+        String token = getJwtToken("testadmin@example.com", "password123");
+
+        mockMvc.perform(get("/api/audit")
+                        .header("Authorization", "Bearer " + token)
+                        .param("detailsPath", "$.newRoles[*] ? (@ ==="))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void findAuditEvents_従業員権限_アクセス拒否() throws Exception {
+        String token = getJwtToken("employee@example.com", "password123");
+
+        mockMvc.perform(get("/api/audit")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void countByAction_記録した操作ログが時間単位と日単位で集計される() throws Exception {
+        LocalDateTime day = LocalDateTime.of(2024, 1, 10, 0, 0);
+        userAuditService.logAll(List.of(
+                auditEvent(adminId, UserAuditEvent.AuditAction.USER_CREATED, day.plusHours(9).plusMinutes(5)),
+                auditEvent(adminId, UserAuditEvent.AuditAction.USER_CREATED, day.plusHours(9).plusMinutes(55)),
+                auditEvent(userAdminId, UserAuditEvent.AuditAction.USER_CREATED, day.plusHours(15)),
+                auditEvent(adminId, UserAuditEvent.AuditAction.USER_DELETED, day.plusDays(1))));
+        String token = getJwtToken("testadmin@example.com", "password123");
+
+        JsonNode hourly = readJson(mockMvc.perform(get("/api/audit/stats/actions")
+                        .header("Authorization", "Bearer " + token)
+                        .param("from", day.toString())
+                        .param("to", day.plusDays(1).toString()))
+                .andExpect(status().isOk())
+                .andReturn());
+        assertEquals(2, hourly.size());
+        assertEquals("2024-01-10T09:00:00", hourly.get(0).get("bucket").asText());
+        assertEquals(2, hourly.get(0).get("count").asLong());
+        assertEquals(1, hourly.get(1).get("count").asLong());
+
+        JsonNode daily = readJson(mockMvc.perform(get("/api/audit/stats/actions")
+                        .header("Authorization", "Bearer " + token)
+                        .param("granularity", "DAY")
+                        .param("from", day.toString())
+                        .param("to", day.plusDays(2).toString()))
+                .andExpect(status().isOk())
+                .andReturn());
+        assertEquals(2, daily.size());
+        assertEquals("USER_CREATED", daily.get(0).get("action").asText());
+        assertEquals(3, daily.get(0).get("count").asLong());
+        assertEquals("USER_DELETED", daily.get(1).get("action").asText());
+
+        JsonNode actors = readJson(mockMvc.perform(get("/api/audit/stats/actors")
+                        .header("Authorization", "Bearer " + token)
+                        .param("from", "2024-01-10")
+                        .param("to", "2024-01-11"))
+                .andExpect(status().isOk())
+                .andReturn());
+        assertEquals(2, actors.size());
+        assertEquals("testadmin", actors.get(0).get("username").asText());
+        assertEquals(2, actors.get(0).get("count").asLong());
+        assertEquals("useradmin", actors.get(1).get("username").asText());
+    }
+
+    @Test
+    void countByAction_範囲が長すぎる() throws Exception {
+        String token = getJwtToken("testadmin@example.com", "password123");
+
+        mockMvc.perform(get("/api/audit/stats/actions")
+                        .header("Authorization", "Bearer " + token)
+                        .param("from", "2024-01-01T00:00:00")
+                        .param("to", "2024-06-01T00:00:00"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void streamAuditEvents_配信されたイベントを購読者へ流す() throws Exception {
+        String token = getJwtToken("testadmin@example.com", "password123");
+        MvcResult result = mockMvc.perform(get("/api/audit/stream")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        userAuditStreamBroadcaster.consume(List.of(outboxEvent(1001L, employeeId), outboxEvent(1002L, userAdminId)));
+
+        String body = awaitContent(result, "id:1002");
+        assertTrue(body.contains("id:1001\nevent:USER_UPDATED\n"), body);
+        assertTrue(body.contains("\"targets\":{\"" + userAdminId + "\""), body);
+    }
+
+    @Test
+    void streamAuditEvents_Last_Event_IDの続きから再送する() throws Exception {
+        userAuditStreamBroadcaster.consume(List.of(
+                outboxEvent(2001L, employeeId), outboxEvent(2002L, employeeId), outboxEvent(2003L, employeeId)));
+        String token = getJwtToken("testadmin@example.com", "password123");
+
+        MvcResult result = mockMvc.perform(get("/api/audit/stream")
+                        .header("Authorization", "Bearer " + token)
+                        .header("Last-Event-ID", "2001"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = awaitContent(result, "id:2003");
+        assertFalse(body.contains("id:2001"), body);
+        assertTrue(body.contains("id:2002"), body);
+    }
+
+    @Test
+    void streamAuditEvents_保持範囲外のLast_Event_IDにはresyncを送る() throws Exception {
+        String token = getJwtToken("testadmin@example.com", "password123");
+
+        MvcResult result = mockMvc.perform(get("/api/audit/stream")
+                        .header("Authorization", "Bearer " + token)
+                        .header("Last-Event-ID", "-12345"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        awaitContent(result, "event:" + UserAuditStreamBroadcaster.RESYNC_EVENT);
+    }
+
+    @Test
+    void streamAuditEvents_同じIDのイベントは1回だけ流す() throws Exception {
+        String token = getJwtToken("testadmin@example.com", "password123");
+        MvcResult result = mockMvc.perform(get("/api/audit/stream")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // リレーがバッチの失敗後に1件ずつ再配信した場合を想定する
+        userAuditStreamBroadcaster.consume(List.of(outboxEvent(4001L, employeeId), outboxEvent(4002L, employeeId)));
+        userAuditStreamBroadcaster.consume(List.of(outboxEvent(4001L, employeeId)));
+        userAuditStreamBroadcaster.consume(List.of(outboxEvent(4003L, employeeId)));
+
+        String body = awaitContent(result, "id:4003");
+        assertEquals(body.indexOf("id:4001\n"), body.lastIndexOf("id:4001\n"), body);
+    }
+
+    @Test
+    void streamAuditEvents_キューが溢れた購読者にはresyncを送る() throws Exception {
+        // バッファ(256件)を超える件数を溜めておき、再接続時の再送で購読者のキューを溢れさせる
+        List<UserOutboxRepository.OutboxEvent> events = new ArrayList<>();
+        for (long id = 3001L; id <= 3300L; id++) {
+            events.add(outboxEvent(id, employeeId));
+        }
+        userAuditStreamBroadcaster.consume(events);
+        String token = getJwtToken("testadmin@example.com", "password123");
+
+        MvcResult result = mockMvc.perform(get("/api/audit/stream")
+                        .header("Authorization", "Bearer " + token)
+                        .header("Last-Event-ID", "3001"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // 溢れた時点までの分は捨てられ、resyncの後に残りが届く
+        String body = awaitContent(result, "id:3300");
+        assertTrue(body.contains("event:" + UserAuditStreamBroadcaster.RESYNC_EVENT), body);
+        assertFalse(body.contains("id:3002\n"), body);
+        assertTrue(body.indexOf("event:" + UserAuditStreamBroadcaster.RESYNC_EVENT) < body.indexOf("id:3300"), body);
+    }
+
+    @Test
+    void downloadArchiveSegment_一覧に出たセグメントをそのまま返す(@TempDir Path directory) throws Exception {
+        String token = getJwtToken("testadmin@example.com", "password123");
+        Path segment = directory.resolve("audit-2025-04.seg");
+        try (UserAuditSegmentWriter writer = new UserAuditSegmentWriter(segment, objectMapper)) {
+            UserAuditEvent event = auditEvent(adminId, UserAuditEvent.AuditAction.USER_CREATED, BASE_TIME);
+            event.setId(1L);
+            writer.append(event);
+            writer.finish();
+        }
+        Path originalDirectory = userAuditArchive.directory();
+        ReflectionTestUtils.setField(userAuditArchive, "directory", directory);
+        try {
+            MvcResult list = mockMvc.perform(get("/api/audit/archive")
+                            .header("Authorization", "Bearer " + token))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            assertEquals("audit-2025-04.seg", readJson(list).get(0).get("name").asText());
+            assertEquals(1, readJson(list).get(0).get("rows").asLong());
+
+            MvcResult download = mockMvc.perform(get("/api/audit/archive/audit-2025-04.seg")
+                            .header("Authorization", "Bearer " + token))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("Content-Length", String.valueOf(Files.size(segment))))
+                    .andReturn();
+            assertArrayEquals(Files.readAllBytes(segment), download.getResponse().getContentAsByteArray());
+
+            mockMvc.perform(get("/api/audit/archive/audit-2025-05.seg")
+                            .header("Authorization", "Bearer " + token))
+                    .andExpect(status().isNotFound());
+            mockMvc.perform(get("/api/audit/archive/application.properties")
+                            .header("Authorization", "Bearer " + token))
+                    .andExpect(status().isNotFound());
+        } finally {
+            ReflectionTestUtils.setField(userAuditArchive, "directory", originalDirectory);
+        }
+    }
+
+    private UserAuditEvent auditEvent(Long userId, UserAuditEvent.AuditAction action, LocalDateTime createdAt) {
+        UserAuditEvent event = new UserAuditEvent();
+        event.setUserId(userId);
+        event.setAction(action);
+        event.setTargetUserId(employeeId);
+        event.setCreatedAt(createdAt);
+        return event;
+    }
+
+    private UserOutboxRepository.OutboxEvent outboxEvent(Long id, Long targetUserId) {
+        return new UserOutboxRepository.OutboxEvent(id, UserAuditEvent.AuditAction.USER_UPDATED, adminId,
+                Map.of(targetUserId, Map.of("newUsername", "renamed")), LocalDateTime.now());
+    }
+
+    private String awaitContent(MvcResult result, String expected) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        String body = result.getResponse().getContentAsString();
+        while (!body.contains(expected) && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+            body = result.getResponse().getContentAsString();
+        }
+        assertTrue(body.contains(expected), body);
+        return body;
+    }
+
+    private void insertAuditEvent(Long id, Long userId, String action, Long targetUserId, LocalDateTime createdAt) {
+        insertAuditEvent(id, userId, action, targetUserId, createdAt, "{}");
+    }
+
+    private void insertAuditEvent(Long id, Long userId, String action, Long targetUserId, LocalDateTime createdAt,
+                                  String details) {
+        jdbcTemplate.update("""
+                INSERT INTO user_audit_events (id, user_id, action, target_user_id, details, created_at)
+                VALUES (?, ?, ?, ?, CAST(? AS jsonb), ?)
+                """, id, userId, UserAuditEvent.AuditAction.valueOf(action).getCode(), targetUserId, details,
+                Timestamp.valueOf(createdAt));
+    }
+
+    private List<Long> eventIds(JsonNode page) {
+        List<Long> ids = new ArrayList<>();
+        page.get("events").forEach(event -> ids.add(event.get("id").asLong()));
+        return ids;
+    }
+
+    private JsonNode readJson(MvcResult result) throws Exception {
+        return objectMapper.readTree(result.getResponse().getContentAsString());
+    }
+
+    private String getJwtToken(String email, String password) throws Exception {
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setEmail(email);
+        loginRequest.setPassword(password);
+
+        MvcResult result = mockMvc.perform(post("/api/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(loginRequest)))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        String response = result.getResponse().getContentAsString();
+        return objectMapper.readTree(response).get("token").asText();
+    }
+}
@@ -0,0 +1,226 @@
+package carametal.practice.controller;
+
+import carametal.practice.base.BaseIntegrationTest;
+import carametal.practice.dto.LoginRequest;
+import carametal.practice.dto.UserRegistrationRequest;
+import carametal.practice.infrastructure.UserChangePruner;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * 変更フィードはコミット済みのトランザクションの行だけを返すため、テストトランザクションは使わない。
+ */
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Sql("/test-data.sql")
+@Sql(statements = {
+        "TRUNCATE users, roles, user_roles, user_audit_events, user_outbox_events, user_changes, user_directory RESTART IDENTITY CASCADE",
+        "UPDATE user_change_horizon SET tx_id = 0, seq = 0"},
+        executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class UserChangeFeedControllerTest extends BaseIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private UserChangePruner userChangePruner;
+
+    @Test
+    void findChanges_カーソル以降の作成と更新と削除を返す() throws Exception {
+        String token = getJwtToken("testadmin@example.com", "password123");
+        JsonNode initial = findChanges(token, null);
+        String cursor = initial.get("nextCursor").asText();
+
+        long userId = register(token, "feeduser");
+        JsonNode created = findChanges(token, cursor);
+        assertEquals(1, created.get("changes").size());
+        JsonNode change = created.get("changes").get(0);
+        assertEquals(userId, change.get("userId").asLong());
+        assertEquals("CREATED", change.get("change").asText());
+        assertEquals("feeduser", change.get("username").asText());
+        assertEquals("EMPLOYEE", change.get("roleNames").get(0).asText());
+        assertFalse(created.get("hasMore").asBoolean());
+
+        // 更新してから削除すると、同じページ内では最後の削除にまとめられる
+        cursor = created.get("nextCursor").asText();
+        mockMvc.perform(patch("/api/users/" + userId)
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of("username", "feeduser2"))))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/api/users/" + userId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isNoContent());
+
+        JsonNode deleted = findChanges(token, cursor);
+        assertEquals(1, deleted.get("changes").size());
+        assertEquals("DELETED", deleted.get("changes").get(0).get("change").asText());
+        assertFalse(deleted.get("changes").get(0).has("username"));
+
+        // 変更がなければ空で、カーソルは進まない
+        JsonNode empty = findChanges(token, deleted.get("nextCursor").asText());
+        assertEquals(0, empty.get("changes").size());
+        assertEquals(deleted.get("nextCursor").asText(), empty.get("nextCursor").asText());
+    }
+
+    @Test
+    void findChanges_limitを超える分はhasMoreで続きを示す() throws Exception {
+        String token = getJwtToken("testadmin@example.com", "password123");
+        String cursor = findChanges(token, null).get("nextCursor").asText();
+        register(token, "feeduser1");
+        register(token, "feeduser2");
+        register(token, "feeduser3");
+
+        JsonNode first = readJson(mockMvc.perform(get("/api/users/changes")
+                        .header("Authorization", "Bearer " + token)
+                        .param("after", cursor)
+                        .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andReturn());
+        assertEquals(2, first.get("changes").size());
+        assertTrue(first.get("hasMore").asBoolean());
+
+        JsonNode second = findChanges(token, first.get("nextCursor").asText());
+        assertEquals(1, second.get("changes").size());
+        assertEquals("feeduser3", second.get("changes").get(0).get("username").asText());
+    }
+
+    @Test
+    void findChanges_実行中のトランザクションより後の変更は終わるまで返さない() throws Exception {
+        String token = getJwtToken("testadmin@example.com", "password123");
+        String cursor = findChanges(token, null).get("nextCursor").asText();
+
+        CountDownLatch inserted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread slowWriter = Thread.ofPlatform().start(() -> transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("INSERT INTO user_changes (user_id, change) VALUES (9001, 'UPDATED')");
+            inserted.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertTrue(inserted.await(10, TimeUnit.SECONDS));
+
+        // 後から始まって先にコミットされた変更
+        register(token, "feeduser");
+        assertEquals(0, findChanges(token, cursor).get("changes").size());
+
+        release.countDown();
+        slowWriter.join(10_000);
+        JsonNode changes = findChanges(token, cursor).get("changes");
+        assertEquals(2, changes.size());
+        assertEquals(9001, changes.get(0).get("userId").asLong());
+        assertEquals("feeduser", changes.get(1).get("username").asText());
+    }
+
+    @Test
+    void findChanges_保持期間を過ぎて削除された範囲のカーソルには410を返す() throws Exception {
+        String token = getJwtToken("testadmin@example.com", "password123");
+        String expired = findChanges(token, null).get("nextCursor").asText();
+        long oldUserId = register(token, "olduser");
+        String retained = findChanges(token, expired).get("nextCursor").asText();
+        jdbcTemplate.update("UPDATE user_changes SET changed_at = changed_at - INTERVAL '8 days' WHERE user_id = ?", oldUserId);
+        register(token, "newuser");
+
+        assertEquals(1, userChangePruner.pruneBefore(LocalDateTime.now().minusDays(7)));
+
+        mockMvc.perform(get("/api/users/changes")
+                        .header("Authorization", "Bearer " + token)
+                        .param("after", expired))
+                .andExpect(status().isGone());
+        JsonNode fromRetained = findChanges(token, retained);
+        assertEquals(1, fromRetained.get("changes").size());
+        assertEquals("newuser", fromRetained.get("changes").get(0).get("username").asText());
+        // afterを省略すると保持している最も古い変更から返す
+        JsonNode fromOldest = findChanges(token, null);
+        assertEquals(1, fromOldest.get("changes").size());
+        assertEquals("newuser", fromOldest.get("changes").get(0).get("username").asText());
+    }
+
+    @Test
+    void findChanges_不正なカーソルとlimit() throws Exception {
+        String token = getJwtToken("testadmin@example.com", "password123");
+
+        mockMvc.perform(get("/api/users/changes")
+                        .header("Authorization", "Bearer " + token)
+                        .param("after", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/users/changes")
+                        .header("Authorization", "Bearer " + token)
+                        .param("limit", "5000"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private long register(String token, String username) throws Exception {
+        UserRegistrationRequest request = UserRegistrationRequest.builder()
+                .username(username)
+                .email(username + "@example.com")
+                .password("password123")
+                .roleNames(Set.of("EMPLOYEE"))
+                .build();
+        MvcResult result = mockMvc.perform(post("/api/users/register")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andReturn();
+        return readJson(result).get("id").asLong();
+    }
+
+    private JsonNode findChanges(String token, String after) throws Exception {
+        var request = get("/api/users/changes").header("Authorization", "Bearer " + token);
+        if (after != null) {
+            request.param("after", after);
+        }
+        return readJson(mockMvc.perform(request).andExpect(status().isOk()).andReturn());
+    }
+
+    private JsonNode readJson(MvcResult result) throws Exception {
+        return objectMapper.readTree(result.getResponse().getContentAsString());
+    }
+
+    private String getJwtToken(String email, String password) throws Exception {
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setEmail(email);
+        loginRequest.setPassword(password);
+
+        MvcResult result = mockMvc.perform(post("/api/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(loginRequest)))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        String response = result.getResponse().getContentAsString();
+        return objectMapper.readTree(response).get("token").asText();
+    }
+}
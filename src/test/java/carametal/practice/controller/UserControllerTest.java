@@ -1,11 +1,22 @@
 package carametal.practice.controller;
 
 import carametal.practice.base.BaseIntegrationTest;
+import carametal.practice.dto.BulkRoleChangeRequest;
+import carametal.practice.dto.BulkUserDeletionRequest;
+import carametal.practice.dto.BulkUserRegistrationRequest;
 import carametal.practice.dto.LoginRequest;
+import carametal.practice.dto.UserPatchRequest;
 import carametal.practice.dto.UserRegistrationRequest;
+import carametal.practice.dto.UserRegistrationResponse;
 import carametal.practice.dto.UserUpdateRequest;
+import carametal.practice.entity.Role;
+import carametal.practice.entity.User;
+import carametal.practice.entity.UserAuditEvent;
+import carametal.practice.infrastructure.UserOutboxRelay;
+import carametal.practice.repository.UserAuditEventRepository;
 import carametal.practice.repository.UserRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
@@ -13,9 +24,13 @@ import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -31,6 +46,12 @@ class UserControllerTest extends BaseIntegrationTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserAuditEventRepository userAuditEventRepository;
+
+    @Autowired
+    private UserOutboxRelay userOutboxRelay;
+
 
     @Test
     void registerUser_システム管理者権限_正常ケース() throws Exception {
@@ -74,6 +95,33 @@ class UserControllerTest extends BaseIntegrationTest {
                 .andExpect(jsonPath("$.roleNames[0]", is("SYSTEM_ADMIN")));
     }
 
+    @Test
+    void registerUser_CBORでレスポンスを取得() throws Exception {
+        UserRegistrationRequest request = UserRegistrationRequest.builder()
+                .username("cboruser")
+                .email("cbor@example.com")
+                .password("password123")
+                .roleNames(Set.of("EMPLOYEE"))
+                .build();
+
+        String token = getJwtToken("testadmin@example.com", "password123");
+
+        MvcResult result = mockMvc.perform(post("/api/users/register")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_CBOR)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn();
+
+        UserRegistrationResponse response = CBORMapper.builder().findAndAddModules().build()
+                .readValue(result.getResponse().getContentAsByteArray(), UserRegistrationResponse.class);
+        assertEquals("cboruser", response.getUsername());
+        assertEquals("cbor@example.com", response.getEmail());
+        assertEquals(Set.of("EMPLOYEE"), response.getRoleNames());
+    }
+
     @Test
     void registerUser_従業員権限_アクセス拒否() throws Exception {
         UserRegistrationRequest request = UserRegistrationRequest.builder()
@@ -161,6 +209,268 @@ class UserControllerTest extends BaseIntegrationTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void registerUsers_一括登録_成功と失敗が混在() throws Exception {
+        BulkUserRegistrationRequest request = BulkUserRegistrationRequest.builder()
+                .users(List.of(
+                        UserRegistrationRequest.builder()
+                                .username("bulkuser1").email("bulk1@example.com")
+                                .password("password123").roleNames(Set.of("EMPLOYEE")).build(),
+                        UserRegistrationRequest.builder()
+                                .username("bulkuser2").email("testadmin@example.com")
+                                .password("password123").roleNames(Set.of("EMPLOYEE")).build(),
+                        UserRegistrationRequest.builder()
+                                .username("bulkuser1").email("bulk3@example.com")
+                                .password("password123").roleNames(Set.of("EMPLOYEE")).build(),
+                        UserRegistrationRequest.builder()
+                                .username("bulkuser4").email("invalid-email")
+                                .password("password123").roleNames(Set.of("EMPLOYEE")).build(),
+                        UserRegistrationRequest.builder()
+                                .username("bulkuser5").email("bulk5@example.com")
+                                .password("password123").roleNames(Set.of("USER_ADMIN", "EMPLOYEE")).build()))
+                .build();
+
+        String token = getJwtToken("testadmin@example.com", "password123");
+
+        mockMvc.perform(post("/api/users/register/bulk")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total", is(5)))
+                .andExpect(jsonPath("$.created", is(2)))
+                .andExpect(jsonPath("$.failed", is(3)))
+                .andExpect(jsonPath("$.results[0].status", is("CREATED")))
+                .andExpect(jsonPath("$.results[1].error", containsString("Email already exists")))
+                .andExpect(jsonPath("$.results[2].error", containsString("Duplicate username")))
+                .andExpect(jsonPath("$.results[3].status", is("FAILED")))
+                .andExpect(jsonPath("$.results[4].status", is("CREATED")));
+
+        User created = userRepository.findByUsername("bulkuser5").orElseThrow();
+        assertEquals(Set.of("USER_ADMIN", "EMPLOYEE"),
+                created.getRoles().stream().map(Role::getRoleName).collect(Collectors.toSet()));
+        userOutboxRelay.relayPending();
+        assertEquals(1, userAuditEventRepository.findByTargetUserId(created.getId()).size());
+    }
+
+    @Test
+    void registerUsers_一括登録_重複で拒否された要素のユーザー名は後続の要素で使える() throws Exception {
+        BulkUserRegistrationRequest request = BulkUserRegistrationRequest.builder()
+                .users(List.of(
+                        UserRegistrationRequest.builder()
+                                .username("bulkuser1").email("bulk1@example.com")
+                                .password("password123").roleNames(Set.of("EMPLOYEE")).build(),
+                        UserRegistrationRequest.builder()
+                                .username("bulkuser2").email("bulk1@example.com")
+                                .password("password123").roleNames(Set.of("EMPLOYEE")).build(),
+                        UserRegistrationRequest.builder()
+                                .username("bulkuser2").email("bulk2@example.com")
+                                .password("password123").roleNames(Set.of("EMPLOYEE")).build()))
+                .build();
+
+        String token = getJwtToken("testadmin@example.com", "password123");
+
+        mockMvc.perform(post("/api/users/register/bulk")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created", is(2)))
+                .andExpect(jsonPath("$.results[0].status", is("CREATED")))
+                .andExpect(jsonPath("$.results[1].error", containsString("Duplicate email")))
+                .andExpect(jsonPath("$.results[2].status", is("CREATED")));
+    }
+
+    @Test
+    void registerUsers_従業員権限_アクセス拒否() throws Exception {
+        BulkUserRegistrationRequest request = BulkUserRegistrationRequest.builder()
+                .users(List.of(UserRegistrationRequest.builder()
+                        .username("bulkuser1").email("bulk1@example.com")
+                        .password("password123").roleNames(Set.of("EMPLOYEE")).build()))
+                .build();
+
+        String token = getJwtToken("employee@example.com", "password123");
+
+        mockMvc.perform(post("/api/users/register/bulk")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void deleteUsers_ID指定で一括削除() throws Exception {
+        String token = getJwtToken("testadmin@example.com", "password123");
+        Long employeeId = userRepository.findByUsername("employee").orElseThrow().getId();
+        Long userAdminId = userRepository.findByUsername("useradmin").orElseThrow().getId();
+        BulkUserDeletionRequest request = BulkUserDeletionRequest.builder()
+                .userIds(List.of(employeeId, userAdminId, 999_999L))
+                .build();
+
+        mockMvc.perform(post("/api/users/delete/bulk")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted", is(2)))
+                .andExpect(jsonPath("$.deletedUserIds", containsInAnyOrder(employeeId.intValue(), userAdminId.intValue())));
+
+        assertTrue(userRepository.findByUsername("employee").isEmpty());
+        userOutboxRelay.relayPending();
+        assertTrue(userAuditEventRepository.findByTargetUserId(employeeId).stream()
+                .anyMatch(event -> event.getAction() == UserAuditEvent.AuditAction.USER_DELETED
+                        && "employee".equals(event.getDetails().get("username"))));
+    }
+
+    @Test
+    void deleteUsers_検索条件で一括削除_操作者自身は除外() throws Exception {
+        String token = getJwtToken("testadmin@example.com", "password123");
+        BulkUserDeletionRequest request = BulkUserDeletionRequest.builder()
+                .username("admin")
+                .build();
+
+        mockMvc.perform(post("/api/users/delete/bulk")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted", is(1)));
+
+        assertTrue(userRepository.findByUsername("useradmin").isEmpty());
+        assertTrue(userRepository.findByUsername("testadmin").isPresent());
+        assertTrue(userRepository.findByUsername("employee").isPresent());
+    }
+
+    @Test
+    void deleteUsers_対象の指定なし() throws Exception {
+        String token = getJwtToken("testadmin@example.com", "password123");
+
+        mockMvc.perform(post("/api/users/delete/bulk")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new BulkUserDeletionRequest())))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void assignRole_一括付与_付与済みと存在しないユーザーは無視() throws Exception {
+        String token = getJwtToken("testadmin@example.com", "password123");
+        Long employeeId = userRepository.findByUsername("employee").orElseThrow().getId();
+        Long userAdminId = userRepository.findByUsername("useradmin").orElseThrow().getId();
+        BulkRoleChangeRequest request = BulkRoleChangeRequest.builder()
+                .userIds(List.of(employeeId, userAdminId, 999_999L))
+                .build();
+
+        mockMvc.perform(post("/api/users/roles/USER_ADMIN/assign")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.requested", is(3)))
+                .andExpect(jsonPath("$.changed", is(1)))
+                .andExpect(jsonPath("$.changedUserIds[0]", is(employeeId.intValue())));
+
+        userOutboxRelay.relayPending();
+        assertTrue(userAuditEventRepository.findByTargetUserId(employeeId).stream()
+                .anyMatch(event -> event.getAction() == UserAuditEvent.AuditAction.ROLE_ASSIGNED));
+        assertTrue(userAuditEventRepository.findByTargetUserId(userAdminId).isEmpty());
+    }
+
+    @Test
+    void removeRole_一括剥奪() throws Exception {
+        String token = getJwtToken("testadmin@example.com", "password123");
+        Long employeeId = userRepository.findByUsername("employee").orElseThrow().getId();
+        BulkRoleChangeRequest request = BulkRoleChangeRequest.builder()
+                .userIds(List.of(employeeId))
+                .build();
+
+        mockMvc.perform(post("/api/users/roles/EMPLOYEE/remove")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changed", is(1)));
+
+        userOutboxRelay.relayPending();
+        assertTrue(userAuditEventRepository.findByTargetUserId(employeeId).stream()
+                .anyMatch(event -> event.getAction() == UserAuditEvent.AuditAction.ROLE_REMOVED));
+    }
+
+    @Test
+    void assignRole_存在しないロール() throws Exception {
+        String token = getJwtToken("testadmin@example.com", "password123");
+        BulkRoleChangeRequest request = BulkRoleChangeRequest.builder()
+                .userIds(List.of(1L))
+                .build();
+
+        mockMvc.perform(post("/api/users/roles/UNKNOWN/assign")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getUser_ETagが一致すれば304() throws Exception {
+        String token = getJwtToken("testadmin@example.com", "password123");
+        Long employeeId = userRepository.findByUsername("employee").orElseThrow().getId();
+
+        MvcResult result = mockMvc.perform(get("/api/users/" + employeeId)
+                .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andExpect(jsonPath("$.username", is("employee")))
+                .andExpect(jsonPath("$.roleNames[0]", is("EMPLOYEE")))
+                .andReturn();
+        String eTag = result.getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/users/" + employeeId)
+                .header("Authorization", "Bearer " + token)
+                .header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", eTag))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void getUser_表現ごとに異なるETag() throws Exception {
+        String token = getJwtToken("testadmin@example.com", "password123");
+        Long employeeId = userRepository.findByUsername("employee").orElseThrow().getId();
+
+        String jsonETag = mockMvc.perform(get("/api/users/" + employeeId)
+                .header("Authorization", "Bearer " + token)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(header().stringValues("Vary", hasItem("Accept")))
+                .andReturn().getResponse().getHeader("ETag");
+
+        // JSONのETagでCBORを条件付き取得しても304にはならない
+        MvcResult cbor = mockMvc.perform(get("/api/users/" + employeeId)
+                .header("Authorization", "Bearer " + token)
+                .header("If-None-Match", jsonETag)
+                .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().string("ETag", not(jsonETag)))
+                .andReturn();
+
+        mockMvc.perform(get("/api/users/" + employeeId)
+                .header("Authorization", "Bearer " + token)
+                .header("If-None-Match", cbor.getResponse().getHeader("ETag"))
+                .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void getUser_存在しないユーザー() throws Exception {
+        String token = getJwtToken("testadmin@example.com", "password123");
+
+        mockMvc.perform(get("/api/users/999")
+                .header("Authorization", "Bearer " + token))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     void deleteUser_システム管理者権限_正常ケース() throws Exception {
         String token = getJwtToken("testadmin@example.com", "password123");
@@ -368,6 +678,87 @@ class UserControllerTest extends BaseIntegrationTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void patchUser_指定した項目だけ更新() throws Exception {
+        UserPatchRequest request = UserPatchRequest.builder()
+                .email("patched@example.com")
+                .build();
+
+        String token = getJwtToken("testadmin@example.com", "password123");
+        Long employeeId = userRepository.findByUsername("employee").orElseThrow().getId();
+
+        mockMvc.perform(patch("/api/users/" + employeeId)
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andExpect(jsonPath("$.username", is("employee")))
+                .andExpect(jsonPath("$.email", is("patched@example.com")))
+                .andExpect(jsonPath("$.roleNames[0]", is("EMPLOYEE")));
+    }
+
+    @Test
+    void patchUser_ロールの差分更新() throws Exception {
+        UserPatchRequest request = UserPatchRequest.builder()
+                .roleNames(Set.of("EMPLOYEE", "USER_ADMIN"))
+                .build();
+
+        String token = getJwtToken("testadmin@example.com", "password123");
+        Long employeeId = userRepository.findByUsername("employee").orElseThrow().getId();
+
+        mockMvc.perform(patch("/api/users/" + employeeId)
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.roleNames", containsInAnyOrder("EMPLOYEE", "USER_ADMIN")));
+    }
+
+    @Test
+    void patchUser_If_Matchが古ければ409() throws Exception {
+        String token = getJwtToken("testadmin@example.com", "password123");
+        Long employeeId = userRepository.findByUsername("employee").orElseThrow().getId();
+
+        String eTag = mockMvc.perform(get("/api/users/" + employeeId)
+                .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        // 1回目はGETで取得したETagと一致するので成功し、バージョンが進む
+        mockMvc.perform(patch("/api/users/" + employeeId)
+                .header("Authorization", "Bearer " + token)
+                .header("If-Match", eTag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(UserPatchRequest.builder().username("first_edit").build())))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(eTag)));
+
+        // 2回目は同じETagを使うため競合
+        mockMvc.perform(patch("/api/users/" + employeeId)
+                .header("Authorization", "Bearer " + token)
+                .header("If-Match", eTag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(UserPatchRequest.builder().username("second_edit").build())))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void patchUser_重複エラー_ユーザー名() throws Exception {
+        UserPatchRequest request = UserPatchRequest.builder()
+                .username("testadmin")
+                .build();
+
+        String token = getJwtToken("testadmin@example.com", "password123");
+        Long employeeId = userRepository.findByUsername("employee").orElseThrow().getId();
+
+        mockMvc.perform(patch("/api/users/" + employeeId)
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+    }
+
     private String getJwtToken(String email, String password) throws Exception {
         LoginRequest loginRequest = new LoginRequest();
         loginRequest.setEmail(email);
@@ -3,20 +3,25 @@ package carametal.practice.controller;
 import carametal.practice.base.BaseIntegrationTest;
 import carametal.practice.entity.Role;
 import carametal.practice.entity.User;
+import carametal.practice.infrastructure.UserSearchEngine;
 import carametal.practice.repository.RoleRepository;
+import carametal.practice.repository.UserDirectoryRepository;
 import carametal.practice.repository.UserRepository;
 import net.datafaker.Faker;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import carametal.practice.dto.LoginRequest;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
@@ -40,9 +45,18 @@ class UserSearchControllerTest extends BaseIntegrationTest {
     @Autowired
     private RoleRepository roleRepository;
 
+    @Autowired
+    private UserDirectoryRepository userDirectoryRepository;
+
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserSearchEngine userSearchEngine;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -318,6 +332,99 @@ class UserSearchControllerTest extends BaseIntegrationTest {
                 .andExpect(jsonPath("$.sort.sorted", is(true)));
     }
 
+    @Test
+    void searchUsers_読み取りモデルを検索() throws Exception {
+        userDirectoryRepository.refresh(userRepository.findAll().stream().map(User::getId).toList());
+        String token = getJwtToken(systemAdminUser.getEmail(), testPassword);
+
+        mockMvc.perform(get("/api/users/search")
+                .header("Authorization", "Bearer " + token)
+                .param("username", searchableLastName)
+                .param("email", commonDomain)
+                .param("sort", "username")
+                .param("source", "DIRECTORY"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(2)))
+                .andExpect(jsonPath("$.totalElements").value(2))
+                .andExpect(jsonPath("$.content[*].usernameLower", everyItem(containsString(searchableLastName))))
+                .andExpect(jsonPath("$.content[*].roleNames[0]", everyItem(is("EMPLOYEE"))));
+    }
+
+    @Test
+    void searchUsers_変更がなければ304() throws Exception {
+        String token = getJwtToken(systemAdminUser.getEmail(), testPassword);
+
+        MvcResult result = mockMvc.perform(get("/api/users/search")
+                .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", startsWith("W/")))
+                .andReturn();
+        String eTag = result.getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/users/search")
+                .header("Authorization", "Bearer " + token)
+                .header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void searchUsers_起動後最初の変更でETagが変わる() throws Exception {
+        String token = getJwtToken(systemAdminUser.getEmail(), testPassword);
+        // 一度もnextvalしていない状態(起動直後)に戻す
+        jdbcTemplate.queryForObject("SELECT setval('user_directory_version_seq', 1, false)", Long.class);
+
+        String eTag = mockMvc.perform(get("/api/users/search")
+                .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        userDirectoryRepository.incrementVersion();
+
+        mockMvc.perform(get("/api/users/search")
+                .header("Authorization", "Bearer " + token)
+                .header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(eTag)));
+    }
+
+    @Test
+    void searchUsers_期限を超えると503() throws Exception {
+        String token = getJwtToken(systemAdminUser.getEmail(), testPassword);
+        Duration original = (Duration) ReflectionTestUtils.getField(userSearchEngine, "deadline");
+        ReflectionTestUtils.setField(userSearchEngine, "deadline", Duration.ofNanos(1));
+        try {
+            mockMvc.perform(get("/api/users/search")
+                    .header("Authorization", "Bearer " + token))
+                    .andExpect(status().isServiceUnavailable());
+        } finally {
+            ReflectionTestUtils.setField(userSearchEngine, "deadline", original);
+        }
+    }
+
+    @Test
+    void searchUsers_インデックスのない列でのソートはエラー() throws Exception {
+        String token = getJwtToken(systemAdminUser.getEmail(), testPassword);
+
+        mockMvc.perform(get("/api/users/search")
+                .header("Authorization", "Bearer " + token)
+                .param("sort", "password"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void searchUsers_不正なソート方向やページ指定はエラー() throws Exception {
+        String token = getJwtToken(systemAdminUser.getEmail(), testPassword);
+
+        mockMvc.perform(get("/api/users/search")
+                .header("Authorization", "Bearer " + token)
+                .param("direction", "SIDEWAYS"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/users/search")
+                .header("Authorization", "Bearer " + token)
+                .param("size", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void searchUsers_デフォルトパラメータ() throws Exception {
         String token = getJwtToken(systemAdminUser.getEmail(), testPassword);
@@ -11,6 +11,7 @@ import carametal.practice.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.test.context.jdbc.Sql;
 
 import java.util.Set;
@@ -61,7 +62,7 @@ class UserDomainServiceTest extends BaseIntegrationTest {
     }
     
     @Test
-    void createUser_ユーザー名重複でエラー() {
+    void createUser_重複チェックは挿入時のDB制約に委ねる() {
         // Given - testadminは既存ユーザー
         Username username = new Username("testadmin");
         Email email = new Email("new@example.com");
@@ -69,33 +70,51 @@ class UserDomainServiceTest extends BaseIntegrationTest {
         Set<Role> roles = Set.of(employeeRole);
         Long createdBy = 1L;
         
-        // When & Then
-        IllegalArgumentException exception = assertThrows(
-                IllegalArgumentException.class,
-                () -> userDomainService.createUser(username, email, password, roles, createdBy)
+        // When - 作成時点では問い合わせない
+        User result = userDomainService.createUser(username, email, password, roles, createdBy);
+        
+        // Then - 保存時に一意制約違反となり、ドメインエラーに変換される
+        DataIntegrityViolationException violation = assertThrows(
+                DataIntegrityViolationException.class,
+                () -> userRepository.saveAndFlush(result)
         );
+        RuntimeException exception = userDomainService.translateUniqueViolation(violation, username, email);
         
+        assertInstanceOf(IllegalArgumentException.class, exception);
         assertTrue(exception.getMessage().contains("Username already exists"));
+        assertFalse(exception.getMessage().contains("Email already exists"));
     }
     
     @Test
-    void createUser_メール重複でエラー() {
-        // Given - testadmin@example.comは既存メール
+    void translateUniqueViolation_メール重複でエラー() {
+        // Given
         Username username = new Username("newuser");
         Email email = new Email("testadmin@example.com");
-        Password password = new Password("password123");
-        Set<Role> roles = Set.of(employeeRole);
-        Long createdBy = 1L;
+        DataIntegrityViolationException violation = new DataIntegrityViolationException(
+                "duplicate key value violates unique constraint \"uk_users_email\"");
         
-        // When & Then
-        IllegalArgumentException exception = assertThrows(
-                IllegalArgumentException.class,
-                () -> userDomainService.createUser(username, email, password, roles, createdBy)
-        );
+        // When
+        RuntimeException exception = userDomainService.translateUniqueViolation(violation, username, email);
         
+        // Then
+        assertInstanceOf(IllegalArgumentException.class, exception);
         assertTrue(exception.getMessage().contains("Email already exists"));
     }
     
+    @Test
+    void translateUniqueViolation_他の制約違反はそのまま() {
+        // Given
+        DataIntegrityViolationException violation = new DataIntegrityViolationException(
+                "null value in column \"password\" violates not-null constraint");
+        
+        // When
+        RuntimeException exception = userDomainService.translateUniqueViolation(
+                violation, new Username("newuser"), new Email("new@example.com"));
+        
+        // Then
+        assertSame(violation, exception);
+    }
+    
     @Test
     void publishUserCreatedEvent_正常ケース() {
         // Given
@@ -172,6 +191,27 @@ class UserDomainServiceTest extends BaseIntegrationTest {
         assertTrue(exception.getMessage().contains("Username already exists"));
     }
     
+    @Test
+    void updateUser_ユーザー名とメールの重複をまとめて報告() {
+        // Given - 既存のemployeeユーザーを取得
+        User existingUser = userRepository.findByUsername("employee").orElseThrow();
+        
+        // testadminのユーザー名とuseradminのメールアドレスに変更しようとする
+        Username duplicateUsername = new Username("testadmin");
+        Email duplicateEmail = new Email("useradmin@example.com");
+        Set<Role> newRoles = Set.of(employeeRole);
+        Long updatedBy = 2L;
+        
+        // When & Then
+        IllegalArgumentException exception = assertThrows(
+                IllegalArgumentException.class,
+                () -> userDomainService.updateUser(existingUser, duplicateUsername, duplicateEmail, newRoles, updatedBy)
+        );
+        
+        assertTrue(exception.getMessage().contains("Username already exists"));
+        assertTrue(exception.getMessage().contains("Email already exists"));
+    }
+    
     @Test
     void publishUserDeletedEvent_正常ケース() {
         // Given
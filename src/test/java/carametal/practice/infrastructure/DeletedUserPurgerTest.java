@@ -0,0 +1,62 @@
+package carametal.practice.infrastructure;
+
+import carametal.practice.application.UserApplicationService;
+import carametal.practice.base.BaseIntegrationTest;
+import carametal.practice.entity.User;
+import carametal.practice.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Sql("/test-data.sql")
+class DeletedUserPurgerTest extends BaseIntegrationTest {
+
+    @Autowired
+    private DeletedUserPurger deletedUserPurger;
+
+    @Autowired
+    private UserApplicationService userApplicationService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void purgeDeletedBefore_論理削除した行だけを物理削除する() {
+        // Given
+        User currentUser = userRepository.findByUsername("testadmin").orElseThrow();
+        Long employeeId = userRepository.findByUsername("employee").orElseThrow().getId();
+        Long userAdminId = userRepository.findByUsername("useradmin").orElseThrow().getId();
+        userApplicationService.deleteUser(employeeId, currentUser);
+        userApplicationService.deleteUser(userAdminId, currentUser);
+
+        // When - 保持期間内の行は残す
+        assertEquals(0, deletedUserPurger.purgeDeletedBefore(LocalDateTime.now().minusHours(1)));
+        // 1件ずつのバッチに分けても全件削除される
+        ReflectionTestUtils.setField(deletedUserPurger, "batchSize", 1);
+        int purged;
+        try {
+            purged = deletedUserPurger.purgeDeletedBefore(LocalDateTime.now().plusMinutes(1));
+        } finally {
+            ReflectionTestUtils.setField(deletedUserPurger, "batchSize", 1000);
+        }
+
+        // Then
+        assertEquals(2, purged);
+        assertEquals(0, count("SELECT COUNT(*) FROM users WHERE user_id IN (?, ?)", employeeId, userAdminId));
+        assertEquals(0, count("SELECT COUNT(*) FROM user_roles WHERE user_id IN (?, ?)", employeeId, userAdminId));
+        assertEquals(1, count("SELECT COUNT(*) FROM users WHERE user_id = ?", currentUser.getId()));
+    }
+
+    private int count(String sql, Object... args) {
+        return jdbcTemplate.queryForObject(sql, Integer.class, args);
+    }
+}
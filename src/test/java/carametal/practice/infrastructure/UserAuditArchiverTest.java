@@ -0,0 +1,172 @@
+package carametal.practice.infrastructure;
+
+import carametal.practice.base.BaseIntegrationTest;
+import carametal.practice.dto.AuditEventPageResponse;
+import carametal.practice.dto.AuditEventResponse;
+import carametal.practice.entity.UserAuditEvent;
+import carametal.practice.repository.UserAuditEventJdbcRepository;
+import carametal.practice.repository.UserAuditPartitionRepository;
+import carametal.practice.repository.UserRepository;
+import carametal.practice.service.UserAuditService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * パーティションの切り離し・削除はテストトランザクションと一緒にロールバックされる。
+ * セグメントは一時ディレクトリに書く。
+ */
+@Sql("/test-data.sql")
+class UserAuditArchiverTest extends BaseIntegrationTest {
+
+    private static final YearMonth ARCHIVED_MONTH = YearMonth.of(2036, 1);
+
+    @Autowired
+    private UserAuditArchiver userAuditArchiver;
+
+    @Autowired
+    private UserAuditArchive userAuditArchive;
+
+    @Autowired
+    private UserAuditPartitionManager userAuditPartitionManager;
+
+    @Autowired
+    private UserAuditPartitionRepository userAuditPartitionRepository;
+
+    @Autowired
+    private UserAuditService userAuditService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    private Path directory;
+
+    private Path originalDirectory;
+    private Long adminId;
+    private Long employeeId;
+
+    @BeforeEach
+    void setUp() {
+        originalDirectory = userAuditArchive.directory();
+        ReflectionTestUtils.setField(userAuditArchive, "directory", directory);
+        adminId = userRepository.findByUsername("testadmin").orElseThrow().getId();
+        employeeId = userRepository.findByUsername("employee").orElseThrow().getId();
+
+        userAuditPartitionManager.maintain(ARCHIVED_MONTH.atDay(1));
+        insertAuditEvent("USER_CREATED", employeeId, LocalDateTime.of(2036, 1, 10, 9, 0));
+        insertAuditEvent("USER_UPDATED", employeeId, LocalDateTime.of(2036, 1, 20, 9, 0));
+        insertAuditEvent("USER_UPDATED", adminId, LocalDateTime.of(2036, 1, 31, 23, 59));
+        insertAuditEvent("USER_UPDATED", employeeId, LocalDateTime.of(2036, 2, 1, 0, 0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.setField(userAuditArchive, "directory", originalDirectory);
+    }
+
+    @Test
+    void archive_期限を過ぎた月をセグメントへ移しパーティションを削除する() {
+        // When - 2036-02-01より前に終わる月(2036-01)だけが対象
+        int archived = userAuditArchiver.archive(LocalDate.of(2036, 5, 1));
+
+        // Then
+        assertEquals(1, archived);
+        assertTrue(Files.isRegularFile(directory.resolve("audit-2036-01.seg")));
+        assertFalse(userAuditPartitionRepository.findMonthlyPartitions().contains(ARCHIVED_MONTH));
+        assertTrue(userAuditPartitionRepository.findMonthlyPartitions().contains(YearMonth.of(2036, 2)));
+
+        List<UserAuditArchive.Segment> segments = userAuditArchive.findSegments();
+        assertEquals(1, segments.size());
+        assertEquals(3, segments.get(0).rows());
+        assertEquals(LocalDateTime.of(2036, 1, 10, 9, 0), segments.get(0).from());
+    }
+
+    @Test
+    void archive_保持期間を過ぎたセグメントを削除する() {
+        userAuditArchiver.archive(LocalDate.of(2036, 5, 1));
+        assertTrue(Files.isRegularFile(directory.resolve("audit-2036-01.seg")));
+
+        // 保持期間(P12M)を過ぎた後の実行でセグメントも削除される。2036-02はまだ保持期間内
+        userAuditArchiver.archive(LocalDate.of(2037, 2, 1));
+
+        assertFalse(Files.exists(directory.resolve("audit-2036-01.seg")));
+        assertEquals(List.of(YearMonth.of(2036, 2)), userAuditArchive.findMonths());
+    }
+
+    @Test
+    void findAuditEvents_detailsPathの期間がアーカイブにかかる場合はエラー() {
+        userAuditArchiver.archive(LocalDate.of(2036, 5, 1));
+
+        UserAuditEventJdbcRepository.Filter overlapping = new UserAuditEventJdbcRepository.Filter(
+                null, employeeId, null, null, null, null, "$.oldRoles");
+        assertThrows(IllegalArgumentException.class, () -> userAuditService.findAuditEvents(overlapping, null, 10));
+
+        // アーカイブより後の期間だけならテーブルから検索できる
+        UserAuditEventJdbcRepository.Filter liveOnly = new UserAuditEventJdbcRepository.Filter(
+                null, employeeId, null, LocalDateTime.of(2036, 2, 1, 0, 0), null, null, "$.oldRoles");
+        assertNotNull(userAuditService.findAuditEvents(liveOnly, null, 10));
+    }
+
+    @Test
+    void findAuditEvents_テーブルとアーカイブをまたいで新しい順に取得する() {
+        userAuditArchiver.archive(LocalDate.of(2036, 5, 1));
+
+        UserAuditEventJdbcRepository.Filter filter = new UserAuditEventJdbcRepository.Filter(
+                null, employeeId, null, LocalDateTime.of(2036, 1, 1, 0, 0), null);
+        AuditEventPageResponse first = userAuditService.findAuditEvents(filter, null, 2);
+        AuditEventPageResponse second = userAuditService.findAuditEvents(filter, first.getNextCursor(), 2);
+
+        // 2036-02はテーブル、2036-01はアーカイブから読まれる
+        assertEquals(List.of(LocalDateTime.of(2036, 2, 1, 0, 0), LocalDateTime.of(2036, 1, 20, 9, 0)),
+                first.getEvents().stream().map(AuditEventResponse::getCreatedAt).toList());
+        assertEquals(List.of(LocalDateTime.of(2036, 1, 10, 9, 0)),
+                second.getEvents().stream().map(AuditEventResponse::getCreatedAt).toList());
+        assertNull(second.getNextCursor());
+        assertEquals("employee", second.getEvents().get(0).getTargetUsername());
+        assertEquals("testadmin", second.getEvents().get(0).getUsername());
+    }
+
+    @Test
+    void findAuditEvents_パーティション削除前の重複はIDで除く() {
+        // アーカイブの書き込み後、パーティションの削除前に相当する状態を作る
+        userAuditArchiver.archive(LocalDate.of(2036, 5, 1));
+        userAuditPartitionManager.maintain(ARCHIVED_MONTH.atDay(1));
+        UserAuditEventJdbcRepository.Filter filter = new UserAuditEventJdbcRepository.Filter(
+                null, null, null, LocalDateTime.of(2036, 1, 1, 0, 0), LocalDateTime.of(2036, 2, 1, 0, 0));
+        AuditEventPageResponse archivedOnly = userAuditService.findAuditEvents(filter, null, 10);
+        archivedOnly.getEvents().forEach(event -> jdbcTemplate.update(
+                "INSERT INTO user_audit_events (id, user_id, action, target_user_id, created_at) VALUES (?, ?, ?, ?, ?)",
+                event.getId(), event.getUserId(), event.getAction().getCode(), event.getTargetUserId(),
+                Timestamp.valueOf(event.getCreatedAt())));
+
+        AuditEventPageResponse page = userAuditService.findAuditEvents(filter, null, 10);
+
+        assertEquals(3, page.getEvents().size());
+        assertEquals(archivedOnly.getEvents().stream().map(AuditEventResponse::getId).toList(),
+                page.getEvents().stream().map(AuditEventResponse::getId).toList());
+    }
+
+    private void insertAuditEvent(String action, Long targetUserId, LocalDateTime createdAt) {
+        jdbcTemplate.update("INSERT INTO user_audit_events (user_id, action, target_user_id, created_at) VALUES (?, ?, ?, ?)",
+                adminId, UserAuditEvent.AuditAction.valueOf(action).getCode(), targetUserId, Timestamp.valueOf(createdAt));
+    }
+}
@@ -0,0 +1,113 @@
+package carametal.practice.infrastructure;
+
+import carametal.practice.base.BaseIntegrationTest;
+import carametal.practice.repository.UserAuditPartitionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DDLもテストトランザクションと一緒にロールバックされる。
+ * 起動時に作成された現在付近のパーティションと重ならないよう、遠い将来の日付で検証する。
+ */
+class UserAuditPartitionManagerTest extends BaseIntegrationTest {
+
+    @Autowired
+    private UserAuditPartitionManager userAuditPartitionManager;
+
+    @Autowired
+    private UserAuditPartitionRepository userAuditPartitionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void maintain_先の月のパーティションを作成し期限切れを削除する() {
+        // When
+        userAuditPartitionManager.maintain(LocalDate.of(2031, 5, 10));
+
+        // Then - 起動時に作成されたパーティションは保持期間(12ヶ月)を過ぎているため削除される
+        assertEquals(List.of(YearMonth.of(2031, 5), YearMonth.of(2031, 6), YearMonth.of(2031, 7), YearMonth.of(2031, 8)),
+                userAuditPartitionRepository.findMonthlyPartitions());
+        assertNull(jdbcTemplate.queryForObject("SELECT to_regclass(?)::text", String.class,
+                UserAuditPartitionRepository.partitionName(YearMonth.from(LocalDate.now()))));
+    }
+
+    @Test
+    void maintain_デフォルトパーティションに入った行は作成したパーティションへ移す() {
+        // Given
+        insertAuditEvent(LocalDateTime.of(2032, 3, 15, 12, 0));
+        assertEquals("user_audit_events_default", partitionOfAuditEvents());
+
+        // When
+        userAuditPartitionManager.maintain(LocalDate.of(2032, 3, 1));
+
+        // Then
+        assertEquals("user_audit_events_y2032m03", partitionOfAuditEvents());
+    }
+
+    @Test
+    void maintain_デフォルトパーティションに残った保持期間切れの行も削除する() {
+        // Given - パーティションを作成しないまま月が過ぎ、デフォルトパーティションに残った行
+        insertAuditEvent(LocalDateTime.of(2037, 7, 15, 12, 0));
+
+        // When
+        userAuditPartitionManager.maintain(LocalDate.of(2039, 1, 1));
+
+        // Then - 月毎のパーティションへ移してから期限切れとして削除される
+        assertEquals(List.of(), userAuditPartitionRepository.findDefaultPartitionMonths());
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM user_audit_events WHERE created_at = TIMESTAMP '2037-07-15 12:00'", Integer.class));
+        assertNull(jdbcTemplate.queryForObject("SELECT to_regclass('user_audit_events_y2037m07')::text", String.class));
+    }
+
+    @Test
+    void maintain_DETACHでは期限切れのパーティションをテーブルとして残す() {
+        userAuditPartitionManager.maintain(LocalDate.of(2033, 1, 1));
+        ReflectionTestUtils.setField(userAuditPartitionManager, "retentionAction",
+                UserAuditPartitionManager.RetentionAction.DETACH);
+        try {
+            userAuditPartitionManager.maintain(LocalDate.of(2034, 6, 1));
+        } finally {
+            ReflectionTestUtils.setField(userAuditPartitionManager, "retentionAction",
+                    UserAuditPartitionManager.RetentionAction.DROP);
+        }
+
+        assertFalse(userAuditPartitionRepository.findMonthlyPartitions().contains(YearMonth.of(2033, 1)));
+        assertEquals("user_audit_events_y2033m01", jdbcTemplate.queryForObject(
+                "SELECT to_regclass('user_audit_events_y2033m01')::text", String.class));
+    }
+
+    @Test
+    void created_atで絞り込むクエリは該当するパーティションだけを読む() {
+        userAuditPartitionManager.maintain(LocalDate.of(2035, 1, 1));
+
+        String plan = String.join("\n", jdbcTemplate.queryForList("""
+                EXPLAIN SELECT * FROM user_audit_events
+                WHERE created_at >= TIMESTAMP '2035-02-01' AND created_at < TIMESTAMP '2035-03-01'
+                """, String.class));
+
+        assertTrue(plan.contains("user_audit_events_y2035m02"), plan);
+        assertFalse(plan.contains("user_audit_events_y2035m01"), plan);
+        assertFalse(plan.contains("user_audit_events_y2035m03"), plan);
+        assertFalse(plan.contains("user_audit_events_default"), plan);
+    }
+
+    private void insertAuditEvent(LocalDateTime createdAt) {
+        jdbcTemplate.update("INSERT INTO user_audit_events (user_id, action, target_user_id, created_at) VALUES (1, 1, 1, ?)",
+                Timestamp.valueOf(createdAt));
+    }
+
+    private String partitionOfAuditEvents() {
+        return jdbcTemplate.queryForObject("SELECT tableoid::regclass::text FROM user_audit_events WHERE created_at = TIMESTAMP '2032-03-15 12:00'", String.class);
+    }
+}
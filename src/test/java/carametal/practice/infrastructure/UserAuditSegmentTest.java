@@ -0,0 +1,159 @@
+package carametal.practice.infrastructure;
+
+import carametal.practice.entity.UserAuditEvent;
+import carametal.practice.repository.UserAuditEventJdbcRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * セグメントの書き込みと読み込みの往復を検証する(DBを使わない)。
+ * 複数ブロックにまたがるよう、ブロックの行数より多く書く。
+ */
+class UserAuditSegmentTest {
+
+    private static final int ROWS = UserAuditSegmentWriter.BLOCK_ROWS * 3 + 17;
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final UserAuditEventJdbcRepository.Filter ALL =
+            new UserAuditEventJdbcRepository.Filter(null, null, null, null, null);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    private Path directory;
+
+    private Path segment;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        segment = directory.resolve("audit-2024-01.seg");
+        try (UserAuditSegmentWriter writer = new UserAuditSegmentWriter(segment, objectMapper)) {
+            for (int i = 0; i < ROWS; i++) {
+                writer.append(event(i));
+            }
+            writer.finish();
+        }
+    }
+
+    @Test
+    void search_カーソルで全件を新しい順に読み戻せる() throws IOException {
+        UserAuditSegmentReader reader = new UserAuditSegmentReader(segment, objectMapper);
+        assertEquals(ROWS, reader.rows());
+        assertEquals(BASE_TIME, reader.from());
+
+        List<UserAuditEvent> all = new ArrayList<>();
+        UserAuditEventJdbcRepository.Cursor cursor = null;
+        List<UserAuditEvent> page;
+        do {
+            page = reader.search(ALL, cursor, 500);
+            all.addAll(page);
+            if (!page.isEmpty()) {
+                UserAuditEvent last = page.get(page.size() - 1);
+                cursor = new UserAuditEventJdbcRepository.Cursor(last.getCreatedAt(), last.getId());
+            }
+        } while (page.size() == 500);
+
+        assertEquals(ROWS, all.size());
+        for (int i = 0; i < ROWS; i++) {
+            UserAuditEvent expected = event(ROWS - 1 - i);
+            UserAuditEvent actual = all.get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getCreatedAt(), actual.getCreatedAt());
+            assertEquals(expected.getAction(), actual.getAction());
+            assertEquals(expected.getUserId(), actual.getUserId());
+            assertEquals(expected.getTargetUserId(), actual.getTargetUserId());
+            assertEquals(expected.getIpAddress(), actual.getIpAddress());
+            assertEquals(expected.getDetails(), actual.getDetails());
+        }
+    }
+
+    @Test
+    void search_対象ユーザーと期間と操作種別で絞り込む() throws IOException {
+        UserAuditSegmentReader reader = new UserAuditSegmentReader(segment, objectMapper);
+
+        List<UserAuditEvent> byTarget = reader.search(
+                new UserAuditEventJdbcRepository.Filter(null, 7L, null, null, null), null, ROWS);
+        assertEquals(ROWS / 100 + (ROWS % 100 > 7 ? 1 : 0), byTarget.size());
+        byTarget.forEach(event -> assertEquals(7L, event.getTargetUserId()));
+
+        // 存在しない対象ユーザーはブルームフィルタでほぼ全ブロックを読み飛ばし、結果は空
+        assertTrue(reader.search(new UserAuditEventJdbcRepository.Filter(null, 999_999L, null, null, null), null, ROWS).isEmpty());
+
+        List<UserAuditEvent> inRange = reader.search(new UserAuditEventJdbcRepository.Filter(
+                null, null, UserAuditEvent.AuditAction.USER_UPDATED, BASE_TIME.plusMinutes(100), BASE_TIME.plusMinutes(200)),
+                null, ROWS);
+        assertEquals(50, inRange.size());
+        inRange.forEach(event -> {
+            assertEquals(UserAuditEvent.AuditAction.USER_UPDATED, event.getAction());
+            assertFalse(event.getCreatedAt().isBefore(BASE_TIME.plusMinutes(100)));
+            assertTrue(event.getCreatedAt().isBefore(BASE_TIME.plusMinutes(200)));
+        });
+    }
+
+    @Test
+    void search_detailsの包含で絞り込む() throws IOException {
+        UserAuditSegmentReader reader = new UserAuditSegmentReader(segment, objectMapper);
+
+        List<UserAuditEvent> byUsername = reader.search(new UserAuditEventJdbcRepository.Filter(
+                null, null, null, null, null, "{\"username\": \"user5\"}", null), null, ROWS);
+        assertEquals(List.of(1_005L), byUsername.stream().map(UserAuditEvent::getId).toList());
+
+        // jsonbと同じく数値は表記によらず値で比較し、detailsがない行は一致しない
+        List<UserAuditEvent> byIndex = reader.search(new UserAuditEventJdbcRepository.Filter(
+                null, null, null, null, null, "{\"index\": 5.0}", null), null, ROWS);
+        assertEquals(List.of(1_005L), byIndex.stream().map(UserAuditEvent::getId).toList());
+        assertTrue(reader.search(new UserAuditEventJdbcRepository.Filter(
+                null, null, null, null, null, "{\"index\": 4}", null), null, ROWS).isEmpty());
+    }
+
+    @Test
+    void search_複数の領域に分けてマップしても同じ結果を返す() throws IOException {
+        UserAuditSegmentReader whole = new UserAuditSegmentReader(segment, objectMapper);
+        // 1ブロックずつ別の領域になるよう上限を小さくする(2GBを超えるセグメントの代わり)
+        UserAuditSegmentReader split = new UserAuditSegmentReader(segment, objectMapper, 1);
+
+        assertEquals(whole.rows(), split.rows());
+        assertEquals(ids(whole.search(ALL, null, ROWS)), ids(split.search(ALL, null, ROWS)));
+        UserAuditEventJdbcRepository.Filter byTarget = new UserAuditEventJdbcRepository.Filter(null, 7L, null, null, null);
+        assertEquals(ids(whole.search(byTarget, null, ROWS)), ids(split.search(byTarget, null, ROWS)));
+    }
+
+    @Test
+    void finish前に閉じたセグメントは残らない() throws IOException {
+        Path aborted = directory.resolve("audit-2024-02.seg");
+        try (UserAuditSegmentWriter writer = new UserAuditSegmentWriter(aborted, objectMapper)) {
+            writer.append(event(0));
+        }
+
+        try (var files = Files.list(directory)) {
+            assertEquals(List.of(segment), files.toList());
+        }
+    }
+
+    private static UserAuditEvent event(int i) {
+        UserAuditEvent event = new UserAuditEvent();
+        event.setId(1_000L + i);
+        event.setCreatedAt(BASE_TIME.plusMinutes(i));
+        event.setUserId(i % 3 == 0 ? null : 1L);
+        event.setAction(i % 2 == 0 ? UserAuditEvent.AuditAction.USER_CREATED : UserAuditEvent.AuditAction.USER_UPDATED);
+        event.setTargetUserId((long) (i % 100));
+        event.setIpAddress(i % 5 == 0 ? null : "192.0.2." + (i % 250));
+        event.setDetails(i % 4 == 0 ? null : Map.of("index", i, "username", "user" + i));
+        return event;
+    }
+
+    private List<Long> ids(List<UserAuditEvent> events) {
+        return events.stream().map(UserAuditEvent::getId).toList();
+    }
+}
@@ -0,0 +1,192 @@
+package carametal.practice.infrastructure;
+
+import carametal.practice.entity.UserAuditEvent;
+import carametal.practice.service.UserAuditService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DBを使わず、書き込み先を記録用のスタブに差し替えてキューの動作を検証する。
+ */
+class UserAuditWriterTest {
+
+    @Test
+    void submit_短時間に積まれたバッチは1回の書き込みにまとめられる() throws Exception {
+        RecordingAuditService auditService = new RecordingAuditService();
+        UserAuditWriter writer = writer(auditService, UserAuditWriter.OverflowPolicy.BLOCK, 100, Duration.ofMillis(500));
+
+        List<CompletableFuture<Void>> futures = List.of(
+                writer.submit(events(3)), writer.submit(events(3)), writer.submit(events(4)));
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(10), auditService.flushSizes());
+        UserAuditWriter.Metrics metrics = writer.metrics();
+        assertEquals(10, metrics.writtenEvents());
+        assertEquals(1, metrics.flushes());
+        assertEquals(0, metrics.queuedEvents());
+        writer.shutdown();
+    }
+
+    @Test
+    void flush_まとめた書き込みが失敗したら呼び出し単位で書き直す() throws Exception {
+        RecordingAuditService auditService = new RecordingAuditService();
+        UserAuditWriter writer = writer(auditService, UserAuditWriter.OverflowPolicy.BLOCK, 100, Duration.ofMillis(500));
+
+        CompletableFuture<Void> first = writer.submit(events(3));
+        CompletableFuture<Void> poisoned = writer.submit(List.of(poisonEvent()));
+        CompletableFuture<Void> last = writer.submit(events(2));
+        CompletableFuture.allOf(first, last).get(5, TimeUnit.SECONDS);
+
+        // 不正な行を含む呼び出しだけが失敗し、同じ書き込みにまとめられた他の呼び出しは成功する
+        ExecutionException e = assertThrows(ExecutionException.class, () -> poisoned.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertEquals(List.of(3, 2), auditService.flushSizes());
+        UserAuditWriter.Metrics metrics = writer.metrics();
+        assertEquals(5, metrics.writtenEvents());
+        assertEquals(2, metrics.failedFlushes());
+        assertEquals(0, metrics.queuedEvents());
+        writer.shutdown();
+    }
+
+    @Test
+    void submit_完了は書き込みスレッド以外で通知される() throws Exception {
+        RecordingAuditService auditService = new RecordingAuditService();
+        auditService.block();
+        UserAuditWriter writer = writer(auditService, UserAuditWriter.OverflowPolicy.BLOCK, 100, Duration.ofMillis(10));
+
+        CompletableFuture<String> callbackThread = writer.submit(events(1))
+                .thenApply(ignored -> Thread.currentThread().getName());
+        auditService.unblock();
+
+        assertNotEquals("user-audit-writer", callbackThread.get(5, TimeUnit.SECONDS));
+        writer.shutdown();
+    }
+
+    @Test
+    void submit_REJECTでは容量を超えた分を拒否する() throws Exception {
+        RecordingAuditService auditService = new RecordingAuditService();
+        auditService.block();
+        UserAuditWriter writer = writer(auditService, UserAuditWriter.OverflowPolicy.REJECT, 5, Duration.ofMillis(10));
+
+        CompletableFuture<Void> accepted = writer.submit(events(5));
+        CompletableFuture<Void> rejected = writer.submit(events(1));
+
+        ExecutionException e = assertThrows(ExecutionException.class, rejected::get);
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        assertEquals(1, writer.metrics().rejectedBatches());
+
+        auditService.unblock();
+        accepted.get(5, TimeUnit.SECONDS);
+        writer.shutdown();
+    }
+
+    @Test
+    void shutdown_キューに残った分を書き込んでから終了する() throws Exception {
+        RecordingAuditService auditService = new RecordingAuditService();
+        UserAuditWriter writer = writer(auditService, UserAuditWriter.OverflowPolicy.BLOCK, 1_000, Duration.ofSeconds(1));
+
+        CompletableFuture<Void> future = writer.submit(events(7));
+        writer.shutdown();
+
+        assertTrue(future.isDone());
+        assertFalse(future.isCompletedExceptionally());
+        assertEquals(7, auditService.flushSizes().stream().mapToInt(Integer::intValue).sum());
+        assertTrue(writer.submit(events(1)).isCompletedExceptionally());
+    }
+
+    @Test
+    void bindTo_キューの状態をメトリクスとして公開する() throws Exception {
+        RecordingAuditService auditService = new RecordingAuditService();
+        auditService.block();
+        UserAuditWriter writer = writer(auditService, UserAuditWriter.OverflowPolicy.BLOCK, 100, Duration.ofMillis(10));
+        MeterRegistry registry = new SimpleMeterRegistry();
+        writer.bindTo(registry);
+
+        // 書き込み中のバッチも、書き込みが終わるまでは積まれた件数に含まれる
+        CompletableFuture<Void> first = writer.submit(events(4));
+        CompletableFuture<Void> second = writer.submit(events(3));
+        assertEquals(7, registry.get("user.audit.writer.queued.events").gauge().value());
+
+        auditService.unblock();
+        CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+        assertEquals(0, registry.get("user.audit.writer.queued.events").gauge().value());
+        assertEquals(7, registry.get("user.audit.writer.written").functionCounter().count());
+        assertEquals(0, registry.get("user.audit.writer.lag").timeGauge().value(TimeUnit.NANOSECONDS));
+        writer.shutdown();
+    }
+
+    private UserAuditWriter writer(UserAuditService auditService, UserAuditWriter.OverflowPolicy overflowPolicy,
+                                   int capacity, Duration flushInterval) {
+        return new UserAuditWriter(auditService, UserAuditWriter.Mode.ASYNC, overflowPolicy,
+                capacity, 1_000, flushInterval, Duration.ofSeconds(1), Duration.ofSeconds(5));
+    }
+
+    private List<UserAuditEvent> events(int count) {
+        List<UserAuditEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            UserAuditEvent event = new UserAuditEvent();
+            event.setUserId(1L);
+            event.setAction(UserAuditEvent.AuditAction.USER_CREATED);
+            event.setTargetUserId((long) i);
+            events.add(event);
+        }
+        return events;
+    }
+
+    private UserAuditEvent poisonEvent() {
+        UserAuditEvent event = events(1).get(0);
+        event.setTargetUserId(RecordingAuditService.POISON_TARGET_USER_ID);
+        return event;
+    }
+
+    static class RecordingAuditService extends UserAuditService {
+
+        // この対象ユーザーIDを含む書き込みは失敗させる(制約違反の行の代わり)
+        static final long POISON_TARGET_USER_ID = -1L;
+
+        private final List<Integer> flushSizes = new CopyOnWriteArrayList<>();
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+
+        RecordingAuditService() {
+            super(null, null, null, null, null);
+        }
+
+        void block() {
+            gate = new CountDownLatch(1);
+        }
+
+        void unblock() {
+            gate.countDown();
+        }
+
+        List<Integer> flushSizes() {
+            return List.copyOf(flushSizes);
+        }
+
+        @Override
+        public void logAll(List<UserAuditEvent> auditEvents) {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (auditEvents.stream().anyMatch(event -> event.getTargetUserId() == POISON_TARGET_USER_ID)) {
+                throw new IllegalStateException("Rejected audit event");
+            }
+            flushSizes.add(auditEvents.size());
+        }
+    }
+}
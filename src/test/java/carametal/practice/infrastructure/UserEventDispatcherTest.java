@@ -0,0 +1,256 @@
+package carametal.practice.infrastructure;
+
+import carametal.practice.domain.event.UserRolesChangedBatchEvent;
+import carametal.practice.domain.event.UserUpdatedEvent;
+import carametal.practice.domain.valueobject.Email;
+import carametal.practice.domain.valueobject.Username;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DBを使わず、記録用の購読者でレーンの振り分けと順序を検証する。
+ */
+class UserEventDispatcherTest {
+
+    @Test
+    void dispatch_同じユーザーのイベントは同じレーンで発生順に届く() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        UserEventDispatcher dispatcher = dispatcher(subscriber, 4, 1000);
+
+        for (int sequence = 0; sequence < 100; sequence++) {
+            for (long userId = 1; userId <= 20; userId++) {
+                dispatcher.dispatch(updated(userId, sequence));
+            }
+        }
+        dispatcher.shutdown();
+
+        assertEquals(20, subscriber.sequences.size());
+        subscriber.sequences.forEach((userId, sequences) ->
+                assertEquals(LongStream.range(0, 100).boxed().toList(), sequences, "user " + userId));
+        subscriber.threads.forEach((userId, threads) -> assertEquals(1, threads.size(), "user " + userId));
+        // 20人のユーザーが複数のレーンに分散する
+        Set<String> allThreads = new HashSet<>();
+        subscriber.threads.values().forEach(allThreads::addAll);
+        assertTrue(allThreads.size() > 1, allThreads.toString());
+        assertEquals(2000, dispatcher.metrics().lanes().stream().mapToLong(UserEventDispatcher.LaneMetrics::dispatched).sum());
+    }
+
+    @Test
+    void dispatch_一括イベントはレーン毎に分割して全員に1回ずつ届く() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        UserEventDispatcher dispatcher = dispatcher(subscriber, 4, 1000);
+        List<Long> userIds = LongStream.rangeClosed(1, 100).boxed().toList();
+
+        dispatcher.dispatch(UserRolesChangedBatchEvent.builder()
+                .changedBy(1L)
+                .roleName("EMPLOYEE")
+                .change(UserRolesChangedBatchEvent.Change.ASSIGNED)
+                .userIds(userIds)
+                .occurredAt(LocalDateTime.now())
+                .build());
+        dispatcher.shutdown();
+
+        List<Long> delivered = new ArrayList<>();
+        subscriber.roleBatches.forEach(batch -> delivered.addAll(batch.getUserIds()));
+        assertEquals(Set.copyOf(userIds), Set.copyOf(delivered));
+        assertEquals(userIds.size(), delivered.size());
+        assertTrue(subscriber.roleBatches.size() > 1 && subscriber.roleBatches.size() <= 4);
+    }
+
+    @Test
+    void dispatch_レーンが満杯の間は呼び出し元を待たせる() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        subscriber.block();
+        UserEventDispatcher dispatcher = dispatcher(subscriber, 1, 1);
+
+        // 1件目は処理中、2件目でキューが埋まり、3件目で待たされる
+        Thread publisher = Thread.ofPlatform().start(() -> {
+            for (int sequence = 0; sequence < 3; sequence++) {
+                dispatcher.dispatch(updated(1L, sequence));
+            }
+        });
+        publisher.join(300);
+        assertTrue(publisher.isAlive());
+        UserEventDispatcher.Metrics metrics = dispatcher.metrics();
+        assertTrue(metrics.backpressureWaits() >= 1);
+        assertEquals(1, metrics.lanes().get(0).queued());
+        assertFalse(metrics.lanes().get(0).lag().isZero());
+
+        subscriber.unblock();
+        publisher.join(5000);
+        dispatcher.shutdown();
+        assertEquals(List.of(0L, 1L, 2L), subscriber.sequences.get(1L));
+    }
+
+    @Test
+    void dispatch_レーンが空かなければ待たずにイベントを捨てて再同期する() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        subscriber.block();
+        UserEventDispatcher dispatcher = dispatcher(subscriber, 1, 1, Duration.ofMillis(100));
+
+        // 購読者が止まったままでも、コミット後の呼び出し元(リクエストのスレッド)はoffer-timeoutで戻る
+        Thread publisher = Thread.ofPlatform().start(() -> {
+            for (int sequence = 0; sequence < 3; sequence++) {
+                dispatcher.dispatch(updated(1L, sequence));
+            }
+            dispatcher.dispatch(updated(2L, 0));
+        });
+        publisher.join(5000);
+        assertFalse(publisher.isAlive());
+        assertEquals(2, dispatcher.metrics().droppedEvents());
+
+        subscriber.unblock();
+        dispatcher.shutdown();
+        assertEquals(List.of(0L, 1L), subscriber.sequences.get(1L));
+        assertEquals(Set.of(1L, 2L), Set.copyOf(subscriber.resynced));
+    }
+
+    @Test
+    void dispatch_購読者が失敗したイベントの対象ユーザーは再同期する() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        subscriber.failingUserIds.add(2L);
+        UserEventDispatcher dispatcher = dispatcher(subscriber, 1, 10);
+
+        dispatcher.dispatch(updated(1L, 0));
+        dispatcher.dispatch(updated(2L, 0));
+        dispatcher.dispatch(updated(3L, 0));
+        dispatcher.shutdown();
+
+        assertEquals(Set.of(1L, 3L), subscriber.sequences.keySet());
+        assertEquals(List.of(2L), subscriber.resynced);
+        assertEquals(1, dispatcher.metrics().lanes().get(0).failed());
+    }
+
+    @Test
+    void shutdown_drain_timeoutまでに配信できなかったイベントの対象ユーザーは再同期する() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        subscriber.block();
+        UserEventDispatcher dispatcher = new UserEventDispatcher(List.of(subscriber), UserEventDispatcher.Mode.ASYNC,
+                1, 10, Duration.ofSeconds(1), Duration.ofMillis(200));
+
+        // 1件目は処理中で止まり、残りの2件がキューに残ったまま終了する
+        for (long userId = 1; userId <= 3; userId++) {
+            dispatcher.dispatch(updated(userId, 0));
+        }
+        dispatcher.shutdown();
+
+        assertEquals(Set.of(2L, 3L), Set.copyOf(subscriber.resynced));
+        assertEquals(2, dispatcher.metrics().droppedEvents());
+        subscriber.unblock();
+    }
+
+    @Test
+    void bindTo_レーン毎の状態をメトリクスとして公開する() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        subscriber.block();
+        UserEventDispatcher dispatcher = dispatcher(subscriber, 1, 10);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        dispatcher.bindTo(registry);
+
+        // 1件目は処理中で止まり、残りの2件がキューに残る
+        for (int sequence = 0; sequence < 3; sequence++) {
+            dispatcher.dispatch(updated(1L, sequence));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (registry.get("user.event.lane.queued").tag("lane", "0").gauge().value() != 2
+                && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, registry.get("user.event.lane.queued").tag("lane", "0").gauge().value());
+        assertTrue(registry.get("user.event.lane.lag").tag("lane", "0").timeGauge().value(TimeUnit.NANOSECONDS) > 0);
+
+        subscriber.unblock();
+        dispatcher.shutdown();
+        assertEquals(3, registry.get("user.event.lane.dispatched").tag("lane", "0").functionCounter().count());
+        assertEquals(0, registry.get("user.event.dispatcher.dropped").functionCounter().count());
+    }
+
+    private UserEventDispatcher dispatcher(UserEventSubscriber subscriber, int lanes, int capacity) {
+        return dispatcher(subscriber, lanes, capacity, Duration.ofSeconds(1));
+    }
+
+    private UserEventDispatcher dispatcher(UserEventSubscriber subscriber, int lanes, int capacity, Duration offerTimeout) {
+        return new UserEventDispatcher(List.of(subscriber), UserEventDispatcher.Mode.ASYNC, lanes, capacity,
+                offerTimeout, Duration.ofSeconds(5));
+    }
+
+    private static UserUpdatedEvent updated(long userId, long sequence) {
+        return UserUpdatedEvent.builder()
+                .userId(userId)
+                .updatedBy(1L)
+                .oldUsername(new Username("user" + userId))
+                .newUsername(new Username("user" + userId))
+                .oldEmail(new Email("user" + userId + "@example.com"))
+                .newEmail(new Email("user" + userId + "@example.com"))
+                .oldRoleNames(Set.of())
+                .newRoleNames(Set.of())
+                .occurredAt(LocalDateTime.of(2025, 1, 1, 0, 0).plusSeconds(sequence))
+                .build();
+    }
+
+    private static class RecordingSubscriber implements UserEventSubscriber {
+
+        private final Map<Long, List<Long>> sequences = new ConcurrentHashMap<>();
+        private final Map<Long, Set<String>> threads = new ConcurrentHashMap<>();
+        private final List<UserRolesChangedBatchEvent> roleBatches = new CopyOnWriteArrayList<>();
+        private final List<Long> resynced = new CopyOnWriteArrayList<>();
+        // このユーザーのイベントは処理に失敗させる
+        private final Set<Long> failingUserIds = ConcurrentHashMap.newKeySet();
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+
+        void block() {
+            gate = new CountDownLatch(1);
+        }
+
+        void unblock() {
+            gate.countDown();
+        }
+
+        @Override
+        public void handleUserUpdatedEvent(UserUpdatedEvent event) {
+            awaitGate();
+            if (failingUserIds.contains(event.getUserId())) {
+                throw new IllegalStateException("Failed to handle user " + event.getUserId());
+            }
+            long sequence = event.getOccurredAt().getSecond() + event.getOccurredAt().getMinute() * 60L;
+            sequences.computeIfAbsent(event.getUserId(), id -> new CopyOnWriteArrayList<>()).add(sequence);
+            threads.computeIfAbsent(event.getUserId(), id -> ConcurrentHashMap.newKeySet())
+                    .add(Thread.currentThread().getName());
+        }
+
+        @Override
+        public void handleUserRolesChangedBatchEvent(UserRolesChangedBatchEvent event) {
+            roleBatches.add(event);
+        }
+
+        @Override
+        public void resyncUsers(Collection<Long> userIds) {
+            resynced.addAll(userIds);
+        }
+
+        private void awaitGate() {
+            try {
+                assertTrue(gate.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
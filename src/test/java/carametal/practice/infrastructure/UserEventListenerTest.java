@@ -8,10 +8,10 @@ import carametal.practice.domain.valueobject.Email;
 import carametal.practice.domain.valueobject.Username;
 import carametal.practice.entity.UserAuditEvent;
 import carametal.practice.repository.UserAuditEventRepository;
-import carametal.practice.service.UserAuditService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.jdbc.Sql;
 
 import java.time.LocalDateTime;
@@ -30,7 +30,10 @@ class UserEventListenerTest extends BaseIntegrationTest {
     private UserAuditEventRepository auditEventRepository;
     
     @Autowired
-    private UserAuditService userAuditService;
+    private UserOutboxRelay userOutboxRelay;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
 
     @Test
     void handleUserCreatedEvent_正常にAuditログが作成される() {
@@ -47,6 +50,8 @@ class UserEventListenerTest extends BaseIntegrationTest {
         // When
         eventPublisher.publishEvent(event);
 
+        userOutboxRelay.relayPending();
+
         // Then
         List<UserAuditEvent> auditEvents = auditEventRepository.findByTargetUserId(100L);
         assertEquals(1, auditEvents.size());
@@ -62,7 +67,7 @@ class UserEventListenerTest extends BaseIntegrationTest {
         assertTrue(auditEvent.getDetails().containsKey("email"));
         assertEquals("newuser@example.com", auditEvent.getDetails().get("email"));
         assertTrue(auditEvent.getDetails().containsKey("roles"));
-        assertEquals(Set.of("EMPLOYEE", "USER_ADMIN"), auditEvent.getDetails().get("roles"));
+        assertEquals(Set.of("EMPLOYEE", "USER_ADMIN"), Set.copyOf((List<?>) auditEvent.getDetails().get("roles")));
         assertTrue(auditEvent.getDetails().containsKey("occurredAt"));
     }
 
@@ -84,6 +89,8 @@ class UserEventListenerTest extends BaseIntegrationTest {
         // When
         eventPublisher.publishEvent(event);
 
+        userOutboxRelay.relayPending();
+
         // Then
         List<UserAuditEvent> auditEvents = auditEventRepository.findByTargetUserId(101L);
         assertEquals(1, auditEvents.size());
@@ -98,8 +105,8 @@ class UserEventListenerTest extends BaseIntegrationTest {
         assertEquals("newuser", auditEvent.getDetails().get("newUsername"));
         assertEquals("old@example.com", auditEvent.getDetails().get("oldEmail"));
         assertEquals("new@example.com", auditEvent.getDetails().get("newEmail"));
-        assertEquals(Set.of("EMPLOYEE"), auditEvent.getDetails().get("oldRoles"));
-        assertEquals(Set.of("USER_ADMIN"), auditEvent.getDetails().get("newRoles"));
+        assertEquals(Set.of("EMPLOYEE"), Set.copyOf((List<?>) auditEvent.getDetails().get("oldRoles")));
+        assertEquals(Set.of("USER_ADMIN"), Set.copyOf((List<?>) auditEvent.getDetails().get("newRoles")));
         assertTrue(auditEvent.getDetails().containsKey("occurredAt"));
     }
 
@@ -117,6 +124,8 @@ class UserEventListenerTest extends BaseIntegrationTest {
         // When
         eventPublisher.publishEvent(event);
 
+        userOutboxRelay.relayPending();
+
         // Then
         List<UserAuditEvent> auditEvents = auditEventRepository.findByTargetUserId(102L);
         assertEquals(1, auditEvents.size());
@@ -131,4 +140,41 @@ class UserEventListenerTest extends BaseIntegrationTest {
         assertEquals("deleted@example.com", auditEvent.getDetails().get("email"));
         assertTrue(auditEvent.getDetails().containsKey("occurredAt"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void handleUserDeletedEvent_リレーが配信するまでAuditログは作成されない() {
+        // Given
+        UserDeletedEvent event = UserDeletedEvent.builder()
+                .userId(103L)
+                .deletedBy(3L)
+                .username(new Username("pendinguser"))
+                .email(new Email("pending@example.com"))
+                .occurredAt(LocalDateTime.now())
+                .build();
+
+        // When
+        eventPublisher.publishEvent(event);
+
+        // Then
+        assertTrue(auditEventRepository.findByTargetUserId(103L).isEmpty());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user_outbox_events", Integer.class));
+
+        assertEquals(1, userOutboxRelay.relayPending());
+        assertEquals(1, auditEventRepository.findByTargetUserId(103L).size());
+        awaitOutboxEmpty();
+        assertEquals(0, userOutboxRelay.relayPending());
+    }
+
+    /**
+     * 削除(完了の確認)はリレーのスレッドで非同期に行われる。
+     */
+    private void awaitOutboxEmpty() {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user_outbox_events", Integer.class) > 0) {
+            if (System.nanoTime() > deadline) {
+                fail("Outbox events were not acknowledged");
+            }
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package carametal.practice.infrastructure;
+
+import carametal.practice.base.BaseIntegrationTest;
+import carametal.practice.entity.User;
+import carametal.practice.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PARALLELモードでは別コネクションで検索するため、テストデータをコミットした状態で検証する。
+ */
+@TestPropertySource(properties = "app.user-search.execution-mode=PARALLEL")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Sql("/test-data.sql")
+@Sql(statements = "TRUNCATE users, roles, user_roles RESTART IDENTITY CASCADE",
+        executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class UserSearchEngineParallelTest extends BaseIntegrationTest {
+
+    @Autowired
+    private UserSearchEngine userSearchEngine;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void search_ページと件数を並列に取得できる() {
+        // When
+        Page<User> page = userSearchEngine.search(null, "example.com", PageRequest.of(0, 2, Sort.by("username")));
+
+        // Then
+        assertEquals(2, page.getContent().size());
+        assertEquals(3, page.getTotalElements());
+        assertEquals(2, page.getTotalPages());
+        assertEquals("employee", page.getContent().get(0).getUsername());
+        assertFalse(page.getContent().get(0).getRoles().isEmpty());
+    }
+
+    @Test
+    void search_期限を超えるとタイムアウト() {
+        Duration original = (Duration) ReflectionTestUtils.getField(userSearchEngine, "deadline");
+        ReflectionTestUtils.setField(userSearchEngine, "deadline", Duration.ofNanos(1));
+        try {
+            assertThrows(QueryTimeoutException.class,
+                    () -> userSearchEngine.search(null, null, PageRequest.of(0, 10, Sort.by("id"))));
+        } finally {
+            ReflectionTestUtils.setField(userSearchEngine, "deadline", original);
+        }
+        assertEquals(3, userRepository.count());
+    }
+}
@@ -8,6 +8,7 @@ import carametal.practice.dto.UserUpdateRequest;
 import carametal.practice.dto.UserUpdateResponse;
 import carametal.practice.entity.User;
 import carametal.practice.entity.UserAuditEvent;
+import carametal.practice.infrastructure.UserOutboxRelay;
 import carametal.practice.repository.UserRepository;
 import carametal.practice.repository.UserAuditEventRepository;
 import org.junit.jupiter.api.Test;
@@ -35,6 +36,9 @@ class UserEventIntegrationTest extends BaseIntegrationTest {
     @Autowired
     private UserAuditEventRepository auditEventRepository;
 
+    @Autowired
+    private UserOutboxRelay userOutboxRelay;
+
     @Test
     void registerUser_イベントが発行されAuditログが作成される() {
         // Given
@@ -50,6 +54,8 @@ class UserEventIntegrationTest extends BaseIntegrationTest {
         // When
         UserRegistrationResponse response = userApplicationService.registerUser(request, currentUser);
         
+        userOutboxRelay.relayPending();
+
         // Then
         // ユーザーが作成されていることを確認
         assertNotNull(response);
@@ -67,7 +73,7 @@ class UserEventIntegrationTest extends BaseIntegrationTest {
         // Audit詳細の確認
         assertEquals("integrationuser", auditEvent.getDetails().get("username"));
         assertEquals("integration@example.com", auditEvent.getDetails().get("email"));
-        assertEquals(Set.of("EMPLOYEE", "USER_ADMIN"), auditEvent.getDetails().get("roles"));
+        assertEquals(Set.of("EMPLOYEE", "USER_ADMIN"), Set.copyOf((List<?>) auditEvent.getDetails().get("roles")));
         assertTrue(auditEvent.getDetails().containsKey("occurredAt"));
     }
 
@@ -86,6 +92,8 @@ class UserEventIntegrationTest extends BaseIntegrationTest {
         // When
         UserUpdateResponse response = userApplicationService.updateUser(existingUser.getId(), request, currentUser);
         
+        userOutboxRelay.relayPending();
+
         // Then
         // ユーザーが更新されていることを確認
         assertNotNull(response);
@@ -107,8 +115,8 @@ class UserEventIntegrationTest extends BaseIntegrationTest {
         assertEquals("updated_employee", auditEvent.getDetails().get("newUsername"));
         assertEquals("employee@example.com", auditEvent.getDetails().get("oldEmail"));
         assertEquals("updated@example.com", auditEvent.getDetails().get("newEmail"));
-        assertEquals(Set.of("EMPLOYEE"), auditEvent.getDetails().get("oldRoles"));
-        assertEquals(Set.of("USER_ADMIN"), auditEvent.getDetails().get("newRoles"));
+        assertEquals(Set.of("EMPLOYEE"), Set.copyOf((List<?>) auditEvent.getDetails().get("oldRoles")));
+        assertEquals(Set.of("USER_ADMIN"), Set.copyOf((List<?>) auditEvent.getDetails().get("newRoles")));
         assertTrue(auditEvent.getDetails().containsKey("occurredAt"));
     }
 
@@ -122,6 +130,8 @@ class UserEventIntegrationTest extends BaseIntegrationTest {
         // When
         userApplicationService.deleteUser(targetUserId, currentUser);
         
+        userOutboxRelay.relayPending();
+
         // Then
         // ユーザーが削除されていることを確認
         assertFalse(userRepository.existsById(targetUserId));
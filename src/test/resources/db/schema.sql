@@ -1,20 +1,32 @@
 CREATE EXTENSION IF NOT EXISTS pgcrypto;
 
+-- IDはpooled-lo採番(アプリケーションが1回のnextvalで50件分を確保する)
+CREATE SEQUENCE users_user_id_seq INCREMENT BY 50;
+CREATE SEQUENCE roles_role_id_seq INCREMENT BY 50;
+
 CREATE TABLE users (
-    user_id SERIAL PRIMARY KEY,
-    username VARCHAR(50) NOT NULL UNIQUE,
-    email VARCHAR(100) NOT NULL UNIQUE,
+    user_id BIGINT PRIMARY KEY DEFAULT nextval('users_user_id_seq'),
+    username VARCHAR(50) NOT NULL,
+    email VARCHAR(100) NOT NULL,
     password VARCHAR(255) NOT NULL,
     registration_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     last_login TIMESTAMP,
+    version BIGINT NOT NULL DEFAULT 0,
+    deleted_at TIMESTAMP,
     created_by BIGINT NOT NULL,
     created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     updated_by BIGINT NOT NULL,
     updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
 );
 
+-- 論理削除済みの行を除いて一意にする(削除したユーザーのユーザー名・メールアドレスは再利用できる)
+CREATE UNIQUE INDEX uk_users_username ON users (username) WHERE deleted_at IS NULL;
+CREATE UNIQUE INDEX uk_users_email ON users (email) WHERE deleted_at IS NULL;
+-- 物理削除対象の検索用
+CREATE INDEX idx_users_deleted_at ON users (deleted_at) WHERE deleted_at IS NOT NULL;
+
 CREATE TABLE roles (
-    role_id SERIAL PRIMARY KEY,
+    role_id BIGINT PRIMARY KEY DEFAULT nextval('roles_role_id_seq'),
     role_name VARCHAR(50) NOT NULL UNIQUE,
     description VARCHAR(255),
     created_by BIGINT NOT NULL,
@@ -23,10 +35,114 @@ CREATE TABLE roles (
     updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
 );
 
+ALTER SEQUENCE users_user_id_seq OWNED BY users.user_id;
+ALTER SEQUENCE roles_role_id_seq OWNED BY roles.role_id;
+
 CREATE TABLE user_roles (
     user_id BIGINT NOT NULL,
     role_id BIGINT NOT NULL,
     PRIMARY KEY (user_id, role_id),
     CONSTRAINT fk_user_roles_user FOREIGN KEY (user_id) REFERENCES users(user_id) ON DELETE CASCADE,
     CONSTRAINT fk_user_roles_role FOREIGN KEY (role_id) REFERENCES roles(role_id) ON DELETE CASCADE
-);
\ No newline at end of file
+);
+
+-- ユーザー操作履歴テーブル(sql/02_audit_events.sql)
+CREATE SEQUENCE user_audit_events_id_seq INCREMENT BY 50;
+
+CREATE TABLE user_audit_actions (
+    code SMALLINT PRIMARY KEY,
+    name VARCHAR(50) NOT NULL UNIQUE
+);
+
+INSERT INTO user_audit_actions (code, name) VALUES
+    (1, 'USER_CREATED'),
+    (2, 'USER_UPDATED'),
+    (3, 'USER_DELETED'),
+    (4, 'ROLE_ASSIGNED'),
+    (5, 'ROLE_REMOVED');
+
+CREATE TABLE user_audit_events (
+    id BIGINT NOT NULL DEFAULT nextval('user_audit_events_id_seq'),
+    user_id BIGINT,
+    target_user_id BIGINT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    action SMALLINT NOT NULL,
+    ip_address VARCHAR(45),
+    user_agent TEXT,
+    details JSONB,
+    PRIMARY KEY (created_at, id)
+) PARTITION BY RANGE (created_at);
+
+CREATE TABLE user_audit_events_default PARTITION OF user_audit_events DEFAULT;
+
+ALTER SEQUENCE user_audit_events_id_seq OWNED BY user_audit_events.id;
+
+CREATE INDEX idx_user_audit_events_user_id ON user_audit_events(user_id, created_at DESC, id DESC);
+CREATE INDEX idx_user_audit_events_target_user_id ON user_audit_events(target_user_id, created_at DESC, id DESC);
+CREATE INDEX idx_user_audit_events_details ON user_audit_events USING gin (details jsonb_path_ops);
+
+-- ユーザー検索用の読み取りモデル(sql/03_user_directory.sql)
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE TABLE user_directory (
+    user_id BIGINT PRIMARY KEY,
+    username VARCHAR(50) NOT NULL,
+    username_lower VARCHAR(50) NOT NULL,
+    email_lower VARCHAR(100) NOT NULL,
+    role_names TEXT[] NOT NULL DEFAULT '{}',
+    registration_date TIMESTAMP,
+    last_login TIMESTAMP,
+    refreshed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_user_directory_username_trgm ON user_directory USING gin (username_lower gin_trgm_ops);
+CREATE INDEX idx_user_directory_email_trgm ON user_directory USING gin (email_lower gin_trgm_ops);
+CREATE INDEX idx_user_directory_username ON user_directory(username);
+CREATE INDEX idx_user_directory_email_lower ON user_directory(email_lower);
+
+CREATE SEQUENCE user_directory_version_seq;
+-- アウトボックス(sql/04_user_outbox.sql)
+CREATE TABLE user_outbox_events (
+    id BIGSERIAL PRIMARY KEY,
+    action VARCHAR(50) NOT NULL,
+    actor_id BIGINT,
+    payload JSONB NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    last_error TEXT,
+    claimed_until TIMESTAMP,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- 操作ログの集計(sql/05_audit_rollups.sql)
+CREATE TABLE user_audit_action_hourly (
+    bucket TIMESTAMP NOT NULL,
+    action SMALLINT NOT NULL,
+    event_count BIGINT NOT NULL,
+    PRIMARY KEY (bucket, action)
+);
+
+CREATE TABLE user_audit_actor_daily (
+    day DATE NOT NULL,
+    user_id BIGINT NOT NULL,
+    event_count BIGINT NOT NULL,
+    PRIMARY KEY (day, user_id)
+);
+
+-- ユーザーの変更履歴(sql/06_user_changes.sql)
+CREATE TABLE user_changes (
+    seq BIGSERIAL PRIMARY KEY,
+    tx_id BIGINT NOT NULL DEFAULT txid_current(),
+    user_id BIGINT NOT NULL,
+    change VARCHAR(10) NOT NULL,
+    changed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_user_changes_position ON user_changes (tx_id, seq);
+
+CREATE TABLE user_change_horizon (
+    id BOOLEAN PRIMARY KEY DEFAULT TRUE CHECK (id),
+    tx_id BIGINT NOT NULL,
+    seq BIGINT NOT NULL
+);
+
+INSERT INTO user_change_horizon (tx_id, seq) VALUES (0, 0);